@@ -23,6 +23,7 @@ public class AdaptadorAula extends TypeAdapter<Aula> {
         jsonObject.addProperty("capacidad", aula.getCapacidad());
         jsonObject.addProperty("tieneProyector", aula.isTieneProyector());
         jsonObject.addProperty("tieneTV", aula.isTieneTV());
+        jsonObject.addProperty("version", aula.getVersion());
 
         if (aula instanceof Laboratorio laboratorio) {
             jsonObject.addProperty("type", "Laboratorio");
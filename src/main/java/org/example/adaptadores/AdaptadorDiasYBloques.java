@@ -0,0 +1,58 @@
+package org.example.adaptadores;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.example.enums.BloqueHorario;
+import org.example.model.DiasYBloques;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+
+/*
+DiasYBloques se guarda en memoria como un long, pero en el JSON mantenemos el mismo formato que tenía
+el Map<DayOfWeek, Set<BloqueHorario>>: un objeto con el día como clave y la lista de bloques como valor.
+Así los archivos existentes se siguen leyendo y los nuevos se pueden leer a mano.
+ */
+
+public class AdaptadorDiasYBloques extends TypeAdapter<DiasYBloques> {
+
+    @Override
+    public void write(JsonWriter out, DiasYBloques value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        for (DayOfWeek dia : value.dias()) {
+            out.name(dia.name());
+            out.beginArray();
+            for (BloqueHorario bloque : value.bloques(dia)) {
+                out.value(bloque.name());
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public DiasYBloques read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return DiasYBloques.VACIO;
+        }
+        long mascara = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            var dia = DayOfWeek.valueOf(in.nextName());
+            in.beginArray();
+            while (in.hasNext()) {
+                mascara |= DiasYBloques.bit(dia, BloqueHorario.valueOf(in.nextString()));
+            }
+            in.endArray();
+        }
+        in.endObject();
+        return new DiasYBloques(mascara);
+    }
+}
@@ -2,27 +2,99 @@ package org.example.config;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
 import org.example.adaptadores.AdaptadorAula;
+import org.example.adaptadores.AdaptadorDiasYBloques;
+import org.example.adaptadores.AdaptadorLocalDate;
+import org.example.adaptadores.AdaptadorLocalDateTime;
+import org.example.model.Asignatura;
 import org.example.model.Aula;
+import org.example.model.DiasYBloques;
+import org.example.model.Laboratorio;
+import org.example.model.Profesor;
+import org.example.model.Rol;
+import org.example.model.dto.InscripcionDTO;
+import org.example.model.dto.ReservaDTO;
+import org.example.model.dto.SolicitudCambioAulaDTO;
+import org.example.model.dto.UsuarioDTO;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 
 /**
  * Clase para configurar GSON
+ * Gson es inmutable y thread-safe, así que cada configuración se crea una sola vez y se comparte
+ * Al crearlas se piden los TypeAdapter de las entidades para que la primera lectura no pague la reflexión
+ * Con -Dgestionaulas.json.compacto=true los archivos se escriben sin sangría ni saltos de línea
  */
 public class GsonConfig {
+    public static final String PROPIEDAD_COMPACTO = "gestionaulas.json.compacto";
+    private static final boolean COMPACTO = Boolean.getBoolean(PROPIEDAD_COMPACTO);
+
+    private static final Gson GSON_SIMPLE = precalentar(new Gson(),
+            Asignatura.class, Profesor.class, Rol.class, UsuarioDTO.class);
+
+    private static final Gson GSON_FECHAS = precalentar(formato(new GsonBuilder()
+                    .registerTypeAdapter(LocalDate.class, new AdaptadorLocalDate())
+                    .registerTypeAdapter(LocalDateTime.class, new AdaptadorLocalDateTime())
+                    .registerTypeAdapter(DiasYBloques.class, new AdaptadorDiasYBloques()))
+                    .create(),
+            InscripcionDTO.class, ReservaDTO.class, SolicitudCambioAulaDTO.class);
+
+    private static final Gson GSON_AULA_LABORATORIO = crearGsonAulaLaboratorio();
+
+    /**
+     * Método que devuelve el Gson sin adaptadores, para las entidades sin fechas
+     * @return Gson compartido
+     */
+    public static Gson gsonSimple() {
+        return GSON_SIMPLE;
+    }
+
     /**
-     * Método para crear un GSON que use AulaTypeAdapter para serialización y deserialización polimórfica
-     * @return Gson configurado para Aula y Laboratorio
+     * Método que devuelve el Gson con los adaptadores de LocalDate, LocalDateTime y DiasYBloques
+     * @return Gson compartido
+     */
+    public static Gson gsonConFechas() {
+        return GSON_FECHAS;
+    }
+
+    /**
+     * Método que devuelve el Gson que usa AdaptadorAula para serialización y deserialización polimórfica
+     * @return Gson compartido, configurado para Aula y Laboratorio
      */
     public static Gson createGsonAulaLaboratorio() {
+        return GSON_AULA_LABORATORIO;
+    }
+
+    /**
+     * Método para saber si los archivos se escriben en modo compacto
+     * @return boolean true si no se usa setPrettyPrinting
+     */
+    public static boolean esCompacto() {
+        return COMPACTO;
+    }
+
+    private static Gson crearGsonAulaLaboratorio() {
+        // El Gson interno serializa los campos de Aula y Laboratorio sin pasar otra vez por el adaptador
+        Gson interno = precalentar(new Gson(), Aula.class, Laboratorio.class, JsonObject.class);
         GsonBuilder builder = new GsonBuilder();
 
         // Registrar el TypeAdapter para Aula
-        builder.registerTypeAdapter(Aula.class, new AdaptadorAula(builder.create()));
-        builder.setPrettyPrinting();
+        builder.registerTypeAdapter(Aula.class, new AdaptadorAula(interno));
 
-        return builder.create();
+        return precalentar(formato(builder).create(), Aula.class);
     }
-}
 
+    private static GsonBuilder formato(GsonBuilder builder) {
+        return COMPACTO ? builder : builder.setPrettyPrinting();
+    }
 
+    private static Gson precalentar(Gson gson, Class<?>... clases) {
+        for (Class<?> clase : clases) {
+            gson.getAdapter(clase);
+        }
+        return gson;
+    }
+}
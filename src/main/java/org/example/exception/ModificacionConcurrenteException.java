@@ -0,0 +1,7 @@
+package org.example.exception;
+
+public class ModificacionConcurrenteException extends ConflictException{
+    public ModificacionConcurrenteException(String message){
+        super(message);
+    }
+}
@@ -4,20 +4,23 @@ import org.example.exception.AutenticacionException;
 import org.example.exception.JsonNotFoundException;
 import org.example.exception.NotFoundException;
 import org.example.model.Usuario;
+import org.example.security.ContextoSesion;
 import org.example.security.Seguridad;
+import org.example.service.SolicitudCambioAulaService;
 import org.example.utils.MenuUtils;
 
 public class Menu {
 
     private final MenuAdministrador menuAdministrador = new MenuAdministrador();
     private final MenuProfesor menuProfesor = new MenuProfesor();
-    private final Seguridad seguridad = new Seguridad();
+    private final Seguridad seguridad = Seguridad.getInstancia();
 
     /**
      * Método para iniciar el menu principal de la aplicación
      */
     public void iniciarMenu() {
         boolean salir = false;
+        archivarSolicitudesResueltas();
 
         while (!salir) {
             System.out.println("\n====================================");
@@ -41,6 +44,18 @@ public class Menu {
         MenuUtils.cerrarScanner();
     }
 
+    /**
+     * Método que al iniciar mueve al archivo las solicitudes resueltas hace más de los días recientes
+     * Si falla se sigue igual: quedan en solicitudes.json hasta el próximo inicio
+     */
+    private void archivarSolicitudesResueltas() {
+        try {
+            SolicitudCambioAulaService.getInstancia().archivarResueltas();
+        } catch (JsonNotFoundException e) {
+            System.out.println(STR."Error: \{e.getMessage()}");
+        }
+    }
+
     /**
      * Método para manejar la autenticación de usuario
      * y derivar al menu que le corresponde
@@ -57,14 +72,17 @@ public class Menu {
 
     /**
      * Método para manejar la redirección al menú correspondiente según el rol del usuario
+     * Abre el contexto de la sesión con los permisos del usuario y lo cierra al cerrar sesión
      * @param usuario Usuario autenticado
      */
     private void redireccionarSegunRol(Usuario usuario) {
         String rol = usuario.getRol().getNombre().toLowerCase();
-        switch (rol) {
-            case "administrador" -> menuAdministrador.iniciarMenuAdmin(usuario);
-            case "profesor" -> menuProfesor.iniciarMenuProfesor(usuario);
-            default -> System.out.println("Error: Rol desconocido.");
+        try (var sesion = ContextoSesion.abrir(usuario)) {
+            switch (rol) {
+                case "administrador" -> menuAdministrador.iniciarMenuAdmin(usuario);
+                case "profesor" -> menuProfesor.iniciarMenuProfesor(usuario);
+                default -> System.out.println("Error: Rol desconocido.");
+            }
         }
     }
 
@@ -1,6 +1,5 @@
 package org.example.menu;
 
-import org.example.enums.BloqueHorario;
 import org.example.enums.EstadoSolicitud;
 import org.example.enums.Permisos;
 import org.example.exception.*;
@@ -10,21 +9,21 @@ import org.example.service.*;
 import org.example.utils.MenuUtils;
 import org.example.utils.Utils;
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.util.*;
 
 import static org.example.utils.MenuUtils.*;
 
 public class MenuAdministrador {
-    private final Seguridad seguridad = new Seguridad();
-    private final AulaService aulaService = new AulaService();
-    private final ReservaService reservaService = new ReservaService();
-    private final AsignaturaService asignaturaService = new AsignaturaService();
-    private final InscripcionService inscripcionService = new InscripcionService();
-    private final UsuarioService usuarioService = new UsuarioService();
-    private final SolicitudCambioAulaService solicitudCambioAulaService = new SolicitudCambioAulaService();
-    private final ProfesorService profesorService = new ProfesorService();
+    private final Seguridad seguridad = Seguridad.getInstancia();
+    private final AulaService aulaService = AulaService.getInstancia();
+    private final ReservaService reservaService = ReservaService.getInstancia();
+    private final AsignaturaService asignaturaService = AsignaturaService.getInstancia();
+    private final InscripcionService inscripcionService = InscripcionService.getInstancia();
+    private final UsuarioService usuarioService = UsuarioService.getInstancia();
+    private final SolicitudCambioAulaService solicitudCambioAulaService = SolicitudCambioAulaService.getInstancia();
+    private final ProfesorService profesorService = ProfesorService.getInstancia();
+    private final PlanificadorService planificadorService = PlanificadorService.getInstancia();
 
     /**
      * Método para iniciar menu principal de admin
@@ -228,7 +227,7 @@ public class MenuAdministrador {
                     }
                 }
             }
-        } catch (JsonNotFoundException | NotFoundException e) {
+        } catch (JsonNotFoundException | NotFoundException | BadRequestException e) {
             System.out.println(e.getMessage());
         }
     }
@@ -255,7 +254,7 @@ public class MenuAdministrador {
                 int id = MenuUtils.leerEntero("\nIngrese el id del espacio a eliminar: ");
                 aulaService.eliminar(id);
                 System.out.println("\nEspacio eliminado exitosamente");
-            }catch (JsonNotFoundException | NotFoundException e) {
+            }catch (JsonNotFoundException | NotFoundException | BadRequestException e) {
                 System.out.println(e.getMessage());
             }
         }else {
@@ -287,7 +286,8 @@ public class MenuAdministrador {
             System.out.println("10. Filtrar espacios disponibles");
             System.out.println("11. Filtrar aulas disponibles");
             System.out.println("12. Filtrar laboratorios disponibles");
-            System.out.println("13. Volver al submenú Espacios");
+            System.out.println("13. Recomendar espacios para una inscripción");
+            System.out.println("14. Volver al submenú Espacios");
 
             var opcion = MenuUtils.leerEntero("Seleccione una opción: ");
 
@@ -304,7 +304,8 @@ public class MenuAdministrador {
                 case 10 -> filtrarEspaciosDisponibles(usuario);
                 case 11 -> filtrarAulasDisponibles(usuario);
                 case 12 -> filtrarLaboratoriosDisponibles(usuario);
-                case 13 -> salir = true;
+                case 13 -> recomendarEspacios(usuario);
+                case 14 -> salir = true;
                 default -> System.out.println("\nOpción inválida.");
             }
         }
@@ -564,6 +565,47 @@ public class MenuAdministrador {
         }
     }
 
+    /**
+     * Método para mostrar los espacios disponibles que mejor se ajustan a una inscripción
+     * @param usuario que esta logueado para verificar perfil con permisos
+     */
+    private void recomendarEspacios(Usuario usuario) {
+        if (seguridad.verificarPermiso(usuario, Permisos.VER_ESPACIOS)) {
+            try {
+                System.out.println("\nInscripciones:");
+                System.out.println("===============================");
+                inscripcionService.listar().forEach(System.out::println);
+                System.out.println("===============================");
+                var inscripcion = inscripcionService.obtener(MenuUtils.leerEntero("\nIngrese el id de la inscripción: "));
+
+                var tieneProyector = MenuUtils.obtenerProyectorEspacio();
+                var tieneTV = MenuUtils.obtenerTvEspacio();
+
+                var rangoFechas = MenuUtils.leerRangoDeFechas("\nIngrese la fecha de inicio:", "\nIngrese la fecha de fin:");
+                LocalDate fechaInicio = rangoFechas.get(0);
+                LocalDate fechaFin = rangoFechas.get(1);
+
+                var diasYBloques = MenuUtils.leerDiasYBloques();
+
+                // Mostramos los 5 espacios con mejor puntaje
+                var recomendados = aulaService.recomendarEspacios(inscripcion, tieneProyector, tieneTV,
+                        fechaInicio, fechaFin, diasYBloques, 5);
+
+                if (recomendados.isEmpty()) {
+                    System.out.println("\nNo hay espacios disponibles para esa inscripción.");
+                } else {
+                    System.out.println("\nEspacios recomendados (del mejor al peor):");
+                    recomendados.forEach(System.out::println);
+                }
+
+            } catch (JsonNotFoundException | NotFoundException e) {
+                System.out.println(STR."\nError: \{e.getMessage()}");
+            }
+        } else {
+            System.out.println("\nNo posees el permiso para ver los espacios.");
+        }
+    }
+
     /**
      * Método para filtrar todas las aulas estándar disponibles
      * @param usuario que esta logueado para verificar perfil con permisos
@@ -687,25 +729,29 @@ public class MenuAdministrador {
             System.out.println("======================================");
             System.out.println("Elija una opción:");
             System.out.println("1. Crear reserva.");
-            System.out.println("2. Listar todas las reservas.");
-            System.out.println("3. Listar reservas por profesor.");
-            System.out.println("4. Listar reservas por comisión");
-            System.out.println("5. Listar reservas por asignatura");
-            System.out.println("6. Modificar reserva");
-            System.out.println("7. Eliminar reserva");
-            System.out.println("8. Volver al menú principal");
+            System.out.println("2. Crear reservas en lote.");
+            System.out.println("3. Planificar reservas del cuatrimestre.");
+            System.out.println("4. Listar todas las reservas.");
+            System.out.println("5. Listar reservas por profesor.");
+            System.out.println("6. Listar reservas por comisión");
+            System.out.println("7. Listar reservas por asignatura");
+            System.out.println("8. Modificar reserva");
+            System.out.println("9. Eliminar reserva");
+            System.out.println("10. Volver al menú principal");
 
             var opcion = MenuUtils.leerEntero("Seleccione una opción: ");
 
             switch (opcion) {
                 case 1 -> crearReserva(usuario);
-                case 2 -> listarReservas(usuario);
-                case 3 -> listarReservasXProfesor(usuario);
-                case 4 -> listarReservasXComision(usuario);
-                case 5 -> listarReservasXAsignatura(usuario);
-                case 6 -> modificarReserva(usuario);
-                case 7 -> eliminarReserva(usuario);
-                case 8 -> salir = true;
+                case 2 -> crearReservasEnLote(usuario);
+                case 3 -> planificarReservas(usuario);
+                case 4 -> listarReservas(usuario);
+                case 5 -> listarReservasXProfesor(usuario);
+                case 6 -> listarReservasXComision(usuario);
+                case 7 -> listarReservasXAsignatura(usuario);
+                case 8 -> modificarReserva(usuario);
+                case 9 -> eliminarReserva(usuario);
+                case 10 -> salir = true;
                 default -> System.out.println("\nOpción inválida.");
             }
         }
@@ -730,13 +776,12 @@ public class MenuAdministrador {
             reserva.setFechaInicio(fechaInicio);
             reserva.setFechaFin(fechaFin);
 
-            Map<DayOfWeek,Set<BloqueHorario>> diasYBloques;
+            DiasYBloques diasYBloques;
 
             if (fechaInicio.equals(fechaFin)){
-                diasYBloques = new HashMap<>();
                 var bloques = MenuUtils.leerBloques(fechaInicio.getDayOfWeek());
 
-                diasYBloques.put(fechaInicio.getDayOfWeek(),bloques);
+                diasYBloques = DiasYBloques.de(fechaInicio.getDayOfWeek(),bloques);
                 reserva.setDiasYBloques(diasYBloques);
             }else {
                 diasYBloques = MenuUtils.leerDiasYBloques();
@@ -813,6 +858,128 @@ public class MenuAdministrador {
         }
     }
 
+    /**
+     * Método para crear varias reservas de una vez, por ejemplo al cargar un cuatrimestre
+     * Todas comparten el rango de fechas; se validan juntas y se informa el resultado de cada una
+     * @param usuario que esta logueado para verificar perfil con permisos
+     */
+    private void crearReservasEnLote(Usuario usuario) {
+        if (!seguridad.verificarPermiso(usuario, Permisos.CREAR_RESERVA)) {
+            System.out.println("\nNo posees el permiso para crear una reserva.");
+            return;
+        }
+
+        try {
+            var rangoFechas = MenuUtils.leerRangoDeFechas("\nIngrese la fecha de inicio del lote:", "\nIngrese la fecha de fin del lote:");
+            LocalDate fechaInicio = rangoFechas.get(0);
+            LocalDate fechaFin = rangoFechas.get(1);
+
+            System.out.println("\nInscripciones:");
+            System.out.println("===============================");
+            inscripcionService.listar().forEach(System.out::println);
+            System.out.println("===============================");
+            System.out.println("\nEspacios:");
+            System.out.println("===============================");
+            aulaService.listar().forEach(System.out::println);
+            System.out.println("===============================");
+
+            List<Reserva> reservas = new ArrayList<>();
+            do {
+                System.out.println(STR."\nReserva #\{reservas.size() + 1}");
+                Reserva reserva = new Reserva(null);
+                reserva.setFechaInicio(fechaInicio);
+                reserva.setFechaFin(fechaFin);
+                if (fechaInicio.equals(fechaFin)) {
+                    reserva.setDiasYBloques(DiasYBloques.de(fechaInicio.getDayOfWeek(), MenuUtils.leerBloques(fechaInicio.getDayOfWeek())));
+                } else {
+                    reserva.setDiasYBloques(MenuUtils.leerDiasYBloques());
+                }
+                reserva.setInscripcion(new Inscripcion(leerEntero("\nIngrese el id de la inscripción: ")));
+                reserva.setAula(new Aula(leerEntero("\nIngrese el id del espacio: ")));
+                reservas.add(reserva);
+            } while (MenuUtils.leerConfirmacion("\n¿Desea agregar otra reserva al lote?"));
+
+            // Se validan todas juntas: las rechazadas no impiden guardar las demás
+            mostrarLoteDeReservas(reservaService.guardarLote(reservas));
+        } catch (JsonNotFoundException | NotFoundException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Método para planificar automáticamente las reservas de un cuatrimestre
+     * Se piden los días y bloques de cada inscripción, se muestra la propuesta y, si se confirma, se guarda
+     * @param usuario que esta logueado para verificar perfil con permisos
+     */
+    private void planificarReservas(Usuario usuario) {
+        if (!seguridad.verificarPermiso(usuario, Permisos.CREAR_RESERVA)) {
+            System.out.println("\nNo posees el permiso para crear una reserva.");
+            return;
+        }
+
+        try {
+            var rangoFechas = MenuUtils.leerRangoDeFechas("\nIngrese la fecha de inicio del cuatrimestre:", "\nIngrese la fecha de fin del cuatrimestre:");
+            LocalDate fechaInicio = rangoFechas.get(0);
+            LocalDate fechaFin = rangoFechas.get(1);
+
+            System.out.println("\nInscripciones:");
+            System.out.println("===============================");
+            inscripcionService.listar().forEach(System.out::println);
+            System.out.println("===============================");
+
+            // Si una inscripción se ingresa dos veces queda el último pedido
+            Map<Integer, DiasYBloques> pedidos = new LinkedHashMap<>();
+            do {
+                int idInscripcion = leerEntero("\nIngrese el id de la inscripción: ");
+                if (fechaInicio.equals(fechaFin)) {
+                    pedidos.put(idInscripcion, DiasYBloques.de(fechaInicio.getDayOfWeek(), MenuUtils.leerBloques(fechaInicio.getDayOfWeek())));
+                } else {
+                    pedidos.put(idInscripcion, MenuUtils.leerDiasYBloques());
+                }
+            } while (MenuUtils.leerConfirmacion("\n¿Desea agregar otra inscripción?"));
+
+            var planificacion = planificadorService.planificar(fechaInicio, fechaFin, pedidos);
+
+            System.out.println("\nReservas propuestas:");
+            System.out.println("===============================");
+            if (planificacion.reservas().isEmpty()) {
+                System.out.println("Ninguna.");
+            }
+            planificacion.reservas().forEach(reserva -> System.out.println(
+                    STR."Inscripción \{reserva.getInscripcion().getId()} (\{reserva.getInscripcion().getAsignatura().getNombre()} - \{reserva.getInscripcion().getComision()}): espacio \{reserva.getAula().getId()} (número \{reserva.getAula().getNumero()})"));
+            System.out.println("===============================");
+            if (!planificacion.sinUbicar().isEmpty()) {
+                System.out.println("\nInscripciones sin ubicar:");
+                System.out.println("===============================");
+                planificacion.sinUbicar().forEach(System.out::println);
+                System.out.println("===============================");
+            }
+
+            if (planificacion.reservas().isEmpty()
+                    || !MenuUtils.leerConfirmacion("\n¿Desea guardar las reservas propuestas?")) {
+                System.out.println("\nNo se guardó ninguna reserva.");
+                return;
+            }
+            // Se vuelven a validar al guardar: otra sesión pudo haber reservado mientras tanto
+            mostrarLoteDeReservas(reservaService.guardarLote(planificacion.reservas()));
+        } catch (JsonNotFoundException | NotFoundException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Método que muestra el resultado de guardar un lote de reservas
+     * @param resultados de ReservaService.guardarLote
+     */
+    private void mostrarLoteDeReservas(List<ResultadoLote<Reserva>> resultados) {
+        System.out.println("\nResultado del lote:");
+        System.out.println("===============================");
+        resultados.forEach(System.out::println);
+        System.out.println("===============================");
+        long aceptadas = resultados.stream().filter(ResultadoLote::aceptado).count();
+        System.out.println(STR."\nSe crearon \{aceptadas} de \{resultados.size()} reservas.");
+    }
+
     /**
      * Método para listar todas las reservas
      * @param usuario que esta logueado para verificar perfil con permisos
@@ -956,7 +1123,7 @@ public class MenuAdministrador {
                                         System.out.println("\nLas fechas de inicio y fin ahora coinciden. Debe reconfigurar los días y bloques.");
                                         var diaSemana = reserva.getFechaInicio().getDayOfWeek();
                                         var bloques = MenuUtils.leerBloques(diaSemana);
-                                        reserva.setDiasYBloques(Map.of(diaSemana, bloques));
+                                        reserva.setDiasYBloques(DiasYBloques.de(diaSemana, bloques));
                                     }
                                     break;
                                 } else {
@@ -976,7 +1143,7 @@ public class MenuAdministrador {
                                         System.out.println("\nLas fechas de inicio y fin ahora coinciden. Debe reconfigurar los días y bloques.");
                                         var diaSemana = reserva.getFechaInicio().getDayOfWeek();
                                         var bloques = MenuUtils.leerBloques(diaSemana);
-                                        reserva.setDiasYBloques(Map.of(diaSemana, bloques));
+                                        reserva.setDiasYBloques(DiasYBloques.de(diaSemana, bloques));
                                     }
                                     break;
                                 } else {
@@ -986,7 +1153,7 @@ public class MenuAdministrador {
                             break;
                         case 3:
                             var diasYBloques = reserva.getFechaInicio().equals(reserva.getFechaFin())
-                                    ? Map.of(reserva.getFechaInicio().getDayOfWeek(),
+                                    ? DiasYBloques.de(reserva.getFechaInicio().getDayOfWeek(),
                                     MenuUtils.leerBloques(reserva.getFechaInicio().getDayOfWeek()))
                                     : MenuUtils.leerDiasYBloques();
                             reserva.setDiasYBloques(diasYBloques);
@@ -1135,7 +1302,7 @@ public class MenuAdministrador {
                 int id = MenuUtils.leerEntero("\nIngrese el id de la reserva a eliminar: ");
                 reservaService.eliminar(id);
                 System.out.println("\nReserva eliminada exitosamente");
-            }catch (JsonNotFoundException | NotFoundException e) {
+            }catch (JsonNotFoundException | NotFoundException | BadRequestException e) {
                 System.out.println(e.getMessage());
             }
         }else {
@@ -1158,14 +1325,16 @@ public class MenuAdministrador {
             System.out.println("Elija una opción:");
             System.out.println("1. Listar");
             System.out.println("2. Revisar solicitudes pendientes");
-            System.out.println("3. Volver al menú principal");
+            System.out.println("3. Revisar solicitudes pendientes en lote");
+            System.out.println("4. Volver al menú principal");
 
             int opcion = MenuUtils.leerEntero("Seleccione una opción: ");
 
             switch (opcion) {
                 case 1 -> menuListarSolicitudes(usuario);
                 case 2 -> revisarSolicitudes(usuario);
-                case 3 -> salir = true;
+                case 3 -> revisarSolicitudesEnLote(usuario);
+                case 4 -> salir = true;
                 default -> System.out.println("\nOpción inválida.");
             }
         }
@@ -1334,6 +1503,62 @@ public class MenuAdministrador {
         }
     }
 
+    /**
+     * Método para aprobar o rechazar varias solicitudes de una vez
+     * Las decisiones se aplican juntas; si dos aprobaciones piden el mismo aula y bloque gana la más vieja
+     * @param usuario que esta logueado para verificar perfil con permisos
+     */
+    private void revisarSolicitudesEnLote(Usuario usuario) {
+        if (!seguridad.verificarPermiso(usuario, Permisos.GESTIONAR_CAMBIOS)) {
+            System.out.println("\nNo posees el permiso para revisar las solicitudes.");
+            return;
+        }
+
+        try {
+            var solicitudes = solicitudCambioAulaService.listarSolicitudesPorEstado(EstadoSolicitud.PENDIENTE);
+            if (solicitudes.isEmpty()) {
+                System.out.println("No hay solicitudes pendientes.");
+                return;
+            }
+            System.out.println("\nSolicitudes:");
+            System.out.println("===============================");
+            solicitudes.forEach(System.out::println);
+            System.out.println("===============================");
+
+            List<DecisionSolicitud> decisiones = new ArrayList<>();
+            do {
+                var idSolicitud = MenuUtils.leerEntero(STR."\nDecisión #\{decisiones.size() + 1} - Ingrese el id de la solicitud: ");
+                var estado = MenuUtils.leerEntero("""
+                        \n
+                        Elija una opción:
+                        1.Rechazar
+                        2.Aprobar
+                        -\s
+                        """);
+                var motivo = MenuUtils.leerTexto("\nIndica el motivo (Enter si no quieres indicarlo): ");
+                switch (estado) {
+                    case 1 -> decisiones.add(DecisionSolicitud.rechazar(idSolicitud, motivo));
+                    case 2 -> decisiones.add(DecisionSolicitud.aprobar(idSolicitud, motivo));
+                    default -> System.out.println("\nOpción inválida, la decisión no se agregó.");
+                }
+            } while (MenuUtils.leerConfirmacion("\n¿Desea agregar otra decisión al lote?"));
+
+            if (decisiones.isEmpty()) {
+                System.out.println("\nNo se agregó ninguna decisión.");
+                return;
+            }
+            var resultados = solicitudCambioAulaService.revisarLote(decisiones);
+            System.out.println("\nResultado del lote:");
+            System.out.println("===============================");
+            resultados.forEach(System.out::println);
+            System.out.println("===============================");
+            long aplicadas = resultados.stream().filter(ResultadoLote::aceptado).count();
+            System.out.println(STR."\nSe aplicaron \{aplicadas} de \{resultados.size()} decisiones.");
+        } catch (NotFoundException | JsonNotFoundException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
 
     /**
      * Método para el submenu usuarios
@@ -1542,10 +1767,11 @@ public class MenuAdministrador {
     private void cambiarPassword(Usuario usuario){
         if(seguridad.verificarPermiso(usuario, Permisos.CAMBIAR_PASSWORD)){
             try {
-                var usuarioNuevo = MenuUtils.cambiarPassword(usuario);
+                // Se cambia sobre el usuario recién leído, con su versión actual, y no sobre el de la sesión
+                var usuarioNuevo = MenuUtils.cambiarPassword(usuarioService.obtener(usuario.getId()));
                 usuarioService.modificar(usuarioNuevo);
                 System.out.println("\nContraseña modificada exitosamente.");
-            } catch (NotFoundException | JsonNotFoundException e) {
+            } catch (NotFoundException | JsonNotFoundException | BadRequestException e) {
                 System.out.println(e.getMessage());
             }
         }else {
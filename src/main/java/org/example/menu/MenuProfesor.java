@@ -1,6 +1,5 @@
 package org.example.menu;
 
-import org.example.enums.BloqueHorario;
 import org.example.enums.EstadoSolicitud;
 import org.example.enums.Permisos;
 import org.example.enums.TipoSolicitud;
@@ -12,17 +11,16 @@ import org.example.security.Seguridad;
 import org.example.service.*;
 import org.example.utils.MenuUtils;
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.util.*;
 
 public class MenuProfesor {
 
-    private final Seguridad seguridad = new Seguridad();
-    private final AulaService aulaService = new AulaService();
-    private final ReservaService reservaService = new ReservaService();
-    private final UsuarioService usuarioService = new UsuarioService();
-    private final SolicitudCambioAulaService solicitudCambioAulaService = new SolicitudCambioAulaService();
+    private final Seguridad seguridad = Seguridad.getInstancia();
+    private final AulaService aulaService = AulaService.getInstancia();
+    private final ReservaService reservaService = ReservaService.getInstancia();
+    private final UsuarioService usuarioService = UsuarioService.getInstancia();
+    private final SolicitudCambioAulaService solicitudCambioAulaService = SolicitudCambioAulaService.getInstancia();
 
     public void iniciarMenuProfesor(Usuario usuario) {
         boolean salir = false;
@@ -260,7 +258,7 @@ public class MenuProfesor {
                             """);
                 } while (opcion != 1 && opcion != 2);
 
-                Map<DayOfWeek, Set<BloqueHorario>> diasYBloques;
+                DiasYBloques diasYBloques;
                 if(opcion == 1){
                     tipoSolicitud = TipoSolicitud.TEMPORAL;
 
@@ -269,8 +267,7 @@ public class MenuProfesor {
                     fechaFin = rangoFechas.get(1);
                     if (fechaInicio.equals(fechaFin)){
                         var bloques = MenuUtils.leerBloques(fechaFin.getDayOfWeek());
-                        diasYBloques = new HashMap<>();
-                        diasYBloques.put(fechaFin.getDayOfWeek(),bloques);
+                        diasYBloques = DiasYBloques.de(fechaFin.getDayOfWeek(),bloques);
                     }else {
                         diasYBloques  = MenuUtils.leerDiasYBloques();
                     }
@@ -369,10 +366,11 @@ public class MenuProfesor {
     private void cambiarPassword(Usuario usuario){
         if(seguridad.verificarPermiso(usuario, Permisos.CAMBIAR_PASSWORD)){
             try {
-                var usuarioNuevo = MenuUtils.cambiarPassword(usuario);
+                // Se cambia sobre el usuario recién leído, con su versión actual, y no sobre el de la sesión
+                var usuarioNuevo = MenuUtils.cambiarPassword(usuarioService.obtener(usuario.getId()));
                 usuarioService.modificar(usuarioNuevo);
                 System.out.println("\nContraseña modificada correctamente.");
-            } catch (NotFoundException | JsonNotFoundException e) {
+            } catch (NotFoundException | JsonNotFoundException | BadRequestException e) {
                 System.out.println(e.getMessage());
             }
         }else {
@@ -8,6 +8,7 @@ public class Asignatura {
     private String nombre;
     private int codigo;
     boolean requiereLaboratorio;
+    private long version;
 
 
     /// CONSTRUCTOR:
@@ -18,6 +19,9 @@ public class Asignatura {
         this.requiereLaboratorio = requiereLaboratorio;
     }
 
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
     public Integer getId() {
         return id;
     }
@@ -9,6 +9,7 @@ public class Aula {
     private int capacidad;
     private boolean tieneProyector;
     private boolean tieneTV;
+    private long version;
 
     /// CONSTRUCTORES:
     public Aula(Integer id,int numero, int capacidad, boolean tieneProyector, boolean tieneTV) {
@@ -24,6 +25,9 @@ public class Aula {
     }
 
 
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
     public Integer getId() {
         return id;
     }
@@ -0,0 +1,22 @@
+package org.example.model;
+
+/**
+ * Decisión sobre una solicitud de cambio de aula pendiente, para la revisión en lote
+ * @param idSolicitud ID de la solicitud
+ * @param aprobar true para aprobarla, false para rechazarla
+ * @param comentario del administrador, puede quedar en blanco
+ */
+public record DecisionSolicitud(Integer idSolicitud, boolean aprobar, String comentario) {
+    public static DecisionSolicitud aprobar(Integer idSolicitud, String comentario) {
+        return new DecisionSolicitud(idSolicitud, true, comentario);
+    }
+
+    public static DecisionSolicitud rechazar(Integer idSolicitud, String comentario) {
+        return new DecisionSolicitud(idSolicitud, false, comentario);
+    }
+
+    @Override
+    public String toString() {
+        return STR."\{aprobar ? "Aprobar" : "Rechazar"} solicitud \{idSolicitud}";
+    }
+}
@@ -0,0 +1,121 @@
+package org.example.model;
+
+import org.example.enums.BloqueHorario;
+
+import java.time.DayOfWeek;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Días de la semana y bloques horarios de una reserva o solicitud, guardados en un solo long
+ * Cada día ocupa 6 bits (uno por BloqueHorario): el bit (día * 6 + bloque) indica si se usa ese bloque ese día
+ * 7 días x 6 bloques = 42 bits, así que dos semanas se comparan con un solo AND
+ * @param mascara bits de los días y bloques
+ */
+public record DiasYBloques(long mascara) {
+    public static final int BLOQUES_POR_DIA = BloqueHorario.values().length;
+    public static final long MASCARA_DIA = (1L << BLOQUES_POR_DIA) - 1;
+    public static final long MASCARA_SEMANA = (1L << (7 * BLOQUES_POR_DIA)) - 1;
+    public static final DiasYBloques VACIO = new DiasYBloques(0);
+
+    public DiasYBloques {
+        if ((mascara & ~MASCARA_SEMANA) != 0) {
+            throw new IllegalArgumentException(STR."Máscara de días y bloques inválida: \{mascara}");
+        }
+    }
+
+    /**
+     * Método para crear los días y bloques desde un mapa
+     * @param diasYBloques mapa de día de la semana a sus bloques horarios
+     * @return DiasYBloques equivalente al mapa
+     */
+    public static DiasYBloques de(Map<DayOfWeek, Set<BloqueHorario>> diasYBloques) {
+        long mascara = 0;
+        for (var entry : diasYBloques.entrySet()) {
+            for (var bloque : entry.getValue()) {
+                mascara |= bit(entry.getKey(), bloque);
+            }
+        }
+        return new DiasYBloques(mascara);
+    }
+
+    /**
+     * Método para crear los días y bloques de un solo día
+     * @param dia de la semana
+     * @param bloques horarios de ese día
+     * @return DiasYBloques con ese único día
+     */
+    public static DiasYBloques de(DayOfWeek dia, Set<BloqueHorario> bloques) {
+        return de(Map.of(dia, bloques));
+    }
+
+    /**
+     * Método que devuelve el bit de un día y bloque
+     * @param dia de la semana
+     * @param bloque horario
+     * @return long con un único bit prendido
+     */
+    public static long bit(DayOfWeek dia, BloqueHorario bloque) {
+        return 1L << ((dia.getValue() - 1) * BLOQUES_POR_DIA + bloque.ordinal());
+    }
+
+    /**
+     * Método para saber si comparten al menos un día y bloque
+     * @param otro días y bloques a comparar
+     * @return boolean si se solapan
+     */
+    public boolean seSolapa(DiasYBloques otro) {
+        return (mascara & otro.mascara) != 0;
+    }
+
+    public boolean contiene(DayOfWeek dia, BloqueHorario bloque) {
+        return (mascara & bit(dia, bloque)) != 0;
+    }
+
+    public boolean estaVacio() {
+        return mascara == 0;
+    }
+
+    /**
+     * Método que devuelve los días que tienen algún bloque
+     * @return Set<DayOfWeek> días ordenados de lunes a domingo
+     */
+    public Set<DayOfWeek> dias() {
+        var dias = EnumSet.noneOf(DayOfWeek.class);
+        for (var dia : DayOfWeek.values()) {
+            if ((mascara & (MASCARA_DIA << ((dia.getValue() - 1) * BLOQUES_POR_DIA))) != 0) {
+                dias.add(dia);
+            }
+        }
+        return dias;
+    }
+
+    /**
+     * Método que devuelve los bloques de un día
+     * @param dia de la semana
+     * @return Set<BloqueHorario> bloques de ese día, vacío si no tiene
+     */
+    public Set<BloqueHorario> bloques(DayOfWeek dia) {
+        var bloques = EnumSet.noneOf(BloqueHorario.class);
+        for (var bloque : BloqueHorario.values()) {
+            if (contiene(dia, bloque)) {
+                bloques.add(bloque);
+            }
+        }
+        return bloques;
+    }
+
+    /**
+     * Método para convertir a mapa de días y bloques
+     * @return Map<DayOfWeek, Set<BloqueHorario>> ordenado de lunes a domingo
+     */
+    public Map<DayOfWeek, Set<BloqueHorario>> aMapa() {
+        Map<DayOfWeek, Set<BloqueHorario>> mapa = new EnumMap<>(DayOfWeek.class);
+        for (var dia : dias()) {
+            mapa.put(dia, bloques(dia));
+        }
+        return mapa;
+    }
+}
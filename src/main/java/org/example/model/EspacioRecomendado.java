@@ -0,0 +1,14 @@
+package org.example.model;
+
+/**
+ * Espacio sugerido para una inscripción, con el puntaje que le dio el ranking
+ * @param aula espacio recomendado (aula o laboratorio)
+ * @param puntaje cuanto más alto, mejor se ajusta a la inscripción
+ * @param lugaresSobrantes capacidad que queda libre después de ubicar a los alumnos requeridos
+ */
+public record EspacioRecomendado(Aula aula, int puntaje, int lugaresSobrantes) {
+    @Override
+    public String toString() {
+        return STR."\{aula}Puntaje: \{puntaje} - Lugares sobrantes: \{lugaresSobrantes}";
+    }
+}
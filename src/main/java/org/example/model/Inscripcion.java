@@ -13,6 +13,7 @@ public class Inscripcion {
     private Asignatura asignatura;
     private String comision;
     private Profesor profesor;
+    private long version;
 
 
     public Inscripcion(Integer id, int cantidadAlumnos, int margenAlumnos, LocalDate fechaFinInscripcion, Asignatura asignatura, String comision, Profesor profesor) {
@@ -32,6 +33,9 @@ public class Inscripcion {
     /// GETTERS AND SETTERS:
 
 
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
     public Integer getId() {return id;}
     public void setId(Integer id) {this.id = id;}
 
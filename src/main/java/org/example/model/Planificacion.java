@@ -0,0 +1,22 @@
+package org.example.model;
+
+import java.util.List;
+
+/**
+ * Resultado de planificar un cuatrimestre
+ * @param reservas propuestas, una por inscripción ubicada, todavía sin guardar
+ * @param sinUbicar inscripciones que no se pudieron ubicar, con el motivo
+ */
+public record Planificacion(List<Reserva> reservas, List<SinUbicar> sinUbicar) {
+    /**
+     * Inscripción que quedó sin espacio
+     * @param inscripcion que no se ubicó
+     * @param motivo por el que no se ubicó
+     */
+    public record SinUbicar(Inscripcion inscripcion, String motivo) {
+        @Override
+        public String toString() {
+            return STR."Inscripción \{inscripcion.getId()} (\{inscripcion.getAsignatura().getNombre()} - \{inscripcion.getComision()}): \{motivo}";
+        }
+    }
+}
@@ -9,6 +9,7 @@ public class Profesor {
     private String nombre;
     private String apellido;
     private String matricula;
+    private long version;
 
     public Profesor(Integer id,String nombre, String apellido, String matricula) {
         this.id = id;
@@ -20,6 +21,9 @@ public class Profesor {
         this.id = id;
     }
 
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
     public Integer getId() {
         return id;
     }
@@ -1,13 +1,9 @@
 package org.example.model;
 
-import org.example.enums.BloqueHorario;
 import org.example.utils.Utils;
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 
 public class Reserva {
     private Integer id;
@@ -15,11 +11,12 @@ public class Reserva {
     private LocalDate fechaFin;
     private Aula aula;
     private Inscripcion inscripcion;
-    private Map<DayOfWeek, Set<BloqueHorario>> diasYBloques;
+    private DiasYBloques diasYBloques;
+    private long version;
 
 
     public Reserva(Integer id, LocalDate fechaInicio, LocalDate fechaFin, Aula aula,
-                   Inscripcion inscripcion, Map<DayOfWeek, Set<BloqueHorario>> diasYBloques) {
+                   Inscripcion inscripcion, DiasYBloques diasYBloques) {
         this.id = id;
         this.fechaInicio = fechaInicio;
         this.fechaFin = fechaFin;
@@ -35,16 +32,19 @@ public class Reserva {
 
 
     /// GETTERS AND SETTERS:
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
     public Integer getId() {return id; }
     public void setId(Integer id) {
         this.id = id;
     }
 
-    public Map<DayOfWeek, Set<BloqueHorario>> getDiasYBloques() {
+    public DiasYBloques getDiasYBloques() {
         return diasYBloques;
     }
 
-    public void setDiasYBloques(Map<DayOfWeek, Set<BloqueHorario>> diasYBloques) {
+    public void setDiasYBloques(DiasYBloques diasYBloques) {
         this.diasYBloques = diasYBloques;
     }
 
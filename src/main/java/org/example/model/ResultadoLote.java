@@ -0,0 +1,25 @@
+package org.example.model;
+
+/**
+ * Resultado de un elemento de una operación por lotes
+ * @param posicion del elemento dentro del lote, empezando en 0
+ * @param elemento que se procesó
+ * @param aceptado si el elemento se guardó
+ * @param motivo del rechazo, null si se aceptó
+ * @param <T> tipo de los elementos del lote
+ */
+public record ResultadoLote<T>(int posicion, T elemento, boolean aceptado, String motivo) {
+    public static <T> ResultadoLote<T> aceptado(int posicion, T elemento) {
+        return new ResultadoLote<>(posicion, elemento, true, null);
+    }
+
+    public static <T> ResultadoLote<T> rechazado(int posicion, T elemento, String motivo) {
+        return new ResultadoLote<>(posicion, elemento, false, motivo);
+    }
+
+    // Al usuario se le muestra la posición contando desde 1, como la pidió en el menú
+    @Override
+    public String toString() {
+        return aceptado ? STR."#\{posicion + 1}: aceptada" : STR."#\{posicion + 1}: rechazada - \{motivo}";
+    }
+}
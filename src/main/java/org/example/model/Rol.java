@@ -11,6 +11,11 @@ public class Rol {
     private Integer id;
     private String nombre;
     private List<Permisos> permisos;
+    private long version;
+    // Los permisos como máscara de bits (un bit por Permisos), se arma una vez a partir de la lista
+    // Es transient para que el JSON siga guardando la lista de nombres
+    private transient long mascara;
+    private transient boolean mascaraCalculada;
 
     public Rol(Integer id,String nombre, List<Permisos> permisos) {
         this.id = id;
@@ -21,6 +26,9 @@ public class Rol {
         this.id = id;
     }
 
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
     public Integer getId() {
         return id;
     }
@@ -28,7 +36,28 @@ public class Rol {
     public String getNombre() { return nombre; }
     public void setNombre(String nombre) { this.nombre = nombre; }
     public List<Permisos> getPermisos() { return permisos; }
-    public void setPermisos(List<Permisos> permisos) { this.permisos = permisos; }
+    public void setPermisos(List<Permisos> permisos) {
+        this.permisos = permisos;
+        this.mascaraCalculada = false;
+    }
+
+    /**
+     * Método que devuelve los permisos del rol como máscara de bits
+     * @return long con el bit de cada Permisos que tiene el rol
+     */
+    public long getMascaraPermisos() {
+        if (!mascaraCalculada) {
+            long nueva = 0;
+            if (permisos != null) {
+                for (Permisos permiso : permisos) {
+                    nueva |= permiso.bit();
+                }
+            }
+            mascara = nueva;
+            mascaraCalculada = true;
+        }
+        return mascara;
+    }
 
     /**
      * Método para saber si el rol tiene un Permiso
@@ -36,7 +65,7 @@ public class Rol {
      * @return boolean si tiene permiso o no
      */
     public boolean tienePermiso(Permisos permiso) {
-        return this.permisos.contains(permiso);
+        return (getMascaraPermisos() & permiso.bit()) != 0;
     }
 
     @Override
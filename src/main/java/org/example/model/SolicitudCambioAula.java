@@ -1,16 +1,12 @@
 package org.example.model;
 
-import org.example.enums.BloqueHorario;
 import org.example.enums.EstadoSolicitud;
 import org.example.enums.TipoSolicitud;
 import org.example.utils.Utils;
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 
 public class SolicitudCambioAula {
     private Integer id;  // Id único de la solicitud
@@ -21,16 +17,18 @@ public class SolicitudCambioAula {
     private TipoSolicitud tipoSolicitud;  // Tipo de cambio solicitado (temporal o cuatrimestral)
     private LocalDate fechaInicio;  // Fecha de inicio de la nueva reserva
     private LocalDate fechaFin;  // Fecha de fin de la nueva reserva
-    private Map<DayOfWeek, Set<BloqueHorario>> diasYBloques;  // Días de la semana y bloques solicitados
+    private DiasYBloques diasYBloques;  // Días de la semana y bloques solicitados
     private String comentarioEstado;  // Comentario del estado (motivo de rechazo, etc.)
     private String comentarioProfesor;  // Motivo del profesor para solicitar el cambio
     private LocalDateTime fechaHoraSolicitud;  // Fecha y hora en que se realizó la solicitud
+    private LocalDateTime fechaHoraResolucion;  // Fecha y hora en que se aprobó o rechazó, null si está pendiente
+    private long version;
 
 
     // Constructor, getters y setters
     public SolicitudCambioAula(Integer id, Profesor profesor, Reserva reservaOriginal, Aula nuevaAula,
                                TipoSolicitud tipoSolicitud, LocalDate fechaInicio, LocalDate fechaFin,
-                               Map<DayOfWeek, Set<BloqueHorario>> diasYBloques,
+                               DiasYBloques diasYBloques,
                                String comentarioProfesor) {
         this.id = id;
         this.profesor = profesor;
@@ -47,7 +45,7 @@ public class SolicitudCambioAula {
 
     public SolicitudCambioAula(Integer id, Profesor profesor, Reserva reservaOriginal, Aula nuevaAula,
                                EstadoSolicitud estadoSolicitud, TipoSolicitud tipoSolicitud,
-                               LocalDate fechaInicio, LocalDate fechaFin, Map<DayOfWeek, Set<BloqueHorario>> diasYBloques,
+                               LocalDate fechaInicio, LocalDate fechaFin, DiasYBloques diasYBloques,
                                String comentarioEstado, String comentarioProfesor, LocalDateTime fechaHoraSolicitud) {
         this.id = id;
         this.profesor = profesor;
@@ -63,6 +61,9 @@ public class SolicitudCambioAula {
         this.fechaHoraSolicitud = fechaHoraSolicitud;
     }
 
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
     public Integer getId() {
         return id;
     }
@@ -127,11 +128,11 @@ public class SolicitudCambioAula {
         this.fechaFin = fechaFin;
     }
 
-    public Map<DayOfWeek, Set<BloqueHorario>> getDiasYBloques() {
+    public DiasYBloques getDiasYBloques() {
         return diasYBloques;
     }
 
-    public void setDiasYBloques(Map<DayOfWeek, Set<BloqueHorario>> diasYBloques) {
+    public void setDiasYBloques(DiasYBloques diasYBloques) {
         this.diasYBloques = diasYBloques;
     }
 
@@ -159,6 +160,14 @@ public class SolicitudCambioAula {
         this.fechaHoraSolicitud = fechaHoraSolicitud;
     }
 
+    public LocalDateTime getFechaHoraResolucion() {
+        return fechaHoraResolucion;
+    }
+
+    public void setFechaHoraResolucion(LocalDateTime fechaHoraResolucion) {
+        this.fechaHoraResolucion = fechaHoraResolucion;
+    }
+
 
     @Override
     public boolean equals(Object o) {
@@ -12,6 +12,7 @@ public class Usuario {
     private String password;
     private Rol rol;
     private Profesor profesor;
+    private long version;
 
     public Usuario(Integer id,String username, String password, Rol rol,Profesor profesor) {
         this.id = id;
@@ -24,6 +25,9 @@ public class Usuario {
         this.id = id;
     }
 
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
     public Integer getId() {
         return id;
     }
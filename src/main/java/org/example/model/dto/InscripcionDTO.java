@@ -3,5 +3,13 @@ package org.example.model.dto;
 import java.time.LocalDate;
 
 public record InscripcionDTO(Integer id, int cantidadAlumnos, int margenAlumnos, LocalDate fechaFinInscripcion,
-                             int idAsignatura, String comision, int idProfesor) {
+                             int idAsignatura, String comision, int idProfesor, long version) {
+    /**
+     * Método que devuelve el mismo registro con otra versión
+     * @param version que va a tener
+     * @return InscripcionDTO copia con esa versión
+     */
+    public InscripcionDTO conVersion(long version) {
+        return new InscripcionDTO(id, cantidadAlumnos, margenAlumnos, fechaFinInscripcion, idAsignatura, comision, idProfesor, version);
+    }
 }
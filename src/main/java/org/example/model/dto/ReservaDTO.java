@@ -1,12 +1,17 @@
 package org.example.model.dto;
 
-import org.example.enums.BloqueHorario;
+import org.example.model.DiasYBloques;
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.util.Map;
-import java.util.Set;
 
 public record ReservaDTO (Integer id, LocalDate fechaInicio, LocalDate fechaFin, int idAula,
-                          int idInscripcion, Map<DayOfWeek, Set<BloqueHorario>> diasYBloques) {
+                          int idInscripcion, DiasYBloques diasYBloques, long version) {
+    /**
+     * Método que devuelve el mismo registro con otra versión
+     * @param version que va a tener
+     * @return ReservaDTO copia con esa versión
+     */
+    public ReservaDTO conVersion(long version) {
+        return new ReservaDTO(id, fechaInicio, fechaFin, idAula, idInscripcion, diasYBloques, version);
+    }
 }
@@ -1,17 +1,24 @@
 package org.example.model.dto;
 
-import org.example.enums.BloqueHorario;
 import org.example.enums.EstadoSolicitud;
 import org.example.enums.TipoSolicitud;
+import org.example.model.DiasYBloques;
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.Map;
-import java.util.Set;
 
 public record SolicitudCambioAulaDTO(Integer id, int idProfesor, int idReserva, int idAula, EstadoSolicitud estadoSolicitud,
                                      TipoSolicitud tipoSolicitud, LocalDate fechaInicio, LocalDate fechaFin,
-                                     Map<DayOfWeek, Set<BloqueHorario>> diasYBloques, String comentarioEstado,
-                                     String comentarioProfesor, LocalDateTime fechaHoraSolicitud) {
+                                     DiasYBloques diasYBloques, String comentarioEstado,
+                                     String comentarioProfesor, LocalDateTime fechaHoraSolicitud,
+                                     LocalDateTime fechaHoraResolucion, long version) {
+    /**
+     * Método que devuelve el mismo registro con otra versión
+     * @param version que va a tener
+     * @return SolicitudCambioAulaDTO copia con esa versión
+     */
+    public SolicitudCambioAulaDTO conVersion(long version) {
+        return new SolicitudCambioAulaDTO(id, idProfesor, idReserva, idAula, estadoSolicitud, tipoSolicitud, fechaInicio, fechaFin,
+                diasYBloques, comentarioEstado, comentarioProfesor, fechaHoraSolicitud, fechaHoraResolucion, version);
+    }
 }
@@ -1,4 +1,12 @@
 package org.example.model.dto;
 
-public record UsuarioDTO(Integer id,String username,String password,int idRol,int idProfesor) {
+public record UsuarioDTO(Integer id,String username,String password,int idRol,int idProfesor, long version) {
+    /**
+     * Método que devuelve el mismo registro con otra versión
+     * @param version que va a tener
+     * @return UsuarioDTO copia con esa versión
+     */
+    public UsuarioDTO conVersion(long version) {
+        return new UsuarioDTO(id, username, password, idRol, idProfesor, version);
+    }
 }
@@ -0,0 +1,1221 @@
+package org.example.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.example.exception.ConflictException;
+import org.example.exception.JsonNotFoundException;
+import org.example.exception.ModificacionConcurrenteException;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Almacén en memoria de un archivo JSON
+ * Carga el archivo una sola vez, responde las lecturas desde memoria
+ * y escribe cada cambio en el archivo sin volver a leerlo (write-through)
+ * Mantiene un índice por ID sincronizado con los datos para resolver findById en O(1)
+ * y los índices secundarios que registren los repositorios
+ * Hay un único almacén por ruta, compartido por todas las instancias del repositorio
+ * El archivo se lee y se escribe entidad por entidad con JsonReader y JsonWriter,
+ * sin armar el árbol JSON ni la lista completa en un paso intermedio
+ * Cada escritura completa del archivo es atómica (ver EscrituraDurable) y, dentro de un
+ * EscrituraDurable.grupo(), los cambios se llevan a disco una sola vez al cerrar el grupo
+ * Los almacenes creados con conDiario no reescriben el archivo en cada cambio:
+ * lo agregan a un DiarioJSON y cada tanto lo compactan en el archivo
+ * Los IDs nuevos los entrega una SecuenciaId guardada al lado del archivo, sin recorrer los datos
+ * Varios procesos pueden usar la misma carpeta ./json: cada lectura mira la versión del archivo (BloqueoArchivo)
+ * con el lock compartido y vuelve a leerlo si otro proceso lo cambió; cada cambio toma el lock exclusivo,
+ * se sincroniza con el disco antes de aplicarse y al terminar avanza la versión
+ * Dentro del proceso los hilos se coordinan con un StampedLock: las lecturas comparten el lock de lectura
+ * (buscarPorId ni siquiera lo toma si nadie escribe) y los cambios toman el de escritura; el hilo que
+ * lo tiene puede volver a entrar, así un cambio puede llamar a otro y un grupo lo mantiene hasta confirmarse
+ * Los almacenes declarados conVersion guardan en cada entidad un número de versión que sube con cada
+ * modificación; actualizarVerificado y actualizarUnico comparan la versión que trae la entidad (la que leyó
+ * quien la modifica) con la guardada y rechazan la modificación que pisaría el cambio de otra sesión
+ * @param <T> Recibe el tipo de Clase que se guarda en el JSON
+ */
+public class AlmacenJSON<T> {
+    private static final Map<String, AlmacenJSON<?>> almacenes = new ConcurrentHashMap<>();
+    // A partir de esta cantidad de resultados las copias se reparten entre los núcleos
+    private static final int UMBRAL_PARALELO = 2_000;
+
+    private final String ruta;
+    private final Supplier<Gson> gson;
+    private final Class<T> clase;
+    private final Function<T, Integer> id;
+    private final UnaryOperator<T> copia;
+    private final IndiceEnteros posiciones = new IndiceEnteros();
+    private final Map<String, IndiceAlmacen<T>> indices = new LinkedHashMap<>();
+    private final Set<String> clavesUnicas = new HashSet<>();
+    private final DiarioJSON<T> diario;
+    private List<T> datos;
+    private volatile SecuenciaId.Piso pisoDeIds;
+    private SecuenciaId secuencia;
+    private final BloqueoArchivo bloqueo;
+    // Lock exclusivo tomado por un cambio en curso (o por un grupo hasta que se confirme), si no null
+    private BloqueoArchivo.Tomado exclusivo;
+    // Versión del archivo que reflejan los datos en memoria
+    private long versionCargada;
+    // Versión de cada entidad y cómo copiarla con otra versión, si el almacén se declaró conVersion
+    private volatile ToLongFunction<T> version;
+    private volatile BiFunction<T, Long, T> conVersion;
+    private final StampedLock cerrojo = new StampedLock();
+    // Hilo que tiene el lock de escritura (un cambio en curso o un grupo sin confirmar) y su sello
+    private volatile Thread escritor;
+    private long selloEscritura;
+
+    private AlmacenJSON(String ruta, Supplier<Gson> gson, Class<T> clase,
+                        Function<T, Integer> id, UnaryOperator<T> copia, DiarioJSON<T> diario) {
+        this.ruta = ruta;
+        this.gson = gson;
+        this.clase = clase;
+        this.id = id;
+        this.copia = copia;
+        this.diario = diario;
+        this.bloqueo = new BloqueoArchivo(BloqueoArchivo.rutaPara(ruta));
+    }
+
+    /**
+     * Método para obtener el almacén de una ruta, creándolo la primera vez
+     * @param ruta al archivo JSON
+     * @param gson proveedor del Gson que usa el repositorio
+     * @param clase clase de las entidades que se guardan en el JSON
+     * @param id función que devuelve el ID de una entidad
+     * @param copia función que copia una entidad para no compartir instancias mutables
+     * @return AlmacenJSON<T> compartido para esa ruta
+     * @param <T> tipo de Clase que se guarda en el JSON
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> AlmacenJSON<T> de(String ruta, Supplier<Gson> gson, Class<T> clase,
+                                        Function<T, Integer> id, UnaryOperator<T> copia) {
+        return (AlmacenJSON<T>) almacenes.computeIfAbsent(ruta,
+                r -> new AlmacenJSON<>(r, gson, clase, id, copia, null));
+    }
+
+    /**
+     * Método para obtener el almacén de una ruta que registra los cambios en un diario
+     * Cada alta, modificación o baja agrega una línea al diario en lugar de reescribir el archivo
+     * @param ruta al archivo JSON
+     * @param gson proveedor del Gson que usa el repositorio
+     * @param clase clase de las entidades que se guardan en el JSON
+     * @param id función que devuelve el ID de una entidad
+     * @param copia función que copia una entidad para no compartir instancias mutables
+     * @return AlmacenJSON<T> compartido para esa ruta
+     * @param <T> tipo de Clase que se guarda en el JSON
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> AlmacenJSON<T> conDiario(String ruta, Supplier<Gson> gson, Class<T> clase,
+                                               Function<T, Integer> id, UnaryOperator<T> copia) {
+        return (AlmacenJSON<T>) almacenes.computeIfAbsent(ruta,
+                r -> new AlmacenJSON<>(r, gson, clase, id, copia, new DiarioJSON<>(DiarioJSON.rutaPara(r), clase)));
+    }
+
+    /**
+     * Método para copiar entidades mutables serializándolas con el Gson del repositorio
+     * @param gson proveedor del Gson que usa el repositorio
+     * @param clase clase de la entidad
+     * @return UnaryOperator<T> que devuelve una copia independiente de la entidad
+     * @param <T> tipo de Clase que se guarda en el JSON
+     */
+    public static <T> UnaryOperator<T> copiaConGson(Supplier<Gson> gson, Class<T> clase) {
+        return t -> gson.get().fromJson(gson.get().toJsonTree(t, clase), clase);
+    }
+
+    /**
+     * Método para declarar una clave secundaria del almacén, simple o compuesta (por ejemplo un record)
+     * Se mantiene con un IndiceClave sincronizado con cada alta, modificación y baja
+     * Si es única, agregarUnico y actualizarUnico rechazan las entidades que la repiten
+     * Declararla de nuevo no hace nada, así que se puede llamar al crear cada instancia del repositorio
+     * @param nombre de la clave
+     * @param clave función que devuelve la clave de una entidad
+     * @param unica si dos entidades no pueden compartir la clave
+     * @return AlmacenJSON<T> el mismo almacén, para encadenar declaraciones
+     * @param <K> tipo de la clave
+     */
+    public <K> AlmacenJSON<T> conClave(String nombre, Function<T, K> clave, boolean unica) {
+        // Se declara al crear el repositorio, fuera de cualquier cambio, así que se espera el lock sin límite
+        boolean soltar = escritor != Thread.currentThread();
+        long escritura = soltar ? cerrojo.writeLock() : 0;
+        try {
+            if (!indices.containsKey(nombre)) {
+                var indice = new IndiceClave<>(clave);
+                // Si todavía no se cargó el archivo, el índice se arma al cargarlo
+                if (datos != null) {
+                    indice.reconstruir(datos);
+                }
+                indices.put(nombre, indice);
+            }
+            if (unica) {
+                clavesUnicas.add(nombre);
+            }
+        } finally {
+            if (soltar) {
+                cerrojo.unlockWrite(escritura);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Método para declarar que las entidades llevan su número de versión
+     * La versión la sube solo el almacén, en cada modificación; los modelos y los DTO solo llevan
+     * la versión que se leyó, para devolverla sin tocar al modificar
+     * actualizar guarda cada modificación con la versión siguiente a la guardada, y actualizarVerificado
+     * y actualizarUnico rechazan la entidad si su versión ya no es la guardada
+     * Las entidades guardadas antes de tener versión se leen con versión 0
+     * @param version función que devuelve la versión de una entidad
+     * @param conVersion función que devuelve la entidad (ya copiada) con otra versión
+     * @return AlmacenJSON<T> el mismo almacén, para encadenar declaraciones
+     */
+    public AlmacenJSON<T> conVersion(ToLongFunction<T> version, BiFunction<T, Long, T> conVersion) {
+        this.conVersion = conVersion;
+        this.version = version;
+        return this;
+    }
+
+    /**
+     * Método para declarar IDs usados fuera del almacén (por ejemplo en un archivo histórico)
+     * Solo se tiene en cuenta cuando la secuencia arranca sin archivo, para no repetir esos IDs
+     * @param piso que devuelve el ID más alto usado fuera del almacén
+     * @return AlmacenJSON<T> el mismo almacén, para encadenar declaraciones
+     */
+    public AlmacenJSON<T> conPisoDeIds(SecuenciaId.Piso piso) {
+        this.pisoDeIds = piso;
+        return this;
+    }
+
+    /**
+     * Método para obtener un índice secundario, registrándolo la primera vez
+     * El índice se construye con los datos actuales y desde ahí se actualiza con cada cambio
+     * @param nombre con el que se registra el índice
+     * @param crear proveedor del índice si todavía no está registrado
+     * @return I índice registrado con ese nombre
+     * @param <I> tipo del índice
+     * @throws JsonNotFoundException si no se puede leer el archivo JSON
+     */
+    @SuppressWarnings("unchecked")
+    public <I extends IndiceAlmacen<T>> I indice(String nombre, Supplier<I> crear) throws JsonNotFoundException {
+        long lectura = empezarLectura();
+        try {
+            var indice = indices.get(nombre);
+            if (indice != null) {
+                return (I) indice;
+            }
+        } finally {
+            terminarLectura(lectura);
+        }
+        // No está registrado: se registra con el lock de escritura, por si otro hilo lo registró mientras tanto
+        boolean soltar = tomarEscritura();
+        try {
+            var lista = cargar();
+            var indice = indices.get(nombre);
+            if (indice == null) {
+                indice = crear.get();
+                indice.reconstruir(lista);
+                indices.put(nombre, indice);
+            }
+            return (I) indice;
+        } finally {
+            if (soltar) {
+                soltarEscritura();
+            }
+        }
+    }
+
+    /**
+     * Método que devuelve una copia de todas las entidades en memoria
+     * @return List<T> lista nueva con las entidades
+     * @throws JsonNotFoundException si no se puede leer el archivo JSON
+     */
+    public List<T> obtenerTodos() throws JsonNotFoundException {
+        long lectura = empezarLectura();
+        try {
+            var lista = new ArrayList<T>(datos.size());
+            for (T t : datos) {
+                lista.add(copia.apply(t));
+            }
+            return lista;
+        } finally {
+            terminarLectura(lectura);
+        }
+    }
+
+    /**
+     * Método que devuelve una copia de las entidades que cumplen un filtro
+     * Solo se copian las que pasan el filtro, no la lista entera
+     * @param filtro que deben cumplir las entidades
+     * @return List<T> lista nueva con las entidades que cumplen el filtro
+     * @throws JsonNotFoundException si no se puede leer el archivo JSON
+     */
+    public List<T> buscar(Predicate<T> filtro) throws JsonNotFoundException {
+        long lectura = empezarLectura();
+        try {
+            var lista = new ArrayList<T>();
+            for (T t : datos) {
+                if (filtro.test(t)) {
+                    lista.add(copia.apply(t));
+                }
+            }
+            return lista;
+        } finally {
+            terminarLectura(lectura);
+        }
+    }
+
+    /**
+     * Método que devuelve una copia de la primera entidad que cumple un filtro
+     * @param filtro que debe cumplir la entidad
+     * @return Optional<T> con una copia de la entidad u Optional.empty() si ninguna lo cumple
+     * @throws JsonNotFoundException si no se puede leer el archivo JSON
+     */
+    public Optional<T> buscarPrimero(Predicate<T> filtro) throws JsonNotFoundException {
+        long lectura = empezarLectura();
+        try {
+            for (T t : datos) {
+                if (filtro.test(t)) {
+                    return Optional.of(copia.apply(t));
+                }
+            }
+            return Optional.empty();
+        } finally {
+            terminarLectura(lectura);
+        }
+    }
+
+    /**
+     * Método para buscar todas las entidades con un valor de una clave declarada con conClave
+     * Se devuelven en el mismo orden que tienen en el archivo
+     * @param nombre de la clave
+     * @param valor que se busca
+     * @return List<T> lista nueva con las entidades que coinciden
+     * @param <K> tipo de la clave
+     * @throws JsonNotFoundException si no se puede leer el archivo JSON
+     */
+    public <K> List<T> buscarTodosPorClave(String nombre, K valor) throws JsonNotFoundException {
+        return buscarTodosPorClave(nombre, valor, t -> true);
+    }
+
+    /**
+     * Método para buscar las entidades con un valor de una clave declarada con conClave que cumplen un filtro
+     * Solo se recorren las entidades con ese valor, y de ellas se copian las que cumplen el filtro
+     * Se devuelven en el mismo orden que tienen en el archivo
+     * @param nombre de la clave
+     * @param valor que se busca
+     * @param filtro que además deben cumplir las entidades
+     * @return List<T> lista nueva con las entidades que coinciden
+     * @param <K> tipo de la clave
+     * @throws JsonNotFoundException si no se puede leer el archivo JSON
+     */
+    public <K> List<T> buscarTodosPorClave(String nombre, K valor, Predicate<T> filtro) throws JsonNotFoundException {
+        long lectura = empezarLectura();
+        try {
+            var coincidencias = new ArrayList<T>();
+            for (T t : claveDeclarada(nombre, valor).todos(valor)) {
+                if (filtro.test(t)) {
+                    coincidencias.add(t);
+                }
+            }
+            return copiasEnOrden(coincidencias);
+        } finally {
+            terminarLectura(lectura);
+        }
+    }
+
+    /**
+     * Método que ordena entidades del almacén por su posición en el archivo y las copia
+     * @param entidades sin copiar
+     * @return List<T> la misma lista, ordenada y con copias
+     */
+    private List<T> copiasEnOrden(List<T> entidades) {
+        // El índice agrega al final las entidades modificadas, así que ordenamos por posición
+        entidades.sort(Comparator.comparingInt(t -> posicion(id.apply(t))));
+        entidades.replaceAll(copia);
+        return entidades;
+    }
+
+    /**
+     * Método para buscar una entidad por una clave declarada con conClave
+     * @param nombre de la clave
+     * @param valor que se busca
+     * @return Optional<T> con una copia de la entidad u Optional.empty() si no existe
+     * @param <K> tipo de la clave
+     * @throws JsonNotFoundException si no se puede leer el archivo JSON
+     */
+    public <K> Optional<T> buscarPorClave(String nombre, K valor) throws JsonNotFoundException {
+        long lectura = empezarLectura();
+        try {
+            return claveDeclarada(nombre, valor).buscar(valor).map(copia);
+        } finally {
+            terminarLectura(lectura);
+        }
+    }
+
+    /**
+     * Método que devuelve el índice de una clave declarada con conClave
+     * Se llama con la lectura empezada, así los datos ya están cargados
+     * @param nombre de la clave
+     * @param valor que se va a buscar, solo para inferir el tipo de la clave
+     * @return IndiceClave<T, K> índice de la clave
+     * @param <K> tipo de la clave
+     */
+    @SuppressWarnings("unchecked")
+    private <K> IndiceClave<T, K> claveDeclarada(String nombre, K valor) {
+        if (!(indices.get(nombre) instanceof IndiceClave<T, ?> indice)) {
+            throw new IllegalStateException(STR."La clave \{nombre} no está declarada en \{ruta}");
+        }
+        return (IndiceClave<T, K>) indice;
+    }
+
+    /**
+     * Método para buscar una entidad por ID
+     * Primero se intenta una lectura optimista, sin tomar ningún lock: si ningún hilo escribió
+     * mientras tanto (validate) la entidad encontrada es la correcta; si no, se repite con el lock de lectura
+     * @param idBuscado ID de la entidad
+     * @return Optional<T> con una copia de la entidad u Optional.empty() si no existe
+     * @throws JsonNotFoundException si no se puede leer el archivo JSON
+     */
+    public Optional<T> buscarPorId(Integer idBuscado) throws JsonNotFoundException {
+        long optimista = escritor == Thread.currentThread() ? 0 : cerrojo.tryOptimisticRead();
+        if (optimista != 0) {
+            T encontrada = null;
+            boolean alDia;
+            try {
+                var lista = datos;
+                // Sin lock: si la versión no coincide (o se leyó a medio escribir) se va por el lock de lectura
+                alDia = lista != null && bloqueo.versionSinBloquear() == versionCargada;
+                int posicion = alDia ? posicion(idBuscado) : IndiceEnteros.AUSENTE;
+                if (posicion != IndiceEnteros.AUSENTE) {
+                    encontrada = lista.get(posicion);
+                }
+            } catch (RuntimeException e) {
+                // Se leyó a mitad de un cambio de otro hilo; validate no pasaría, vamos por el lock
+                alDia = false;
+            }
+            if (alDia && cerrojo.validate(optimista)) {
+                return Optional.ofNullable(encontrada).map(copia);
+            }
+        }
+        long lectura = empezarLectura();
+        try {
+            int posicion = posicion(idBuscado);
+            return posicion == IndiceEnteros.AUSENTE ? Optional.empty() : Optional.of(copia.apply(datos.get(posicion)));
+        } finally {
+            terminarLectura(lectura);
+        }
+    }
+
+    /**
+     * Método para buscar varias entidades por ID
+     * Se devuelven en el mismo orden que tienen en el archivo; los ID que no existen se ignoran
+     * Si son muchas, las copias se hacen en paralelo
+     * @param ids de las entidades
+     * @return List<T> lista nueva con copias de las entidades
+     * @throws JsonNotFoundException si no se puede leer el archivo JSON
+     */
+    public List<T> buscarPorIds(int[] ids) throws JsonNotFoundException {
+        long lectura = empezarLectura();
+        try {
+            var encontradas = new int[ids.length];
+            int cantidad = 0;
+            for (int idBuscado : ids) {
+                int posicion = posiciones.obtener(idBuscado);
+                if (posicion != IndiceEnteros.AUSENTE) {
+                    encontradas[cantidad++] = posicion;
+                }
+            }
+            var stream = Arrays.stream(encontradas, 0, cantidad).sorted().mapToObj(datos::get);
+            if (cantidad >= UMBRAL_PARALELO) {
+                stream = stream.parallel();
+            }
+            // Los hilos del stream leen mientras este hilo tiene el lock de lectura
+            return new ArrayList<>(stream.map(copia).toList());
+        } finally {
+            terminarLectura(lectura);
+        }
+    }
+
+    /**
+     * Método para asegurar que el almacén está cargado y al día con el archivo, sin recorrer los datos
+     * Si hace falta leerlo, al leerlo también se compacta el diario y se recuperan las unidades de trabajo
+     * @throws JsonNotFoundException si no se puede leer el archivo JSON
+     */
+    public void asegurarCargado() throws JsonNotFoundException {
+        terminarLectura(empezarLectura());
+    }
+
+    /**
+     * Método que devuelve el ID más alto guardado
+     * No depende del orden de la lista; para dar de alta se usa proximoId
+     * @return int ID más alto o 0 si no hay elementos
+     * @throws JsonNotFoundException si no se puede leer el archivo JSON
+     */
+    public int ultimoId() throws JsonNotFoundException {
+        long lectura = empezarLectura();
+        try {
+            int maximo = 0;
+            for (T t : datos) {
+                var idGuardado = id.apply(t);
+                if (idGuardado != null && idGuardado > maximo) {
+                    maximo = idGuardado;
+                }
+            }
+            return maximo;
+        } finally {
+            terminarLectura(lectura);
+        }
+    }
+
+    /**
+     * Método que entrega el ID para una entidad nueva
+     * No lee el archivo JSON y no repite IDs aunque se hayan borrado (ver SecuenciaId)
+     * @return int ID nuevo
+     * @throws JsonNotFoundException si no se puede leer o escribir el archivo de la secuencia
+     */
+    public int proximoId() throws JsonNotFoundException {
+        return secuencia().proximo();
+    }
+
+    /**
+     * Método que reserva IDs consecutivos para un alta en lote
+     * @param cantidad de IDs que se necesitan
+     * @return int primer ID del bloque
+     * @throws JsonNotFoundException si no se puede leer o escribir el archivo de la secuencia
+     */
+    public int reservarIds(int cantidad) throws JsonNotFoundException {
+        return secuencia().reservar(cantidad);
+    }
+
+    private synchronized SecuenciaId secuencia() {
+        if (secuencia == null) {
+            // El piso solo se consulta si la secuencia no tiene archivo, así que leer los datos ahí no es un problema
+            secuencia = new SecuenciaId(SecuenciaId.rutaPara(ruta), () -> {
+                int externo = pisoDeIds == null ? 0 : pisoDeIds.ultimoId();
+                return Math.max(ultimoId(), externo);
+            });
+        }
+        return secuencia;
+    }
+
+    /**
+     * Método para agregar una entidad y persistir el cambio
+     * @param t entidad nueva, ya con su ID asignado
+     * @throws JsonNotFoundException si no se puede escribir el archivo JSON
+     */
+    public void agregar(T t) throws JsonNotFoundException {
+        boolean soltar = empezarCambio();
+        try {
+            var lista = cargar();
+            var nueva = copia.apply(t);
+            var idNuevo = id.apply(nueva);
+            if (idNuevo != null && posicion(idNuevo) == IndiceEnteros.AUSENTE) {
+                posiciones.guardar(idNuevo, lista.size());
+            }
+            lista.add(nueva);
+            indices.values().forEach(indice -> indice.agregar(nueva));
+            registrar(DiarioJSON.Operacion.ALTA, nueva, idNuevo);
+        } finally {
+            terminarCambio(soltar);
+        }
+    }
+
+    /**
+     * Método para agregar una entidad verificando las claves únicas
+     * La verificación y el alta se hacen con el almacén tomado, así que dos altas con la misma
+     * clave no pueden pasar las dos
+     * @param t entidad nueva, ya con su ID asignado
+     * @throws JsonNotFoundException si no se puede escribir el archivo JSON
+     * @throws ConflictException si otra entidad ya tiene alguna de sus claves únicas
+     */
+    public void agregarUnico(T t) throws JsonNotFoundException, ConflictException {
+        boolean soltar = empezarCambio();
+        try {
+            cargar();
+            verificarClavesUnicas(t);
+            agregar(t);
+        } finally {
+            terminarCambio(soltar);
+        }
+    }
+
+    /**
+     * Método para reemplazar la entidad con el mismo ID verificando las claves únicas
+     * y que otro proceso no la haya modificado (ver actualizarVerificado)
+     * @param t entidad actualizada
+     * @return boolean false si no existe una entidad con ese ID
+     * @throws JsonNotFoundException si no se puede escribir el archivo JSON
+     * @throws ModificacionConcurrenteException si otro proceso modificó la entidad
+     * @throws ConflictException si otra entidad ya tiene alguna de sus claves únicas
+     */
+    public boolean actualizarUnico(T t) throws JsonNotFoundException, ConflictException {
+        boolean soltar = empezarCambio();
+        try {
+            cargar();
+            verificarVersion(t);
+            verificarClavesUnicas(t);
+            return actualizar(t);
+        } finally {
+            terminarCambio(soltar);
+        }
+    }
+
+    /**
+     * Método para reemplazar la entidad con el mismo ID si nadie la modificó desde que se leyó
+     * Con el lock exclusivo tomado y los datos sincronizados con el disco, se compara la versión que trae
+     * la entidad con la guardada; si otra sesión la modificó mientras tanto, la modificación pisaría
+     * ese cambio y se rechaza sin escribir nada
+     * @param t entidad actualizada, con la versión que tenía cuando se leyó
+     * @return boolean false si no existe una entidad con ese ID
+     * @throws JsonNotFoundException si no se puede escribir el archivo JSON
+     * @throws ModificacionConcurrenteException si otra sesión modificó la entidad
+     */
+    public boolean actualizarVerificado(T t) throws JsonNotFoundException, ModificacionConcurrenteException {
+        boolean soltar = empezarCambio();
+        try {
+            cargar();
+            verificarVersion(t);
+            return actualizar(t);
+        } finally {
+            terminarCambio(soltar);
+        }
+    }
+
+    /**
+     * Método que verifica con el almacén tomado que las entidades traigan la versión guardada, sin escribir nada
+     * Lo usa UnidadDeTrabajo antes de escribir la intención: dentro del grupo el almacén queda tomado
+     * hasta que se confirma, así nadie modifica las entidades entre la verificación y el cambio
+     * @param entidades que se van a modificar, con la versión que tenían cuando se leyeron
+     * @throws JsonNotFoundException si no se puede leer el archivo JSON
+     * @throws ModificacionConcurrenteException si otra sesión modificó alguna de las entidades
+     */
+    void verificarVersiones(List<T> entidades) throws JsonNotFoundException, ModificacionConcurrenteException {
+        boolean soltar = empezarCambio();
+        try {
+            cargar();
+            for (T t : entidades) {
+                verificarVersion(t);
+            }
+        } finally {
+            terminarCambio(soltar);
+        }
+    }
+
+    /**
+     * Método que verifica que la entidad traiga la versión guardada
+     * Se llama con el lock exclusivo tomado y los datos cargados; sin versiones declaradas no verifica nada
+     * @param t entidad que se quiere guardar
+     * @throws ModificacionConcurrenteException si la versión guardada es otra
+     */
+    private void verificarVersion(T t) throws ModificacionConcurrenteException {
+        if (version == null) {
+            return;
+        }
+        var idEntidad = id.apply(t);
+        int posicion = posicion(idEntidad);
+        if (posicion != IndiceEnteros.AUSENTE && version.applyAsLong(datos.get(posicion)) != version.applyAsLong(t)) {
+            throw new ModificacionConcurrenteException(
+                    STR."El registro con ID \{idEntidad} fue modificado en otra sesión, vuelva a cargarlo e intente de nuevo");
+        }
+    }
+
+    /**
+     * Método que verifica que ninguna otra entidad (con otro ID) tenga las claves únicas de t
+     * @param t entidad que se quiere guardar
+     * @throws ConflictException si alguna clave única ya está usada
+     */
+    @SuppressWarnings("unchecked")
+    private void verificarClavesUnicas(T t) throws ConflictException {
+        var idEntidad = id.apply(t);
+        for (var nombre : clavesUnicas) {
+            var indice = (IndiceClave<T, Object>) indices.get(nombre);
+            var valor = indice.claveDe(t);
+            for (T otra : indice.todos(valor)) {
+                if (!Objects.equals(id.apply(otra), idEntidad)) {
+                    throw new ConflictException(STR."Ya existe otro registro con el mismo \{nombre}: \{valor}");
+                }
+            }
+        }
+    }
+
+    /**
+     * Método para reemplazar la entidad con el mismo ID y persistir el cambio
+     * @param t entidad actualizada
+     * @return boolean false si no existe una entidad con ese ID
+     * @throws JsonNotFoundException si no se puede escribir el archivo JSON
+     */
+    public boolean actualizar(T t) throws JsonNotFoundException {
+        boolean soltar = empezarCambio();
+        try {
+            cargar();
+            int posicion = posicion(id.apply(t));
+            if (posicion == IndiceEnteros.AUSENTE) {
+                return false;
+            }
+            var anterior = datos.get(posicion);
+            // Cada modificación deja la entidad en la versión siguiente a la guardada
+            var nueva = version == null ? copia.apply(t)
+                    : conVersion.apply(copia.apply(t), version.applyAsLong(anterior) + 1);
+            datos.set(posicion, nueva);
+            indices.values().forEach(indice -> {
+                indice.quitar(anterior);
+                indice.agregar(nueva);
+            });
+            registrar(DiarioJSON.Operacion.MODIFICACION, nueva, id.apply(nueva));
+            return true;
+        } finally {
+            terminarCambio(soltar);
+        }
+    }
+
+    /**
+     * Método para borrar la entidad con ese ID y persistir el cambio
+     * @param idBorrar ID de la entidad a borrar
+     * @throws JsonNotFoundException si no se puede escribir el archivo JSON
+     */
+    public void eliminar(Integer idBorrar) throws JsonNotFoundException {
+        boolean soltar = empezarCambio();
+        try {
+            cargar();
+            int posicion = posicion(idBorrar);
+            if (posicion != IndiceEnteros.AUSENTE) {
+                var borrada = datos.remove(posicion);
+                indices.values().forEach(indice -> indice.quitar(borrada));
+                // Las entidades que estaban después se corren un lugar, reconstruimos el índice
+                indexar();
+                registrar(DiarioJSON.Operacion.BAJA, null, idBorrar);
+            }
+        } finally {
+            terminarCambio(soltar);
+        }
+    }
+
+    /**
+     * Método para borrar varias entidades de una vez y persistir el cambio
+     * A diferencia de llamar a eliminar por cada una, el índice de posiciones se reconstruye una sola vez
+     * @param idsBorrar IDs de las entidades a borrar, los que no existen se ignoran
+     * @throws JsonNotFoundException si no se puede escribir el archivo JSON
+     */
+    public void eliminarTodos(Collection<Integer> idsBorrar) throws JsonNotFoundException {
+        // Con el grupo las bajas se escriben juntas al final, con un solo fsync o una sola reescritura
+        try (var grupo = EscrituraDurable.grupo()) {
+            boolean soltar = empezarCambio();
+            try {
+                cargar();
+                var borrar = new HashSet<>(idsBorrar);
+                var borradas = new ArrayList<T>();
+                datos.removeIf(t -> {
+                    if (!borrar.contains(id.apply(t))) {
+                        return false;
+                    }
+                    borradas.add(t);
+                    return true;
+                });
+                if (borradas.isEmpty()) {
+                    return;
+                }
+                for (T borrada : borradas) {
+                    indices.values().forEach(indice -> indice.quitar(borrada));
+                }
+                indexar();
+                for (T borrada : borradas) {
+                    registrar(DiarioJSON.Operacion.BAJA, null, id.apply(borrada));
+                }
+            } finally {
+                terminarCambio(soltar);
+            }
+        }
+    }
+
+    /**
+     * Método para reemplazar todo el contenido y persistirlo
+     * @param lista nuevas entidades
+     * @throws JsonNotFoundException si no se puede escribir el archivo JSON
+     */
+    public void reemplazarTodos(List<T> lista) throws JsonNotFoundException {
+        boolean soltar = empezarCambio();
+        try {
+            datos = new ArrayList<>(lista.size());
+            for (T t : lista) {
+                datos.add(copia.apply(t));
+            }
+            indexar();
+            indices.values().forEach(indice -> indice.reconstruir(datos));
+            exclusivo.modificado();
+            compactar();
+        } finally {
+            terminarCambio(soltar);
+        }
+    }
+
+    /**
+     * Método que devuelve los datos en memoria, al día con el archivo
+     * Se llama con el lock de escritura del almacén tomado
+     * Solo se mira la versión del archivo con el lock compartido, así las lecturas de distintos procesos
+     * no se frenan entre sí y esperan únicamente a que termine el cambio de otro proceso;
+     * si otro proceso lo cambió (o todavía no se leyó) se vuelve a leer con el lock exclusivo,
+     * porque al leerlo puede hacer falta compactar el diario o terminar de aplicar una unidad de trabajo
+     * @return List<T> datos en memoria
+     * @throws JsonNotFoundException si no se puede leer el archivo JSON
+     */
+    private List<T> cargar() throws JsonNotFoundException {
+        if (exclusivo != null) {
+            // Hay un cambio en curso con el archivo tomado: la memoria ya se sincronizó al tomarlo
+            if (datos == null) {
+                sincronizar();
+            }
+            return datos;
+        }
+        if (!alDia()) {
+            exclusivo = bloqueo.exclusivo();
+            try {
+                sincronizar();
+            } finally {
+                soltarExclusivo();
+            }
+        }
+        return datos;
+    }
+
+    private boolean alDia() throws JsonNotFoundException {
+        return datos != null && bloqueo.version() == versionCargada;
+    }
+
+    /**
+     * Método que empieza una lectura: toma el lock de lectura con los datos al día con el archivo
+     * Si están viejos pasa a escritura para volver a leerlo y después vuelve a lectura
+     * El hilo que ya tiene el lock de escritura lee sin tomar nada más
+     * @return long sello que hay que devolver con terminarLectura
+     * @throws JsonNotFoundException si no se consigue el lock o no se puede leer el archivo JSON
+     */
+    private long empezarLectura() throws JsonNotFoundException {
+        if (escritor == Thread.currentThread()) {
+            cargar();
+            return 0;
+        }
+        long lectura = esperar(cerrojo::tryReadLock);
+        try {
+            if (alDia()) {
+                return lectura;
+            }
+        } catch (JsonNotFoundException e) {
+            cerrojo.unlockRead(lectura);
+            throw e;
+        }
+        long escritura = cerrojo.tryConvertToWriteLock(lectura);
+        if (escritura == 0) {
+            cerrojo.unlockRead(lectura);
+            escritura = esperar(cerrojo::tryWriteLock);
+        }
+        escritor = Thread.currentThread();
+        try {
+            // Otro hilo pudo haberlo leído mientras esperábamos, cargar lo vuelve a mirar
+            cargar();
+        } catch (JsonNotFoundException e) {
+            escritor = null;
+            cerrojo.unlockWrite(escritura);
+            throw e;
+        }
+        escritor = null;
+        return cerrojo.tryConvertToReadLock(escritura);
+    }
+
+    private void terminarLectura(long lectura) {
+        if (lectura != 0) {
+            cerrojo.unlockRead(lectura);
+        }
+    }
+
+    /**
+     * Método para tomar el lock de escritura del almacén si este hilo no lo tiene
+     * @return boolean true si se tomó y hay que soltarlo con soltarEscritura
+     * @throws JsonNotFoundException si no se consigue el lock a tiempo
+     */
+    private boolean tomarEscritura() throws JsonNotFoundException {
+        if (escritor == Thread.currentThread()) {
+            return false;
+        }
+        selloEscritura = esperar(cerrojo::tryWriteLock);
+        escritor = Thread.currentThread();
+        return true;
+    }
+
+    private void soltarEscritura() {
+        escritor = null;
+        cerrojo.unlockWrite(selloEscritura);
+    }
+
+    /**
+     * Interfaz para pedir un lock del StampedLock con tiempo de espera
+     */
+    private interface Espera {
+        long intentar(long tiempo, TimeUnit unidad) throws InterruptedException;
+    }
+
+    /**
+     * Método que espera un lock del almacén lo mismo que se espera el del archivo (ver BloqueoArchivo)
+     * Así un hilo que no lo suelta no deja colgados para siempre a los demás
+     * @param espera que intenta tomar el lock, tryReadLock o tryWriteLock
+     * @return long sello del lock
+     * @throws JsonNotFoundException si no se consigue el lock a tiempo
+     */
+    private long esperar(Espera espera) throws JsonNotFoundException {
+        try {
+            long sello = espera.intentar(BloqueoArchivo.ESPERA_MS, TimeUnit.MILLISECONDS);
+            if (sello != 0) {
+                return sello;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new JsonNotFoundException(STR."No se pudo bloquear el archivo JSON: \{ruta}");
+    }
+
+    /**
+     * Método que vuelve a leer el archivo si su versión no es la que está en memoria
+     * Se llama con el lock exclusivo tomado
+     * @throws JsonNotFoundException si no se puede leer el archivo JSON
+     */
+    private void sincronizar() throws JsonNotFoundException {
+        long version = exclusivo.version();
+        if (datos != null && version == versionCargada) {
+            return;
+        }
+        datos = null;
+        leerArchivo();
+        versionCargada = version;
+    }
+
+    /**
+     * Método que lee el archivo, le aplica el diario y arma los índices
+     * @throws JsonNotFoundException si no se puede leer el archivo JSON
+     */
+    private void leerArchivo() throws JsonNotFoundException {
+        var g = gson.get();
+        try (JsonReader reader = g.newJsonReader(new BufferedReader(new FileReader(ruta)))) {
+            datos = leer(reader, g.getAdapter(clase));
+            indexar();
+        } catch (IOException | JsonParseException e) {
+            datos = null;
+            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
+        }
+        if (diario != null) {
+            reproducirDiario(g);
+        }
+        recuperarUnidadDeTrabajo();
+        indices.values().forEach(indice -> indice.reconstruir(datos));
+    }
+
+    /**
+     * Método que toma el lock exclusivo para un cambio y sincroniza la memoria con el archivo
+     * Dentro de un grupo el lock queda tomado hasta que se confirma el grupo, después de escribir
+     * @return boolean true si quien llama tiene que soltar el lock con terminarCambio
+     * @throws JsonNotFoundException si no se consigue el lock o no se puede leer el archivo JSON
+     */
+    private boolean empezarCambio() throws JsonNotFoundException {
+        if (!tomarEscritura()) {
+            // Ya lo tiene este hilo: el cambio que nos llamó o el grupo abierto
+            return false;
+        }
+        try {
+            exclusivo = bloqueo.exclusivo();
+            sincronizar();
+        } catch (JsonNotFoundException e) {
+            soltarCambio();
+            throw e;
+        }
+        return !EscrituraDurable.posponer(this, this::confirmarGrupo);
+    }
+
+    private void terminarCambio(boolean soltar) throws JsonNotFoundException {
+        if (soltar) {
+            soltarCambio();
+        }
+    }
+
+    /**
+     * Método que suelta el lock exclusivo del archivo y después el de escritura del almacén
+     * @throws JsonNotFoundException si no se puede escribir la versión
+     */
+    private void soltarCambio() throws JsonNotFoundException {
+        try {
+            if (exclusivo != null) {
+                soltarExclusivo();
+            }
+        } finally {
+            soltarEscritura();
+        }
+    }
+
+    /**
+     * Método que suelta el lock exclusivo; si hubo cambios avanza la versión del archivo
+     * @throws JsonNotFoundException si no se puede escribir la versión
+     */
+    private void soltarExclusivo() throws JsonNotFoundException {
+        var tomado = exclusivo;
+        exclusivo = null;
+        versionCargada = tomado.versionAlSoltar();
+        tomado.close();
+    }
+
+    /**
+     * Método que aplica los cambios de una UnidadDeTrabajo que se cortó antes de llegar a este archivo
+     * @throws JsonNotFoundException si no se puede leer el archivo de intención o persistir los cambios
+     */
+    private void recuperarUnidadDeTrabajo() throws JsonNotFoundException {
+        boolean aplicado;
+        try {
+            aplicado = UnidadDeTrabajo.recuperar(this, aplicador());
+        } catch (IOException | JsonNotFoundException e) {
+            datos = null;
+            posiciones.limpiar();
+            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
+        }
+        if (aplicado) {
+            exclusivo.modificado();
+            compactar();
+        }
+    }
+
+    /**
+     * Método que devuelve el aplicador que reemplaza, agrega o borra por ID sobre los datos en memoria
+     * Lo usan el diario y la recuperación de unidades de trabajo
+     * @return DiarioJSON.Aplicador<T> que trabaja sobre los datos cargados
+     */
+    private DiarioJSON.Aplicador<T> aplicador() {
+        return new DiarioJSON.Aplicador<>() {
+            @Override
+            public void guardar(T t) {
+                var idEntidad = id.apply(t);
+                int posicion = posicion(idEntidad);
+                if (posicion == IndiceEnteros.AUSENTE) {
+                    if (idEntidad != null) {
+                        posiciones.guardar(idEntidad, datos.size());
+                    }
+                    datos.add(t);
+                } else {
+                    datos.set(posicion, t);
+                }
+            }
+
+            @Override
+            public void borrar(Integer idBorrar) {
+                int posicion = posicion(idBorrar);
+                if (posicion != IndiceEnteros.AUSENTE) {
+                    datos.remove(posicion);
+                    indexar();
+                }
+            }
+        };
+    }
+
+    String getRuta() {
+        return ruta;
+    }
+
+    void escribirEntidad(JsonWriter out, T t) throws IOException {
+        gson.get().getAdapter(clase).write(out, t);
+    }
+
+    T leerEntidad(JsonReader in) throws IOException {
+        return gson.get().getAdapter(clase).read(in);
+    }
+
+    /**
+     * Método que aplica sobre la foto recién leída los cambios guardados en el diario
+     * Si el diario tenía una línea cortada o ya está grande, lo compactamos enseguida
+     * @param g Gson con los adaptadores de la entidad
+     * @throws JsonNotFoundException si no se puede leer el diario o compactarlo
+     */
+    private void reproducirDiario(Gson g) throws JsonNotFoundException {
+        boolean completo;
+        try {
+            completo = diario.reproducir(g, aplicador());
+        } catch (IOException e) {
+            datos = null;
+            posiciones.limpiar();
+            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{diario.getRuta()}");
+        }
+        if (!completo || diario.debeCompactar()) {
+            compactar();
+        }
+    }
+
+    /**
+     * Método que registra un cambio ya aplicado en memoria
+     * Sin diario reescribe el archivo; con diario agrega una línea y compacta si hace falta
+     * @param operacion que se hizo
+     * @param t entidad dada de alta o modificada, null en una baja
+     * @param idEntidad ID de la entidad
+     * @throws JsonNotFoundException si no se puede escribir el archivo JSON o el diario
+     */
+    private void registrar(DiarioJSON.Operacion operacion, T t, Integer idEntidad) throws JsonNotFoundException {
+        // Se registra con el lock exclusivo tomado: al soltarlo avanza la versión del archivo
+        exclusivo.modificado();
+        // Dentro de un grupo el fsync (o la reescritura) queda para el cierre del grupo
+        boolean enGrupo = EscrituraDurable.posponer(this, this::confirmarGrupo);
+        if (diario == null) {
+            if (!enGrupo) {
+                persistir();
+            }
+            return;
+        }
+        try {
+            diario.registrar(gson.get(), operacion, t, idEntidad, !enGrupo);
+        } catch (IOException e) {
+            datos = null;
+            posiciones.limpiar();
+            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{diario.getRuta()}");
+        }
+        if (!enGrupo && diario.debeCompactar()) {
+            compactar();
+        }
+    }
+
+    /**
+     * Método que lleva a disco los cambios hechos durante un grupo
+     * @throws JsonNotFoundException si no se puede escribir el archivo JSON o el diario
+     */
+    private void confirmarGrupo() throws JsonNotFoundException {
+        try {
+            if (datos == null) {
+                // Falló una escritura durante el grupo y la memoria se descartó, el archivo manda
+                return;
+            }
+            if (exclusivo.versionAlSoltar() == exclusivo.version()) {
+                // El grupo solo tomó el almacén (por ejemplo para verificar versiones) y no cambió nada
+                return;
+            }
+            if (diario == null) {
+                persistir();
+                return;
+            }
+            try {
+                diario.forzar();
+            } catch (IOException e) {
+                throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{diario.getRuta()}");
+            }
+            if (diario.debeCompactar()) {
+                compactar();
+            }
+        } finally {
+            // Los locks que tomó el primer cambio del grupo se sueltan recién acá, con todo escrito
+            soltarCambio();
+        }
+    }
+
+    /**
+     * Método que escribe el archivo completo y, si hay diario, lo vacía
+     * Primero se escribe la foto y después se vacía el diario: si se corta en el medio,
+     * al volver a cargar se reaplican entradas que la foto ya tiene, lo que no cambia nada
+     * @throws JsonNotFoundException si no se puede escribir el archivo JSON o vaciar el diario
+     */
+    private void compactar() throws JsonNotFoundException {
+        persistir();
+        if (diario != null) {
+            try {
+                diario.vaciar();
+            } catch (IOException e) {
+                throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{diario.getRuta()}");
+            }
+        }
+    }
+
+    /**
+     * Método que lee el arreglo del JSON de a una entidad
+     * Un archivo vacío o con null se toma como lista vacía
+     * @param reader posicionado al principio del archivo
+     * @param adaptador que convierte cada elemento del arreglo en una entidad
+     * @return List<T> entidades leídas
+     * @throws IOException si falla la lectura
+     */
+    static <T> List<T> leer(JsonReader reader, TypeAdapter<T> adaptador) throws IOException {
+        var lista = new ArrayList<T>();
+        var token = reader.peek();
+        if (token == JsonToken.END_DOCUMENT) {
+            return lista;
+        }
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return lista;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+            lista.add(adaptador.read(reader));
+        }
+        reader.endArray();
+        return lista;
+    }
+
+    /**
+     * Método que devuelve la posición en la lista de la entidad con ese ID
+     * @param idBuscado ID de la entidad
+     * @return int posición o IndiceEnteros.AUSENTE si no existe
+     */
+    private int posicion(Integer idBuscado) {
+        return idBuscado == null ? IndiceEnteros.AUSENTE : posiciones.obtener(idBuscado);
+    }
+
+    /**
+     * Método que reconstruye el índice de posiciones a partir de la lista
+     * Si hay IDs repetidos en el archivo queda indexado el primero, como hacía findFirst
+     */
+    private void indexar() {
+        posiciones.limpiar();
+        for (int i = 0; i < datos.size(); i++) {
+            var idEntidad = id.apply(datos.get(i));
+            if (idEntidad != null && posiciones.obtener(idEntidad) == IndiceEnteros.AUSENTE) {
+                posiciones.guardar(idEntidad, i);
+            }
+        }
+    }
+
+    /**
+     * Método que escribe en el archivo lo que hay en memoria
+     * Si falla la escritura descartamos la memoria para volver a leer el archivo
+     * @throws JsonNotFoundException si no se puede escribir el archivo JSON
+     */
+    private void persistir() throws JsonNotFoundException {
+        var g = gson.get();
+        try {
+            EscrituraDurable.escribir(Path.of(ruta), destino -> {
+                JsonWriter writer = g.newJsonWriter(destino);
+                TypeAdapter<T> adaptador = g.getAdapter(clase);
+                writer.beginArray();
+                for (T t : datos) {
+                    adaptador.write(writer, t);
+                }
+                writer.endArray();
+                writer.flush();
+            });
+        } catch (IOException e) {
+            datos = null;
+            posiciones.limpiar();
+            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package org.example.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.example.exception.JsonNotFoundException;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Archivo histórico de un JSON, para las entidades que ya no se consultan en el día a día
+ * Las entidades se guardan comprimidas con gzip, en un segmento por mes según su fecha
+ * (por ejemplo ./json/archivo/solicitudes-2024-03.json.gz), así que archivar un mes solo reescribe su segmento
+ * Los segmentos no se leen al arrancar: se cargan la primera vez que se consulta el historial
+ * Guardar dos veces la misma entidad la reemplaza por ID, así que volver a archivar no duplica nada
+ * Varios procesos pueden compartir la carpeta: los segmentos se reescriben con el lock exclusivo de un
+ * BloqueoArchivo al lado de ellos (por ejemplo ./json/archivo/solicitudes.version), que avanza su versión
+ * en cada cambio; el historial en memoria se vuelve a leer cuando otro proceso cambió esa versión
+ * Como los locks de FileChannel son de todo el proceso, tiene que haber una sola instancia por carpeta y prefijo
+ * @param <T> Recibe el tipo de Clase que se guarda en el JSON
+ */
+public class ArchivoJSON<T> {
+    private static final String EXTENSION = ".json.gz";
+
+    private final Path carpeta;
+    private final String prefijo;
+    private final Supplier<Gson> gson;
+    private final Class<T> clase;
+    private final Function<T, Integer> id;
+    private final Function<T, LocalDate> fecha;
+    private final UnaryOperator<T> copia;
+    private final BloqueoArchivo bloqueo;
+    private List<T> datos;
+    // Versión de los segmentos que refleja el historial en memoria
+    private long versionCargada;
+
+    public ArchivoJSON(String carpeta, String prefijo, Supplier<Gson> gson, Class<T> clase,
+                       Function<T, Integer> id, Function<T, LocalDate> fecha, UnaryOperator<T> copia) {
+        this.carpeta = Path.of(carpeta);
+        this.prefijo = prefijo;
+        this.gson = gson;
+        this.clase = clase;
+        this.id = id;
+        this.fecha = fecha;
+        this.copia = copia;
+        this.bloqueo = new BloqueoArchivo(this.carpeta.resolve(STR."\{prefijo}.version"));
+    }
+
+    /**
+     * Método para agregar entidades al archivo
+     * Se reescribe solo el segmento de cada mes que recibe entidades, de forma atómica
+     * Cada segmento se lee y se reescribe con el lock exclusivo tomado, así no se pierden las entidades
+     * que otro proceso archive a la vez
+     * @param entidades que se archivan
+     * @throws JsonNotFoundException si no se puede leer o escribir un segmento
+     */
+    public synchronized void archivar(List<T> entidades) throws JsonNotFoundException {
+        if (entidades.isEmpty()) {
+            return;
+        }
+        Map<YearMonth, List<T>> porMes = new TreeMap<>();
+        for (T t : entidades) {
+            porMes.computeIfAbsent(YearMonth.from(fecha.apply(t)), m -> new ArrayList<>()).add(t);
+        }
+        try (var tomado = bloqueo.exclusivo()) {
+            Files.createDirectories(carpeta);
+            for (var entrada : porMes.entrySet()) {
+                var segmento = segmento(entrada.getKey());
+                // Unimos lo que ya tenía el segmento con lo nuevo, reemplazando por ID
+                Map<Integer, T> contenido = new LinkedHashMap<>();
+                for (T t : leerSegmento(segmento)) {
+                    contenido.put(id.apply(t), t);
+                }
+                for (T t : entrada.getValue()) {
+                    contenido.put(id.apply(t), t);
+                }
+                escribirSegmento(segmento, contenido.values());
+                tomado.modificado();
+            }
+        } catch (IOException | JsonParseException e) {
+            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{carpeta}");
+        }
+        // Si el historial ya estaba en memoria lo volvemos a leer la próxima vez
+        datos = null;
+    }
+
+    /**
+     * Método que devuelve una copia de las entidades archivadas que cumplen un filtro
+     * @param filtro que deben cumplir las entidades
+     * @return List<T> entidades archivadas ordenadas por ID
+     * @throws JsonNotFoundException si no se puede leer un segmento
+     */
+    public synchronized List<T> buscar(Predicate<T> filtro) throws JsonNotFoundException {
+        var lista = new ArrayList<T>();
+        for (T t : cargar()) {
+            if (filtro.test(t)) {
+                lista.add(copia.apply(t));
+            }
+        }
+        return lista;
+    }
+
+    /**
+     * Método para buscar una entidad archivada por ID
+     * @param idBuscado ID de la entidad
+     * @return Optional<T> con una copia de la entidad u Optional.empty() si no está archivada
+     * @throws JsonNotFoundException si no se puede leer un segmento
+     */
+    public synchronized Optional<T> buscarPorId(Integer idBuscado) throws JsonNotFoundException {
+        for (T t : cargar()) {
+            if (id.apply(t).equals(idBuscado)) {
+                return Optional.of(copia.apply(t));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Método para borrar una entidad archivada por ID
+     * Solo se reescribe el segmento del mes de la entidad
+     * @param idBorrar ID de la entidad
+     * @return boolean true si la entidad estaba archivada
+     * @throws JsonNotFoundException si no se puede leer o escribir un segmento
+     */
+    public synchronized boolean eliminar(Integer idBorrar) throws JsonNotFoundException {
+        var archivada = buscarPorId(idBorrar);
+        if (archivada.isEmpty()) {
+            return false;
+        }
+        var segmento = segmento(YearMonth.from(fecha.apply(archivada.get())));
+        try (var tomado = bloqueo.exclusivo()) {
+            // Se vuelve a leer con el lock tomado, por si otro proceso cambió el segmento
+            var contenido = leerSegmento(segmento);
+            if (contenido.removeIf(t -> id.apply(t).equals(idBorrar))) {
+                if (contenido.isEmpty()) {
+                    Files.deleteIfExists(segmento);
+                } else {
+                    escribirSegmento(segmento, contenido);
+                }
+                tomado.modificado();
+            }
+        } catch (IOException | JsonParseException e) {
+            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{segmento}");
+        }
+        datos = null;
+        return true;
+    }
+
+    /**
+     * Método que devuelve el ID más alto archivado
+     * Si la carpeta del archivo no existe no se lee nada
+     * @return int último ID o 0 si no hay entidades archivadas
+     * @throws JsonNotFoundException si no se puede leer un segmento
+     */
+    public synchronized int ultimoId() throws JsonNotFoundException {
+        var lista = cargar();
+        return lista.isEmpty() ? 0 : id.apply(lista.getLast());
+    }
+
+    /**
+     * Método que lee todos los segmentos la primera vez que se consulta el historial
+     * y cada vez que otro proceso los cambió
+     * Si la versión cambia mientras se leen (otro proceso archivó en el medio) se vuelven a leer
+     * @return List<T> entidades archivadas ordenadas por ID
+     * @throws JsonNotFoundException si no se puede leer un segmento
+     */
+    private List<T> cargar() throws JsonNotFoundException {
+        long version = bloqueo.version();
+        while (datos == null || version != versionCargada) {
+            var lista = new ArrayList<T>();
+            try {
+                for (var segmento : segmentos()) {
+                    lista.addAll(leerSegmento(segmento));
+                }
+            } catch (IOException | JsonParseException e) {
+                throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{carpeta}");
+            }
+            lista.sort(Comparator.comparing(id));
+            long leida = version;
+            version = bloqueo.version();
+            if (version == leida) {
+                datos = lista;
+                versionCargada = version;
+            }
+        }
+        return datos;
+    }
+
+    private List<Path> segmentos() throws IOException {
+        if (!Files.isDirectory(carpeta)) {
+            return List.of();
+        }
+        try (Stream<Path> archivos = Files.list(carpeta)) {
+            return archivos.filter(p -> {
+                        var nombre = p.getFileName().toString();
+                        return nombre.startsWith(STR."\{prefijo}-") && nombre.endsWith(EXTENSION);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmento(YearMonth mes) {
+        return carpeta.resolve(STR."\{prefijo}-\{mes}\{EXTENSION}");
+    }
+
+    private List<T> leerSegmento(Path segmento) throws IOException {
+        if (!Files.exists(segmento)) {
+            return new ArrayList<>();
+        }
+        var g = gson.get();
+        try (JsonReader reader = g.newJsonReader(new InputStreamReader(
+                new GZIPInputStream(new BufferedInputStream(Files.newInputStream(segmento))), StandardCharsets.UTF_8))) {
+            return AlmacenJSON.leer(reader, g.getAdapter(clase));
+        }
+    }
+
+    private void escribirSegmento(Path segmento, Iterable<T> entidades) throws IOException {
+        var g = gson.get();
+        EscrituraDurable.escribirComprimido(segmento, destino -> {
+            JsonWriter writer = g.newJsonWriter(destino);
+            TypeAdapter<T> adaptador = g.getAdapter(clase);
+            writer.beginArray();
+            for (T t : entidades) {
+                adaptador.write(writer, t);
+            }
+            writer.endArray();
+            writer.flush();
+        });
+    }
+}
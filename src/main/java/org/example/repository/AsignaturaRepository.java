@@ -1,13 +1,11 @@
 package org.example.repository;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import org.example.config.GsonConfig;
+import org.example.exception.ConflictException;
 import org.example.exception.JsonNotFoundException;
 import org.example.model.Asignatura;
 
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -18,7 +16,31 @@ import java.util.Optional;
  * Su responsabilidad es interactuar con el JSON
  */
 public class AsignaturaRepository implements JSONRepository<Integer,Asignatura> {
+    private static final String CLAVE_CODIGO = "codigo";
     private final String ruta = "./json/asignaturas.json";
+    private final AlmacenJSON<Asignatura> almacen = AlmacenJSON.de(ruta, this::getGson,
+            Asignatura.class, Asignatura::getId,
+            AlmacenJSON.copiaConGson(this::getGson, Asignatura.class))
+            .conVersion(Asignatura::getVersion, (asignatura, version) -> {
+                asignatura.setVersion(version);
+                return asignatura;
+            })
+            .conClave(CLAVE_CODIGO, Asignatura::getCodigo, true);
+
+    private AsignaturaRepository() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida del repositorio
+     * @return AsignaturaRepository único para toda la aplicación
+     */
+    public static AsignaturaRepository getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    private static class Unica {
+        private static final AsignaturaRepository INSTANCIA = new AsignaturaRepository();
+    }
 
     /**
      * Método para retornar la ruta al json
@@ -38,7 +60,7 @@ public class AsignaturaRepository implements JSONRepository<Integer,Asignatura>
      */
     @Override
     public Gson getGson() {
-        return new Gson();
+        return GsonConfig.gsonSimple();
     }
 
     /**
@@ -47,32 +69,22 @@ public class AsignaturaRepository implements JSONRepository<Integer,Asignatura>
      * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
      */
     public void write(List<Asignatura> list) throws JsonNotFoundException {
-        try (FileWriter writer = new FileWriter(getRuta())) {
-            getGson().toJson(list, writer);
-        } catch (IOException e) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{getRuta()}");
-        }
+        almacen.reemplazarTodos(list);
     }
 
     /**
      * Método que guarda una nueva asignatura en el JSON llamando al método write
      * @param asignatura la nueva asignatura que se guarda en el JSON
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     * @throws ConflictException si ya existe una asignatura con ese código
      */
     @Override
-    public void save(Asignatura asignatura) throws JsonNotFoundException {
-        //Traigo lo que tengo en el json
-        var asignaturas = getAll();
+    public void save(Asignatura asignatura) throws JsonNotFoundException, ConflictException {
+        //Pido el proximo id a la secuencia
+        asignatura.setId(almacen.proximoId());
 
-        //Verifico el ultimo id y genero el proximo
-        var lastId = asignaturas.isEmpty() ? 0 : asignaturas.getLast().getId();
-        asignatura.setId(lastId + 1);
-
-        // Agregamos la nueva asignatura
-        asignaturas.add(asignatura);
-
-        // Guarda los cambios en el archivo JSON
-        write(asignaturas);
+        // Agregamos la nueva asignatura (si el código no está repetido) y guardamos los cambios en el archivo JSON
+        almacen.agregarUnico(asignatura);
     }
 
 
@@ -83,13 +95,9 @@ public class AsignaturaRepository implements JSONRepository<Integer,Asignatura>
      */
     @Override
     public List<Asignatura> getAll() throws JsonNotFoundException {
-        try (FileReader reader = new FileReader(ruta)) {
-            //Indico que el tipo va a ser una Lista de asignaturas
-            var rolListType = new TypeToken<List<Asignatura>>() {}.getType();
-            return getGson().fromJson(reader, rolListType);
-        } catch (IOException e) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
-        }
+        //Indico que el tipo va a ser una Lista de asignaturas
+        //El archivo se lee una sola vez, las siguientes lecturas salen de memoria
+        return almacen.obtenerTodos();
     }
 
 
@@ -101,12 +109,9 @@ public class AsignaturaRepository implements JSONRepository<Integer,Asignatura>
      */
     @Override
     public Optional<Asignatura> findById(Integer id) throws JsonNotFoundException {
-        //Usamos stream para filtrar por id
         //Devuelve la asignatura si existe
         //Devuelve optional.empty() sino
-        return getAll().stream()
-                .filter(a -> Objects.equals(a.getId(), id))
-                .findFirst();
+        return almacen.buscarPorId(id);
     }
 
     /**
@@ -116,40 +121,33 @@ public class AsignaturaRepository implements JSONRepository<Integer,Asignatura>
      */
     @Override
     public void deleteById(Integer id) throws JsonNotFoundException{
-        //Traigo lo que tiene el json
-        var asignaturas = getAll();
-
-        //Borro al que tenga el id
-        asignaturas.removeIf(a -> Objects.equals(a.getId(), id));
-
-        // Guarda los cambios en el archivo JSON
-        write(asignaturas);
+        //Borro al que tenga el id y guardo los cambios en el archivo JSON
+        almacen.eliminar(id);
     }
 
     /**
      * Método para modificar la asignatura
      * @param asignatura que queremos modificar
      * @throws JsonNotFoundException si no encuentra el archivo JSON
+     * @throws ConflictException si otra asignatura ya tiene ese código,
+     * o ModificacionConcurrenteException si otra sesión modificó el registro mientras tanto
      */
     @Override
-    public void modify(Asignatura asignatura) throws JsonNotFoundException {
-        // Obtén todas las asignaturas del JSON
-        var asignaturas = getAll();
-
+    public void modify(Asignatura asignatura) throws JsonNotFoundException, ConflictException {
         // Busca la asignatura por ID y actualiza sus campos
-        var exist = asignaturas.stream()
-                .filter(a -> Objects.equals(a.getId(), asignatura.getId()))
-                .findFirst()
+        var exist = almacen.buscarPorId(asignatura.getId())
                 .orElseThrow(() -> new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}"));
 
         // Actualiza los atributos de la asignatura existente con los del nuevo objeto
         exist.setId(asignatura.getId());
+        // Conserva la versión que se leyó, así se rechaza si otra sesión lo modificó
+        exist.setVersion(asignatura.getVersion());
         exist.setNombre(asignatura.getNombre());
         exist.setCodigo(asignatura.getCodigo());
         exist.setRequiereLaboratorio(asignatura.isRequiereLaboratorio());
 
         // Guarda los cambios en el archivo JSON
-        write(asignaturas);
+        almacen.actualizarUnico(exist);
     }
 
     /**
@@ -159,12 +157,10 @@ public class AsignaturaRepository implements JSONRepository<Integer,Asignatura>
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
      */
     public Optional<Asignatura> findByCodigo(int codigo) throws JsonNotFoundException {
-        //Usamos stream para filtrar por código
+        //Buscamos en el índice por código
         //Devuelve la asignatura si existe
         //Devuelve optional.empty() sino
-        return getAll().stream()
-                .filter(a -> a.getCodigo() == codigo)
-                .findFirst();
+        return almacen.buscarPorClave(CLAVE_CODIGO, codigo);
     }
 
 }
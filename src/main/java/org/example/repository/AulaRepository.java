@@ -1,17 +1,13 @@
 package org.example.repository;
 
-import com.google.gson.*;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.Gson;
 import org.example.config.GsonConfig;
 import org.example.exception.JsonNotFoundException;
+import org.example.exception.ModificacionConcurrenteException;
 import org.example.model.Aula;
 
 
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 
 
@@ -22,6 +18,30 @@ import java.util.Optional;
  */
 public class AulaRepository implements JSONRepository<Integer, Aula> {
     private final String ruta = "./json/aulas.json";
+    private final AlmacenJSON<Aula> almacen = AlmacenJSON.de(ruta, this::getGson,
+            Aula.class, Aula::getId,
+            AlmacenJSON.copiaConGson(this::getGson, Aula.class))
+            .conVersion(Aula::getVersion, (aula, version) -> {
+                aula.setVersion(version);
+                return aula;
+            });
+
+    private AulaRepository() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida del repositorio
+     * @return AulaRepository único para toda la aplicación
+     */
+    public static AulaRepository getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    // La JVM crea la instancia la primera vez que se pide y una sola vez, aunque la pidan varios hilos
+    // Todos los getInstancia de la aplicación (repositorios, servicios y Seguridad) usan esta misma clase Unica
+    private static class Unica {
+        private static final AulaRepository INSTANCIA = new AulaRepository();
+    }
 
     /**
      * Método para retornar la ruta al json
@@ -42,20 +62,7 @@ public class AulaRepository implements JSONRepository<Integer, Aula> {
 
     @Override
     public void write(List<Aula> list) throws JsonNotFoundException {
-        try (FileWriter writer = new FileWriter(getRuta())) {
-            Gson gsonEspecializado = getGson();
-            JsonArray jsonArray = new JsonArray();
-
-            // Serializamos cada elemento explícitamente utilizando el TypeAdapter
-            for (Aula aula : list) {
-                JsonElement jsonElement = gsonEspecializado.toJsonTree(aula, Aula.class);
-                jsonArray.add(jsonElement);
-            }
-
-            gsonEspecializado.toJson(jsonArray, writer);
-        } catch (IOException e) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{getRuta()}");
-        }
+        almacen.reemplazarTodos(list);
     }
 
 
@@ -66,17 +73,11 @@ public class AulaRepository implements JSONRepository<Integer, Aula> {
      */
     @Override
     public void save(Aula aula) throws JsonNotFoundException {
-        var aulas = getAll();
-
-        // Verifíco el último id y genero el próximo
-        int lastId = aulas.isEmpty() ? 0 : aulas.getLast().getId();
-        aula.setId(lastId + 1);
-
-        // Agregamos la nueva aula o laboratorio
-        aulas.add(aula);
+        // Pedimos el próximo id a la secuencia
+        aula.setId(almacen.proximoId());
 
-        // Guarda los cambios en el archivo JSON
-        write(aulas);
+        // Agregamos la nueva aula o laboratorio y guardamos los cambios en el archivo JSON
+        almacen.agregar(aula);
     }
 
     /**
@@ -86,13 +87,9 @@ public class AulaRepository implements JSONRepository<Integer, Aula> {
      */
     @Override
     public List<Aula> getAll() throws JsonNotFoundException {
-        try (FileReader reader = new FileReader(ruta)) {
-            // Gson deserializará automáticamente a Aula o Laboratorio usando RuntimeTypeAdapterFactory
-            var listType = new TypeToken<List<Aula>>() {}.getType();
-            return getGson().fromJson(reader, listType);
-        } catch (IOException e) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
-        }
+        // Gson deserializará automáticamente a Aula o Laboratorio usando RuntimeTypeAdapterFactory
+        //El archivo se lee una sola vez, las siguientes lecturas salen de memoria
+        return almacen.obtenerTodos();
     }
 
     /**
@@ -103,12 +100,9 @@ public class AulaRepository implements JSONRepository<Integer, Aula> {
      */
     @Override
     public Optional<Aula> findById(Integer id) throws JsonNotFoundException {
-        //Usamos stream para filtrar por id
         //Devuelve el aula si existe
         //Devuelve optional.empty() sino
-        return getAll().stream()
-                .filter(aula -> Objects.equals(aula.getId(), id))
-                .findFirst();
+        return almacen.buscarPorId(id);
     }
 
     /**
@@ -118,35 +112,40 @@ public class AulaRepository implements JSONRepository<Integer, Aula> {
      */
     @Override
     public void deleteById(Integer id) throws JsonNotFoundException {
-        var aulas = getAll();
-
-        // Borra el aula o laboratorio con el ID dado
-        aulas.removeIf(aula -> Objects.equals(aula.getId(), id));
-
-        // Guarda los cambios en el archivo JSON
-        write(aulas);
+        // Borra el aula o laboratorio con el ID dado y guarda los cambios en el archivo JSON
+        almacen.eliminar(id);
     }
 
     /**
      * Método para modificar un aula o laboratorio
      * @param aula que queremos modificar
      * @throws JsonNotFoundException si no encuentra el archivo JSON
+     * @throws ModificacionConcurrenteException si otra sesión modificó el registro mientras tanto
      */
     @Override
-    public void modify(Aula aula) throws JsonNotFoundException {
-        // Obtén todas las aulas del JSON
-        var aulas = getAll();
-
-        aulas.replaceAll(a -> {
-            if (Objects.equals(a.getId(), aula.getId())) {
-                a.actualizar(aula);
-            }
-            return a;
-        });
-
-        // Guarda los cambios en el archivo JSON
-        write(aulas);
+    public void modify(Aula aula) throws JsonNotFoundException, ModificacionConcurrenteException {
+        // Reemplaza el aula con la versión que se leyó: si otra sesión la modificó mientras tanto se rechaza
+        almacen.actualizarVerificado(aula);
     }
 
-}
+    /**
+     * Método para buscar varias aulas o laboratorios por ID
+     * @param ids de los espacios
+     * @return List<Aula> los espacios que existen, en el orden del JSON
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     */
+    public List<Aula> findAllById(int[] ids) throws JsonNotFoundException {
+        return almacen.buscarPorIds(ids);
+    }
 
+    /**
+     * Método que devuelve la vista del índice de atributos de los espacios
+     * Sirve para consultar por capacidad y equipamiento sin copiar ni recorrer las entidades
+     * @return IndiceEspacios.Vista con los espacios ordenados por capacidad
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     */
+    public IndiceEspacios.Vista getIndiceEspacios() throws JsonNotFoundException {
+        return almacen.indice("espacios", IndiceEspacios::new).vista();
+    }
+
+}
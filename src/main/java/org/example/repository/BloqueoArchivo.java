@@ -0,0 +1,265 @@
+package org.example.repository;
+
+import org.example.exception.JsonNotFoundException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bloqueo entre procesos y número de versión de un archivo JSON
+ * Usa un archivo chico al lado del JSON (por ejemplo ./json/reservas.version) con la versión del archivo,
+ * que avanza cada vez que alguien lo escribe; sobre ese mismo archivo se toman los locks de FileChannel:
+ * el exclusivo para escribir y el compartido para leer la versión, así nadie la lee a mitad de un cambio
+ * Los locks de FileChannel son de todo el proceso, así que dentro de un proceso no se puede pedir el mismo
+ * lock dos veces: los hilos que leen a la vez comparten un único lock compartido (se toma con el primero
+ * y se suelta con el último), y AlmacenJSON nunca lee la versión mientras tiene el exclusivo porque hay
+ * un solo almacén por ruta y solo lo pide con su lock de escritura, que deja afuera a sus lecturas
+ * Si un lock no se consigue en el tiempo de espera se lanza JsonNotFoundException en lugar de esperar para siempre
+ */
+public class BloqueoArchivo {
+    // Milisegundos que se espera un lock antes de fallar (-Dgestionaulas.bloqueo.esperaMs=N)
+    public static final String PROPIEDAD_ESPERA = "gestionaulas.bloqueo.esperaMs";
+    static final long ESPERA_MS = Long.getLong(PROPIEDAD_ESPERA, 10_000);
+    private static final long REINTENTO_MS = 5;
+    // La versión se escribe siempre con el mismo ancho, así se pisa en el lugar sin truncar el archivo
+    private static final int ANCHO = 20;
+
+    private final Path ruta;
+    private volatile FileChannel canal;
+    // Lock compartido de las lecturas en curso de este proceso y cuántas lo están usando
+    private final Object lecturas = new Object();
+    private FileLock compartido;
+    private int lectores;
+
+    public BloqueoArchivo(Path ruta) {
+        this.ruta = ruta;
+    }
+
+    /**
+     * Método que devuelve la ruta del archivo de versión que acompaña a un archivo JSON
+     * @param rutaJson ruta al archivo JSON
+     * @return Path del archivo de versión, por ejemplo ./json/reservas.version
+     */
+    public static Path rutaPara(String rutaJson) {
+        var base = rutaJson.endsWith(".json") ? rutaJson.substring(0, rutaJson.length() - 5) : rutaJson;
+        return Path.of(STR."\{base}.version");
+    }
+
+    /**
+     * Lock tomado sobre el archivo de versión, con la versión que tenía el JSON al tomarlo
+     * Se suelta con close(); si se marcó como modificado, antes de soltarlo se avanza la versión
+     */
+    public class Tomado implements AutoCloseable {
+        private final FileLock lock;
+        private final long version;
+        private boolean modificado;
+
+        private Tomado(FileLock lock, long version) {
+            this.lock = lock;
+            this.version = version;
+        }
+
+        public long version() {
+            return version;
+        }
+
+        /**
+         * Método que devuelve la versión que va a tener el JSON al soltar el lock
+         * @return long versión actual, o la siguiente si se marcó como modificado
+         */
+        public long versionAlSoltar() {
+            return modificado ? version + 1 : version;
+        }
+
+        /**
+         * Método para avisar que se escribió el JSON con el lock tomado
+         */
+        public void modificado() {
+            modificado = true;
+        }
+
+        @Override
+        public void close() throws JsonNotFoundException {
+            try {
+                if (modificado) {
+                    escribir(canal, version + 1);
+                    canal.force(false);
+                }
+            } catch (IOException e) {
+                throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
+            } finally {
+                try {
+                    lock.release();
+                } catch (IOException e) {
+                    // Si el canal ya no sirve el sistema operativo suelta el lock al cerrarlo
+                }
+            }
+        }
+    }
+
+    /**
+     * Método que devuelve la versión actual del JSON con el lock compartido tomado
+     * Espera a que termine el cambio de otro proceso que tenga el lock exclusivo
+     * Lo pueden llamar varios hilos a la vez, pero no el que tiene el lock exclusivo de este proceso
+     * @return long versión actual del JSON
+     * @throws JsonNotFoundException si no se puede abrir o leer el archivo de versión o no se consigue el lock a tiempo
+     */
+    public long version() throws JsonNotFoundException {
+        tomarCompartido();
+        try {
+            return leer(canal());
+        } catch (IOException e) {
+            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
+        } finally {
+            soltarCompartido();
+        }
+    }
+
+    /**
+     * Método que devuelve la versión actual del JSON sin tomar ningún lock
+     * Solo sirve para confirmar que una lectura optimista sigue al día: la versión se escribe después
+     * del JSON, así que si coincide con la cargada los datos en memoria son los del último cambio
+     * terminado, y si no coincide (o se leyó a medio escribir) hay que volver a mirarla con version()
+     * @return long versión del JSON, o 0 si se leyó a medio escribir
+     * @throws JsonNotFoundException si no se puede abrir o leer el archivo de versión
+     */
+    public long versionSinBloquear() throws JsonNotFoundException {
+        try {
+            return leer(canal());
+        } catch (IOException e) {
+            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
+        }
+    }
+
+    /**
+     * Método para tomar el lock exclusivo, el que usan las escrituras
+     * @return Tomado con la versión actual del JSON
+     * @throws JsonNotFoundException si no se puede abrir el archivo de versión o no se consigue el lock a tiempo
+     */
+    public synchronized Tomado exclusivo() throws JsonNotFoundException {
+        try {
+            var abierto = canal();
+            var lock = esperarLock(abierto, false);
+            try {
+                return new Tomado(lock, leer(abierto));
+            } catch (IOException e) {
+                lock.release();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
+        }
+    }
+
+    /**
+     * Método que toma el lock compartido si es la primera lectura en curso del proceso
+     * @throws JsonNotFoundException si no se puede abrir el archivo de versión o no se consigue el lock a tiempo
+     */
+    private void tomarCompartido() throws JsonNotFoundException {
+        synchronized (lecturas) {
+            if (lectores == 0) {
+                try {
+                    compartido = esperarLock(canal(), true);
+                } catch (IOException e) {
+                    throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
+                }
+            }
+            lectores++;
+        }
+    }
+
+    /**
+     * Método que suelta el lock compartido si era la última lectura en curso del proceso
+     */
+    private void soltarCompartido() {
+        synchronized (lecturas) {
+            if (--lectores == 0) {
+                try {
+                    compartido.release();
+                } catch (IOException e) {
+                    // Si el canal ya no sirve el sistema operativo suelta el lock al cerrarlo
+                }
+                compartido = null;
+            }
+        }
+    }
+
+    /**
+     * Método que espera un lock sobre el archivo de versión, reintentando hasta el tiempo de espera
+     * @param abierto canal del archivo de versión
+     * @param soloLectura true para el lock compartido, false para el exclusivo
+     * @return FileLock tomado
+     * @throws IOException si falla el pedido del lock
+     * @throws JsonNotFoundException si no se consigue el lock a tiempo
+     */
+    private FileLock esperarLock(FileChannel abierto, boolean soloLectura) throws IOException, JsonNotFoundException {
+        long limite = System.nanoTime() + ESPERA_MS * 1_000_000;
+        FileLock lock;
+        while ((lock = abierto.tryLock(0, Long.MAX_VALUE, soloLectura)) == null) {
+            if (System.nanoTime() > limite) {
+                throw new JsonNotFoundException(STR."No se pudo bloquear el archivo JSON: \{ruta}");
+            }
+            try {
+                Thread.sleep(REINTENTO_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JsonNotFoundException(STR."No se pudo bloquear el archivo JSON: \{ruta}");
+            }
+        }
+        return lock;
+    }
+
+    /**
+     * Método que abre el archivo de versión la primera vez y lo deja abierto
+     * Así tomar un lock es una sola llamada al sistema operativo
+     * @return FileChannel abierto para leer y escribir
+     * @throws IOException si no se puede crear o abrir el archivo
+     */
+    private FileChannel canal() throws IOException {
+        var abierto = canal;
+        if (abierto != null && abierto.isOpen()) {
+            return abierto;
+        }
+        synchronized (this) {
+            if (canal == null || !canal.isOpen()) {
+                var carpeta = ruta.toAbsolutePath().getParent();
+                if (carpeta != null) {
+                    Files.createDirectories(carpeta);
+                }
+                canal = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+            }
+            return canal;
+        }
+    }
+
+    private static long leer(FileChannel canal) throws IOException {
+        var buffer = ByteBuffer.allocate(ANCHO);
+        int leidos;
+        do {
+            leidos = canal.read(buffer, buffer.position());
+        } while (leidos > 0 && buffer.hasRemaining());
+        buffer.flip();
+        var texto = StandardCharsets.US_ASCII.decode(buffer).toString().trim();
+        try {
+            return texto.isEmpty() ? 0 : Long.parseLong(texto);
+        } catch (NumberFormatException e) {
+            // Un archivo a medio escribir cuenta como versión 0: los que tengan otra versión vuelven a leer el JSON
+            return 0;
+        }
+    }
+
+    private static void escribir(FileChannel canal, long valor) throws IOException {
+        var buffer = StandardCharsets.US_ASCII.encode(String.format(STR."%\{ANCHO - 1}d\n", valor));
+        int posicion = 0;
+        while (buffer.hasRemaining()) {
+            posicion += canal.write(buffer, posicion);
+        }
+    }
+}
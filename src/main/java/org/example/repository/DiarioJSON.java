@@ -0,0 +1,172 @@
+package org.example.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Diario de cambios de un archivo JSON, en formato JSON lines (una entrada por línea)
+ * Cada alta, modificación o baja agrega una línea al final en lugar de reescribir el archivo entero
+ * Al cargar, AlmacenJSON lee la foto (el .json) y le aplica el diario; cada tantas entradas
+ * el diario se compacta: se escribe la foto con el estado actual y se vacía el diario
+ * Las entradas son idempotentes (alta y modificación reemplazan por ID, baja ignora IDs que no existen),
+ * así que volver a aplicar entradas que ya estaban en la foto no cambia el resultado
+ * @param <T> Recibe el tipo de Clase que se guarda en el JSON
+ */
+public class DiarioJSON<T> {
+    public static final int ENTRADAS_PARA_COMPACTAR = 500;
+
+    private final String ruta;
+    private final Class<T> clase;
+    private int entradas;
+
+    public enum Operacion { ALTA, MODIFICACION, BAJA }
+
+    /**
+     * Interfaz con la que el diario le aplica sus entradas al almacén
+     * @param <T> Recibe el tipo de Clase que se guarda en el JSON
+     */
+    public interface Aplicador<T> {
+        void guardar(T t);
+        void borrar(Integer id);
+    }
+
+    public DiarioJSON(String ruta, Class<T> clase) {
+        this.ruta = ruta;
+        this.clase = clase;
+    }
+
+    /**
+     * Método que devuelve la ruta del diario que acompaña a un archivo JSON
+     * @param rutaJson ruta al archivo JSON, por ejemplo ./json/reservas.json
+     * @return String ruta del diario, por ejemplo ./json/reservas.diario.jsonl
+     */
+    public static String rutaPara(String rutaJson) {
+        var base = rutaJson.endsWith(".json") ? rutaJson.substring(0, rutaJson.length() - 5) : rutaJson;
+        return STR."\{base}.diario.jsonl";
+    }
+
+    public String getRuta() {
+        return ruta;
+    }
+
+    /**
+     * Método que agrega una entrada al final del diario
+     * @param gson con los adaptadores de la entidad
+     * @param operacion que se registra
+     * @param t entidad dada de alta o modificada, null en una baja
+     * @param id ID de la entidad
+     * @param forzar si es true se hace fsync del diario antes de volver
+     * @throws IOException si no se puede escribir el diario
+     */
+    public void registrar(Gson gson, Operacion operacion, T t, Integer id, boolean forzar) throws IOException {
+        var linea = new StringWriter();
+        try (JsonWriter out = new JsonWriter(linea)) {
+            // Sin sangría: cada entrada tiene que quedar en una sola línea
+            out.setSerializeNulls(false);
+            out.beginObject();
+            out.name("op").value(operacion.name());
+            out.name("id").value(id);
+            if (t != null) {
+                out.name("entidad");
+                gson.getAdapter(clase).write(out, t);
+            }
+            out.endObject();
+        }
+        EscrituraDurable.agregar(Path.of(ruta), STR."\{linea}\n", forzar);
+        entradas++;
+    }
+
+    /**
+     * Método que fuerza a disco las entradas escritas sin fsync
+     * @throws IOException si falla el fsync
+     */
+    public void forzar() throws IOException {
+        EscrituraDurable.forzar(Path.of(ruta));
+    }
+
+    /**
+     * Método que aplica las entradas del diario en orden
+     * Si la última línea quedó cortada (por ejemplo, se cortó la luz mientras se escribía) se descarta
+     * @param gson con los adaptadores de la entidad
+     * @param aplicador que recibe cada entrada
+     * @return boolean false si se encontró una línea inválida y el diario debería compactarse
+     * @throws IOException si no se puede leer el diario
+     */
+    public boolean reproducir(Gson gson, Aplicador<T> aplicador) throws IOException {
+        entradas = 0;
+        if (!Files.exists(Path.of(ruta))) {
+            return true;
+        }
+        TypeAdapter<T> adaptador = gson.getAdapter(clase);
+        try (var reader = new BufferedReader(new FileReader(ruta))) {
+            String linea;
+            while ((linea = reader.readLine()) != null) {
+                if (linea.isBlank()) {
+                    continue;
+                }
+                try {
+                    aplicar(linea, adaptador, aplicador);
+                } catch (IOException | JsonParseException | IllegalArgumentException e) {
+                    // Lo que sigue a una línea inválida no es confiable
+                    return false;
+                }
+                entradas++;
+            }
+        }
+        return true;
+    }
+
+    private void aplicar(String linea, TypeAdapter<T> adaptador, Aplicador<T> aplicador) throws IOException {
+        Operacion operacion = null;
+        Integer id = null;
+        T entidad = null;
+        try (var in = new JsonReader(new StringReader(linea))) {
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "op" -> operacion = Operacion.valueOf(in.nextString());
+                    case "id" -> id = in.nextInt();
+                    case "entidad" -> entidad = adaptador.read(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+        }
+        if (operacion == null || (operacion != Operacion.BAJA && entidad == null)) {
+            throw new JsonParseException(STR."Entrada incompleta en el diario: \{linea}");
+        }
+        if (operacion == Operacion.BAJA) {
+            aplicador.borrar(id);
+        } else {
+            aplicador.guardar(entidad);
+        }
+    }
+
+    /**
+     * Método para saber si el diario ya tiene suficientes entradas como para compactarlo
+     * @return boolean true si conviene reescribir la foto y vaciar el diario
+     */
+    public boolean debeCompactar() {
+        return entradas >= ENTRADAS_PARA_COMPACTAR;
+    }
+
+    /**
+     * Método que vacía el diario, una vez que la foto ya tiene todos sus cambios
+     * @throws IOException si no se puede borrar el diario
+     */
+    public void vaciar() throws IOException {
+        Files.deleteIfExists(Path.of(ruta));
+        entradas = 0;
+    }
+}
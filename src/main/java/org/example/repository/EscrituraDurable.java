@@ -0,0 +1,212 @@
+package org.example.repository;
+
+import org.example.exception.JsonNotFoundException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Escritura de archivos a prueba de cortes
+ * El contenido se escribe en un archivo temporal en la misma carpeta, se fuerza a disco (fsync)
+ * y recién ahí se renombra sobre el archivo original con un move atómico:
+ * el archivo queda con la versión anterior o con la nueva, nunca vacío ni a medias
+ * También permite agrupar varios cambios (group commit) para que paguen un solo fsync
+ */
+public class EscrituraDurable {
+    private static final ThreadLocal<Grupo> grupoActual = new ThreadLocal<>();
+
+    /**
+     * Interfaz para el contenido que se escribe en el archivo
+     */
+    public interface Contenido {
+        void escribir(Writer writer) throws IOException;
+    }
+
+    /**
+     * Interfaz para un cambio ya aplicado en memoria que falta llevar a disco
+     */
+    public interface Pendiente {
+        void confirmar() throws JsonNotFoundException;
+    }
+
+    private EscrituraDurable() {
+    }
+
+    /**
+     * Método para reemplazar un archivo de forma atómica
+     * @param destino archivo a reemplazar
+     * @param contenido que se escribe en el archivo
+     * @throws IOException si falla la escritura; el archivo original queda intacto
+     */
+    public static void escribir(Path destino, Contenido contenido) throws IOException {
+        escribir(destino, contenido, false);
+    }
+
+    /**
+     * Método para reemplazar de forma atómica un archivo comprimido con gzip
+     * @param destino archivo a reemplazar
+     * @param contenido que se escribe en el archivo, sin comprimir
+     * @throws IOException si falla la escritura; el archivo original queda intacto
+     */
+    public static void escribirComprimido(Path destino, Contenido contenido) throws IOException {
+        escribir(destino, contenido, true);
+    }
+
+    private static void escribir(Path destino, Contenido contenido, boolean comprimir) throws IOException {
+        var carpeta = destino.toAbsolutePath().getParent();
+        // Cada archivo lo escribe un solo almacén a la vez, así que alcanza con un temporal fijo por archivo
+        var temporal = destino.resolveSibling(STR.".\{destino.getFileName()}.tmp");
+        try {
+            try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                OutputStream salida = Channels.newOutputStream(canal);
+                GZIPOutputStream gzip = comprimir ? new GZIPOutputStream(salida) : null;
+                Writer writer = new BufferedWriter(new OutputStreamWriter(gzip != null ? gzip : salida,
+                        StandardCharsets.UTF_8));
+                contenido.escribir(writer);
+                writer.flush();
+                if (gzip != null) {
+                    // Escribe el final del gzip antes del fsync
+                    gzip.finish();
+                }
+                canal.force(true);
+            }
+            mover(temporal, destino);
+            sincronizarCarpeta(carpeta);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    /**
+     * Método para agregar texto al final de un archivo
+     * @param destino archivo al que se agrega, se crea si no existe
+     * @param texto que se agrega
+     * @param forzar si es true se hace fsync antes de volver
+     * @throws IOException si falla la escritura
+     */
+    public static void agregar(Path destino, String texto, boolean forzar) throws IOException {
+        try (FileChannel canal = FileChannel.open(destino, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            var buffer = StandardCharsets.UTF_8.encode(texto);
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            if (forzar) {
+                canal.force(false);
+            }
+        }
+    }
+
+    /**
+     * Método que fuerza a disco lo que ya se escribió en un archivo
+     * @param archivo a sincronizar, si no existe no se hace nada
+     * @throws IOException si falla el fsync
+     */
+    public static void forzar(Path archivo) throws IOException {
+        if (Files.exists(archivo)) {
+            try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.WRITE)) {
+                canal.force(false);
+            }
+        }
+    }
+
+    /**
+     * Método para empezar un grupo de cambios en el hilo actual
+     * Mientras el grupo esté abierto los almacenes aplican los cambios en memoria
+     * y los llevan a disco una sola vez al cerrarlo
+     * Se usa con try-with-resources; los grupos anidados se suman al de afuera
+     * @return Grupo que hay que cerrar
+     */
+    public static Grupo grupo() {
+        var actual = grupoActual.get();
+        if (actual != null) {
+            actual.profundidad++;
+            return actual;
+        }
+        var nuevo = new Grupo();
+        grupoActual.set(nuevo);
+        return nuevo;
+    }
+
+    /**
+     * Método para posponer un cambio hasta el cierre del grupo abierto
+     * @param clave que identifica al dueño del cambio, se guarda un solo pendiente por clave
+     * @param pendiente que se confirma al cerrar el grupo
+     * @return boolean false si no hay un grupo abierto y el cambio se tiene que confirmar ya
+     */
+    public static boolean posponer(Object clave, Pendiente pendiente) {
+        var actual = grupoActual.get();
+        if (actual == null) {
+            return false;
+        }
+        actual.pendientes.putIfAbsent(clave, pendiente);
+        return true;
+    }
+
+    private static void mover(Path origen, Path destino) throws IOException {
+        try {
+            Files.move(origen, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(origen, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void sincronizarCarpeta(Path carpeta) {
+        // Para que el rename sobreviva a un corte también hay que sincronizar la carpeta
+        // No todos los sistemas permiten abrir una carpeta, en ese caso seguimos igual
+        try (FileChannel canal = FileChannel.open(carpeta, StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (IOException e) {
+            // El archivo ya quedó escrito y renombrado
+        }
+    }
+
+    /**
+     * Grupo de cambios abierto en un hilo
+     * Al cerrarlo se confirman los pendientes en el orden en que se registraron
+     */
+    public static class Grupo implements AutoCloseable {
+        private final Map<Object, Pendiente> pendientes = new LinkedHashMap<>();
+        private int profundidad = 1;
+
+        private Grupo() {
+        }
+
+        @Override
+        public void close() throws JsonNotFoundException {
+            if (--profundidad > 0) {
+                return;
+            }
+            grupoActual.remove();
+            JsonNotFoundException error = null;
+            for (var pendiente : new ArrayList<>(pendientes.values())) {
+                try {
+                    pendiente.confirmar();
+                } catch (JsonNotFoundException e) {
+                    if (error == null) {
+                        error = e;
+                    }
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.example.repository;
+
+import java.util.List;
+
+/**
+ * Interfaz para los índices que AlmacenJSON mantiene sincronizados con sus datos
+ * El almacén llama a estos métodos cada vez que cambia una entidad
+ * @param <T> Recibe el tipo de Clase que se guarda en el JSON
+ */
+public interface IndiceAlmacen<T> {
+    void reconstruir(List<T> datos);
+    void agregar(T t);
+    void quitar(T t);
+}
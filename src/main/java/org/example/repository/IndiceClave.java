@@ -0,0 +1,74 @@
+package org.example.repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Índice hash por un atributo de la entidad (por ejemplo, el username de un usuario)
+ * Resuelve las búsquedas por ese atributo en O(1) en lugar de recorrer todas las entidades
+ * Si varias entidades comparten la clave se devuelve la primera, como hacía findFirst
+ * @param <T> Recibe el tipo de Clase que se guarda en el JSON
+ * @param <K> tipo de la clave
+ */
+public class IndiceClave<T, K> implements IndiceAlmacen<T> {
+    private final Function<T, K> clave;
+    private final Map<K, List<T>> entidades = new HashMap<>();
+
+    public IndiceClave(Function<T, K> clave) {
+        this.clave = clave;
+    }
+
+    @Override
+    public synchronized void reconstruir(List<T> datos) {
+        entidades.clear();
+        datos.forEach(this::agregar);
+    }
+
+    @Override
+    public synchronized void agregar(T t) {
+        entidades.computeIfAbsent(clave.apply(t), k -> new ArrayList<>(1)).add(t);
+    }
+
+    @Override
+    public synchronized void quitar(T t) {
+        var k = clave.apply(t);
+        var lista = entidades.get(k);
+        // El almacén nos pasa la misma instancia que agregó, así que comparamos por identidad
+        if (lista != null && lista.removeIf(e -> e == t) && lista.isEmpty()) {
+            entidades.remove(k);
+        }
+    }
+
+    /**
+     * Método que devuelve la clave de una entidad según este índice
+     * @param t entidad
+     * @return K clave de la entidad
+     */
+    public K claveDe(T t) {
+        return clave.apply(t);
+    }
+
+    /**
+     * Método para buscar la entidad con esa clave
+     * @param valor de la clave
+     * @return Optional<T> la entidad indexada (sin copiar) u Optional.empty() si no hay ninguna
+     */
+    public synchronized Optional<T> buscar(K valor) {
+        var lista = entidades.get(valor);
+        return lista == null ? Optional.empty() : Optional.of(lista.getFirst());
+    }
+
+    /**
+     * Método para obtener todas las entidades con esa clave
+     * @param valor de la clave
+     * @return List<T> las entidades indexadas (sin copiar) o una lista vacía si no hay ninguna
+     */
+    public synchronized List<T> todos(K valor) {
+        var lista = entidades.get(valor);
+        return lista == null ? List.of() : List.copyOf(lista);
+    }
+}
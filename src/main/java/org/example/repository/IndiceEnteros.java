@@ -0,0 +1,131 @@
+package org.example.repository;
+
+import java.util.Arrays;
+
+/**
+ * Índice hash de claves int a valores int, sin objetos intermedios (sin Integer)
+ * Usa direccionamiento abierto con sondeo lineal
+ * Lo usa AlmacenJSON para resolver el ID de una entidad a su posición en la lista
+ */
+public class IndiceEnteros {
+    public static final int AUSENTE = -1;
+    private static final int CAPACIDAD_INICIAL = 16;
+
+    private int[] claves;
+    private int[] valores;
+    private boolean[] ocupados;
+    private int cantidad;
+
+    public IndiceEnteros() {
+        iniciar(CAPACIDAD_INICIAL);
+    }
+
+    /**
+     * Método para obtener el valor de una clave
+     * @param clave a buscar
+     * @return int valor guardado o AUSENTE si la clave no está
+     */
+    public int obtener(int clave) {
+        int i = buscarPosicion(clave);
+        return ocupados[i] ? valores[i] : AUSENTE;
+    }
+
+    /**
+     * Método para guardar o reemplazar el valor de una clave
+     * @param clave a guardar
+     * @param valor asociado a la clave
+     */
+    public void guardar(int clave, int valor) {
+        if ((cantidad + 1) * 4 > claves.length * 3) {
+            redimensionar(claves.length * 2);
+        }
+        int i = buscarPosicion(clave);
+        if (!ocupados[i]) {
+            ocupados[i] = true;
+            claves[i] = clave;
+            cantidad++;
+        }
+        valores[i] = valor;
+    }
+
+    /**
+     * Método para borrar una clave
+     * Reacomoda las claves siguientes para no dejar huecos en la secuencia de sondeo
+     * @param clave a borrar
+     */
+    public void borrar(int clave) {
+        int i = buscarPosicion(clave);
+        if (!ocupados[i]) {
+            return;
+        }
+        ocupados[i] = false;
+        cantidad--;
+
+        int mascara = claves.length - 1;
+        int j = (i + 1) & mascara;
+        while (ocupados[j]) {
+            int ideal = dispersar(claves[j]) & mascara;
+            // Movemos la clave al hueco si el hueco está entre su posición ideal y su posición actual
+            if (((j - ideal) & mascara) >= ((j - i) & mascara)) {
+                claves[i] = claves[j];
+                valores[i] = valores[j];
+                ocupados[i] = true;
+                ocupados[j] = false;
+                i = j;
+            }
+            j = (j + 1) & mascara;
+        }
+    }
+
+    /**
+     * Método para vaciar el índice
+     */
+    public void limpiar() {
+        Arrays.fill(ocupados, false);
+        cantidad = 0;
+    }
+
+    public int tamanio() {
+        return cantidad;
+    }
+
+    private int buscarPosicion(int clave) {
+        int mascara = claves.length - 1;
+        int i = dispersar(clave) & mascara;
+        while (ocupados[i] && claves[i] != clave) {
+            i = (i + 1) & mascara;
+        }
+        return i;
+    }
+
+    private void redimensionar(int capacidad) {
+        var clavesViejas = claves;
+        var valoresViejos = valores;
+        var ocupadosViejos = ocupados;
+        iniciar(capacidad);
+        for (int i = 0; i < clavesViejas.length; i++) {
+            if (ocupadosViejos[i]) {
+                int j = buscarPosicion(clavesViejas[i]);
+                ocupados[j] = true;
+                claves[j] = clavesViejas[i];
+                valores[j] = valoresViejos[i];
+                cantidad++;
+            }
+        }
+    }
+
+    private void iniciar(int capacidad) {
+        claves = new int[capacidad];
+        valores = new int[capacidad];
+        ocupados = new boolean[capacidad];
+        cantidad = 0;
+    }
+
+    /**
+     * Mezcla los bits de la clave para que IDs consecutivos no caigan en posiciones vecinas
+     */
+    private static int dispersar(int clave) {
+        int h = clave * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,168 @@
+package org.example.repository;
+
+import org.example.model.Aula;
+import org.example.model.Laboratorio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Índice de atributos de los espacios para las búsquedas por capacidad y equipamiento
+ * Guarda los espacios ordenados por capacidad en arreglos paralelos (ID, capacidad, computadoras)
+ * y un BitSet por atributo (proyector, TV, laboratorio) sobre esas mismas posiciones
+ * Encontrar los que alcanzan una capacidad es una búsqueda binaria, y combinar varios filtros
+ * es intersectar BitSets, de a 64 espacios por operación, sin tocar las entidades
+ * Los arreglos se arman la primera vez que se consultan después de un cambio y se comparten
+ * como una vista inmutable, así que se pueden recorrer sin tener tomado el almacén
+ */
+public class IndiceEspacios implements IndiceAlmacen<Aula> {
+    public static final int PROYECTOR = 1;
+    public static final int TV = 1 << 1;
+    public static final int LABORATORIO = 1 << 2;
+
+    private final List<Aula> espacios = new ArrayList<>();
+    private Vista vista;
+
+    /**
+     * Vista inmutable del índice, con los espacios ordenados por capacidad y después por ID
+     * La posición i de cada arreglo y el bit i de cada BitSet corresponden al mismo espacio
+     * Los BitSet no se modifican nunca: las consultas trabajan sobre copias
+     * @param ids de los espacios
+     * @param capacidades de los espacios, en orden ascendente
+     * @param computadoras de los laboratorios, 0 para las aulas
+     * @param proyectores espacios con proyector
+     * @param tvs espacios con TV
+     * @param laboratorios espacios que son laboratorios
+     * @param porComputadoras posiciones de los laboratorios ordenadas por cantidad de computadoras
+     */
+    public record Vista(int[] ids, int[] capacidades, int[] computadoras, BitSet proyectores, BitSet tvs,
+                        BitSet laboratorios, int[] porComputadoras) {
+        /**
+         * Método que devuelve la primera posición con capacidad suficiente
+         * @param capacidadMinima que tiene que tener el espacio
+         * @return int posición desde la que todos los espacios alcanzan, o tamanio() si ninguno alcanza
+         */
+        public int desde(int capacidadMinima) {
+            int bajo = 0;
+            int alto = capacidades.length;
+            while (bajo < alto) {
+                int medio = (bajo + alto) >>> 1;
+                if (capacidades[medio] < capacidadMinima) {
+                    bajo = medio + 1;
+                } else {
+                    alto = medio;
+                }
+            }
+            return bajo;
+        }
+
+        public int tamanio() {
+            return ids.length;
+        }
+
+        public boolean tiene(int posicion, int atributo) {
+            return switch (atributo) {
+                case PROYECTOR -> proyectores.get(posicion);
+                case TV -> tvs.get(posicion);
+                case LABORATORIO -> laboratorios.get(posicion);
+                default -> throw new IllegalArgumentException(STR."Atributo desconocido: \{atributo}");
+            };
+        }
+
+        /**
+         * Método que devuelve las posiciones de los espacios que cumplen todas las condiciones
+         * Cualquier condición puede ser null, y en ese caso no se filtra por ella
+         * @param laboratorio true para solo laboratorios, false para solo aulas
+         * @param capacidad mínima del espacio
+         * @param tieneProyector si tiene o no proyector
+         * @param tieneTV si tiene o no TV
+         * @param computadoras mínimas de los laboratorios (las aulas no se filtran por esto)
+         * @return BitSet nuevo con las posiciones que cumplen
+         */
+        public BitSet filtrar(Boolean laboratorio, Integer capacidad, Boolean tieneProyector, Boolean tieneTV,
+                              Integer computadoras) {
+            var resultado = new BitSet(tamanio());
+            resultado.set(capacidad == null ? 0 : desde(capacidad), tamanio());
+            intersectar(resultado, laboratorios, laboratorio);
+            intersectar(resultado, proyectores, tieneProyector);
+            intersectar(resultado, tvs, tieneTV);
+            if (computadoras != null) {
+                // Sacamos los laboratorios que no llegan: son los primeros en porComputadoras
+                for (int k = 0; k < porComputadoras.length && this.computadoras[porComputadoras[k]] < computadoras; k++) {
+                    resultado.clear(porComputadoras[k]);
+                }
+            }
+            return resultado;
+        }
+
+        private static void intersectar(BitSet resultado, BitSet atributo, Boolean valor) {
+            if (valor == null) {
+                return;
+            }
+            if (valor) {
+                resultado.and(atributo);
+            } else {
+                resultado.andNot(atributo);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void reconstruir(List<Aula> datos) {
+        espacios.clear();
+        espacios.addAll(datos);
+        vista = null;
+    }
+
+    @Override
+    public synchronized void agregar(Aula aula) {
+        espacios.add(aula);
+        vista = null;
+    }
+
+    @Override
+    public synchronized void quitar(Aula aula) {
+        // El almacén nos pasa la misma instancia que agregó, así que comparamos por identidad
+        if (espacios.removeIf(e -> e == aula)) {
+            vista = null;
+        }
+    }
+
+    /**
+     * Método que devuelve la vista actual del índice, armándola si hubo cambios
+     * @return Vista inmutable con los espacios ordenados por capacidad
+     */
+    public synchronized Vista vista() {
+        if (vista == null) {
+            var ordenados = espacios.toArray(new Aula[0]);
+            Arrays.sort(ordenados, Comparator.comparingInt(Aula::getCapacidad).thenComparing(Aula::getId));
+            int n = ordenados.length;
+            var ids = new int[n];
+            var capacidades = new int[n];
+            var computadoras = new int[n];
+            var proyectores = new BitSet(n);
+            var tvs = new BitSet(n);
+            var laboratorios = new BitSet(n);
+            for (int i = 0; i < n; i++) {
+                var aula = ordenados[i];
+                ids[i] = aula.getId();
+                capacidades[i] = aula.getCapacidad();
+                proyectores.set(i, aula.isTieneProyector());
+                tvs.set(i, aula.isTieneTV());
+                if (aula instanceof Laboratorio laboratorio) {
+                    laboratorios.set(i);
+                    computadoras[i] = laboratorio.getComputadoras();
+                }
+            }
+            int[] porComputadoras = laboratorios.stream().boxed()
+                    .sorted(Comparator.comparingInt(i -> computadoras[i]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            vista = new Vista(ids, capacidades, computadoras, proyectores, tvs, laboratorios, porComputadoras);
+        }
+        return vista;
+    }
+}
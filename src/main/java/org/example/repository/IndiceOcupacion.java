@@ -0,0 +1,184 @@
+package org.example.repository;
+
+import org.example.model.DiasYBloques;
+import org.example.model.dto.ReservaDTO;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Índice de ocupación de los espacios armado sobre las reservas
+ * Por cada aula guarda una máscara de bits por semana: 7 días x 6 bloques horarios = 42 bits de un long
+ * El bit (día * 6 + bloque) está prendido si el aula está ocupada ese día de esa semana en ese bloque
+ * Saber si un aula está libre en un período es un AND por semana en lugar de recorrer todas las reservas
+ */
+public class IndiceOcupacion implements IndiceAlmacen<ReservaDTO> {
+    private final Map<Integer, OcupacionAula> ocupacionPorAula = new HashMap<>();
+    private final Map<Integer, List<ReservaDTO>> reservasPorAula = new HashMap<>();
+
+    @Override
+    public synchronized void reconstruir(List<ReservaDTO> reservas) {
+        ocupacionPorAula.clear();
+        reservasPorAula.clear();
+        reservas.forEach(this::agregar);
+    }
+
+    @Override
+    public synchronized void agregar(ReservaDTO reserva) {
+        reservasPorAula.computeIfAbsent(reserva.idAula(), id -> new ArrayList<>()).add(reserva);
+        marcar(ocupacionPorAula.computeIfAbsent(reserva.idAula(), id -> new OcupacionAula()), reserva);
+    }
+
+    @Override
+    public synchronized void quitar(ReservaDTO reserva) {
+        var reservas = reservasPorAula.get(reserva.idAula());
+        if (reservas == null || !reservas.removeIf(r -> Objects.equals(r.id(), reserva.id()))) {
+            return;
+        }
+        // Dos reservas pueden compartir bits, así que volvemos a marcar el aula con las que quedan
+        var ocupacion = new OcupacionAula();
+        reservas.forEach(r -> marcar(ocupacion, r));
+        ocupacionPorAula.put(reserva.idAula(), ocupacion);
+    }
+
+    /**
+     * Método para obtener los ID de los espacios ocupados en algún día y bloque del período
+     * @param fechaInicio del período
+     * @param fechaFin del período
+     * @param diasYBloques días de la semana y bloques que se quieren usar
+     * @return Set<Integer> ids de los espacios ocupados
+     */
+    public synchronized Set<Integer> aulasOcupadas(LocalDate fechaInicio, LocalDate fechaFin,
+                                                   DiasYBloques diasYBloques) {
+        Set<Integer> ocupadas = new HashSet<>();
+        var pedido = pedido(fechaInicio, fechaFin, diasYBloques);
+        if (pedido.length == 0) {
+            return ocupadas;
+        }
+        long primera = semana(fechaInicio);
+        ocupacionPorAula.forEach((idAula, ocupacion) -> {
+            if (ocupacion.seSolapa(primera, pedido)) {
+                ocupadas.add(idAula);
+            }
+        });
+        return ocupadas;
+    }
+
+    /**
+     * Método para saber si un espacio está ocupado en algún día y bloque del período
+     * @param idAula del espacio
+     * @param fechaInicio del período
+     * @param fechaFin del período
+     * @param diasYBloques días de la semana y bloques que se quieren usar
+     * @return boolean true si el espacio tiene alguna reserva que se solape
+     */
+    public synchronized boolean estaOcupada(int idAula, LocalDate fechaInicio, LocalDate fechaFin,
+                                            DiasYBloques diasYBloques) {
+        var ocupacion = ocupacionPorAula.get(idAula);
+        if (ocupacion == null) {
+            return false;
+        }
+        var pedido = pedido(fechaInicio, fechaFin, diasYBloques);
+        return pedido.length > 0 && ocupacion.seSolapa(semana(fechaInicio), pedido);
+    }
+
+    /**
+     * Método que calcula una sola vez la máscara pedida de cada semana del período
+     * @param fechaInicio del período
+     * @param fechaFin del período
+     * @param diasYBloques días de la semana y bloques que se quieren usar
+     * @return long[] una máscara por semana desde la semana de fechaInicio, vacío si no se pide nada
+     */
+    private static long[] pedido(LocalDate fechaInicio, LocalDate fechaFin, DiasYBloques diasYBloques) {
+        long patron = diasYBloques == null ? 0 : diasYBloques.mascara();
+        if (patron == 0 || fechaFin.isBefore(fechaInicio)) {
+            return new long[0];
+        }
+        long primera = semana(fechaInicio);
+        long ultima = semana(fechaFin);
+        long[] pedido = new long[(int) (ultima - primera + 1)];
+        for (long s = primera; s <= ultima; s++) {
+            pedido[(int) (s - primera)] = patron & mascaraDias(s, fechaInicio, fechaFin);
+        }
+        return pedido;
+    }
+
+    /**
+     * Método para prender en la ocupación del aula los bits de una reserva
+     * @param ocupacion del aula
+     * @param reserva a marcar
+     */
+    private static void marcar(OcupacionAula ocupacion, ReservaDTO reserva) {
+        long patron = reserva.diasYBloques() == null ? 0 : reserva.diasYBloques().mascara();
+        if (patron == 0 || reserva.fechaFin().isBefore(reserva.fechaInicio())) {
+            return;
+        }
+        long ultima = semana(reserva.fechaFin());
+        for (long s = semana(reserva.fechaInicio()); s <= ultima; s++) {
+            ocupacion.marcar(s, patron & mascaraDias(s, reserva.fechaInicio(), reserva.fechaFin()));
+        }
+    }
+
+    /**
+     * Método que devuelve el número de semana (de lunes a domingo) de una fecha
+     * @param fecha a convertir
+     * @return long semanas desde la época
+     */
+    private static long semana(LocalDate fecha) {
+        // El 1/1/1970 fue jueves, sumando 3 días las semanas empiezan en lunes
+        return Math.floorDiv(fecha.toEpochDay() + 3, 7);
+    }
+
+    /**
+     * Método que devuelve los bits de los días de una semana que caen dentro del período
+     * @param semana número de semana
+     * @param fechaInicio del período
+     * @param fechaFin del período
+     * @return long con los 6 bits de cada día incluido
+     */
+    private static long mascaraDias(long semana, LocalDate fechaInicio, LocalDate fechaFin) {
+        long lunes = semana * 7 - 3;
+        int desde = (int) Math.max(0, fechaInicio.toEpochDay() - lunes);
+        int hasta = (int) Math.min(6, fechaFin.toEpochDay() - lunes);
+        long mascara = 0;
+        for (int dia = desde; dia <= hasta; dia++) {
+            mascara |= DiasYBloques.MASCARA_DIA << (dia * DiasYBloques.BLOQUES_POR_DIA);
+        }
+        return mascara;
+    }
+
+    /**
+     * Ocupación semanal de un aula, guardada en un arreglo de máscaras a partir de su primera semana
+     */
+    private static class OcupacionAula {
+        private long semanaBase;
+        private long[] mascaras = new long[0];
+
+        void marcar(long semana, long mascara) {
+            if (mascaras.length == 0) {
+                semanaBase = semana;
+                mascaras = new long[1];
+            } else if (semana < semanaBase) {
+                int corrimiento = (int) (semanaBase - semana);
+                var nuevas = new long[mascaras.length + corrimiento];
+                System.arraycopy(mascaras, 0, nuevas, corrimiento, mascaras.length);
+                mascaras = nuevas;
+                semanaBase = semana;
+            } else if (semana - semanaBase >= mascaras.length) {
+                mascaras = Arrays.copyOf(mascaras, (int) (semana - semanaBase + 1));
+            }
+            mascaras[(int) (semana - semanaBase)] |= mascara;
+        }
+
+        boolean seSolapa(long primeraSemana, long[] pedido) {
+            long desde = Math.max(primeraSemana, semanaBase);
+            long hasta = Math.min(primeraSemana + pedido.length, semanaBase + mascaras.length);
+            for (long s = desde; s < hasta; s++) {
+                if ((mascaras[(int) (s - semanaBase)] & pedido[(int) (s - primeraSemana)]) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
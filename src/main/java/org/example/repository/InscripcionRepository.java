@@ -1,19 +1,12 @@
 package org.example.repository;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-import org.example.adaptadores.AdaptadorLocalDate;
+import org.example.config.GsonConfig;
+import org.example.exception.ConflictException;
 import org.example.exception.JsonNotFoundException;
 import org.example.model.dto.InscripcionDTO;
 
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.file.Paths;
-import java.time.LocalDate;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -22,7 +15,39 @@ import java.util.Optional;
  * Su responsabilidad es interactuar con el JSON
  */
 public class InscripcionRepository implements JSONRepository<Integer, InscripcionDTO> {
+    private static final String CLAVE_COMISION = "asignatura, profesor y comisión";
+    private static final String CLAVE_ASIGNATURA = "asignatura";
+    private static final String CLAVE_PROFESOR = "profesor";
     private final String ruta = "./json/inscripciones.json";
+    private final AlmacenJSON<InscripcionDTO> almacen = AlmacenJSON.de(ruta, this::getGson,
+            InscripcionDTO.class, InscripcionDTO::id, dto -> dto)
+            .conVersion(InscripcionDTO::version, InscripcionDTO::conVersion)
+            .conClave(CLAVE_COMISION, ClaveComision::de, true)
+            .conClave(CLAVE_ASIGNATURA, InscripcionDTO::idAsignatura, false)
+            .conClave(CLAVE_PROFESOR, InscripcionDTO::idProfesor, false);
+
+    // Una asignatura no puede tener dos veces la misma comisión con el mismo profesor
+    private record ClaveComision(Integer idAsignatura, Integer idProfesor, String comision) {
+        static ClaveComision de(InscripcionDTO dto) {
+            return new ClaveComision(dto.idAsignatura(), dto.idProfesor(), dto.comision());
+        }
+    }
+
+    private InscripcionRepository() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida del repositorio
+     * @return InscripcionRepository único para toda la aplicación
+     */
+    public static InscripcionRepository getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    private static class Unica {
+        private static final InscripcionRepository INSTANCIA = new InscripcionRepository();
+    }
+
     /**
      * Método para retornar la ruta al json
      * que se quiere utilizar en el método default
@@ -40,8 +65,7 @@ public class InscripcionRepository implements JSONRepository<Integer, Inscripcio
      */
     @Override
     public Gson getGson() {
-        return new GsonBuilder().setPrettyPrinting()
-                .registerTypeAdapter(LocalDate.class, new AdaptadorLocalDate()).create();
+        return GsonConfig.gsonConFechas();
     }
 
     /**
@@ -50,33 +74,23 @@ public class InscripcionRepository implements JSONRepository<Integer, Inscripcio
      * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
      */
     public void write(List<InscripcionDTO> list) throws JsonNotFoundException {
-        try (FileWriter writer = new FileWriter(getRuta())) {
-            getGson().toJson(list, writer);
-        } catch (IOException e) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{getRuta()}");
-        }
+        almacen.reemplazarTodos(list);
     }
 
     /**
      * Método que guarda una nueva inscripción en el JSON llamando al método write
      * @param dto la nueva inscripción que se guarda en el JSON
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     * @throws ConflictException si ya existe una inscripción con esa asignatura, profesor y comisión
      */
     @Override
-    public void save(InscripcionDTO dto) throws JsonNotFoundException {
-        // Listamos todos las inscripciones (DTO)
-        var dtos = getAll();
-
-        // Verificamos el último ID y generamos el próximo
-        var lastId = dtos.isEmpty() ? 0 : dtos.getLast().id();
-        dto = new InscripcionDTO(lastId + 1, dto.cantidadAlumnos(), dto.margenAlumnos(),dto.fechaFinInscripcion(),
-                dto.idAsignatura(),dto.comision(),dto.idProfesor());
+    public void save(InscripcionDTO dto) throws JsonNotFoundException, ConflictException {
+        // Pedimos el próximo ID a la secuencia
+        dto = new InscripcionDTO(almacen.proximoId(), dto.cantidadAlumnos(), dto.margenAlumnos(),dto.fechaFinInscripcion(),
+                dto.idAsignatura(),dto.comision(),dto.idProfesor(), 0);
 
-        // Agregamos la nueva inscripción
-        dtos.add(dto);
-
-        // Convertimos la lista a JSON y la escribimos en el archivo
-        write(dtos);
+        // Agregamos la nueva inscripción (si no está repetida) y la escribimos en el archivo
+        almacen.agregarUnico(dto);
     }
 
     /**
@@ -86,14 +100,10 @@ public class InscripcionRepository implements JSONRepository<Integer, Inscripcio
      */
     @Override
     public List<InscripcionDTO> getAll() throws JsonNotFoundException {
-        try (FileReader reader = new FileReader(ruta)) {
-            //Usamos InscripcionDTO porque guardamos solo los id de otras entidades
-            // que corresponde a la inscripción en este json
-            var listType = new TypeToken<List<InscripcionDTO>>() {}.getType();
-            return getGson().fromJson(reader, listType);
-        } catch (IOException e) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
-        }
+        //Usamos InscripcionDTO porque guardamos solo los id de otras entidades
+        // que corresponde a la inscripción en este json
+        //El archivo se lee una sola vez, las siguientes lecturas salen de memoria
+        return almacen.obtenerTodos();
     }
 
 
@@ -105,12 +115,9 @@ public class InscripcionRepository implements JSONRepository<Integer, Inscripcio
      */
     @Override
     public Optional<InscripcionDTO> findById(Integer id) throws JsonNotFoundException {
-        //Usamos stream para filtrar por id
         //Devuelve la Inscripción si existe
         //Devuelve Optional.empty() si no existe
-        return getAll().stream()
-                .filter(dto -> Objects.equals(dto.id(), id))
-                .findFirst();
+        return almacen.buscarPorId(id);
     }
 
 
@@ -121,42 +128,27 @@ public class InscripcionRepository implements JSONRepository<Integer, Inscripcio
      */
     @Override
     public void deleteById(Integer id) throws JsonNotFoundException {
-        //Traemos todas las inscripciones y borramos el que tenga ese ID
-        var inscripciones = getAll();
-        inscripciones.removeIf(dto -> Objects.equals(dto.id(), id));
-
-        write(inscripciones);
+        //Borramos la inscripción que tenga ese ID y guardamos los cambios en el archivo JSON
+        almacen.eliminar(id);
     }
 
     /**
      * Método para modificar una inscripción
      * @param dto que queremos modificar
      * @throws JsonNotFoundException si no encuentra el archivo JSON
+     * @throws ConflictException si otra inscripción ya tiene esa asignatura, profesor y comisión,
+     * o ModificacionConcurrenteException si otra sesión modificó el registro mientras tanto
      */
     @Override
-    public void modify(InscripcionDTO dto) throws JsonNotFoundException {
-        // Obtén todas las inscripciones del JSON
-        var dtos = getAll();
-
-        // Busca el índice de la inscripción que deseas modificar
-        int index = -1;
-        for (int i = 0; i < dtos.size(); i++) {
-            if (Objects.equals(dtos.get(i).id(), dto.id())) {
-                index = i;
-                break;
-            }
-        }
-        // Si no se encuentra el índice, lanza la excepción
-        if (index == -1) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
-        }
-        // Reemplaza el objeto en la lista con una nueva instancia actualizada
+    public void modify(InscripcionDTO dto) throws JsonNotFoundException, ConflictException {
+        // Reemplaza la inscripción con una nueva instancia actualizada y guarda los cambios en el archivo JSON
         var nuevoDTO = new InscripcionDTO(dto.id(), dto.cantidadAlumnos(),dto.margenAlumnos(),
-                dto.fechaFinInscripcion(),dto.idAsignatura(),dto.comision(),dto.idProfesor());
-        dtos.set(index, nuevoDTO);
+                dto.fechaFinInscripcion(),dto.idAsignatura(),dto.comision(),dto.idProfesor(),dto.version());
 
-        // Guarda los cambios en el archivo JSON
-        write(dtos);
+        // Si no se encuentra la inscripción, lanza la excepción
+        if (!almacen.actualizarUnico(nuevoDTO)) {
+            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
+        }
     }
 
 
@@ -169,13 +161,30 @@ public class InscripcionRepository implements JSONRepository<Integer, Inscripcio
      * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
      */
     public Optional<InscripcionDTO> find(Integer idAsignatura, Integer idProfesor, String comision) throws JsonNotFoundException {
-        //Usamos stream para filtrar por los id de Asignatura y Profesor y la comisión
+        //Buscamos en el índice por asignatura, profesor y comisión
         //Devuelve la Inscripción si existe
         //Devuelve Optional.empty() si no existe
-        return getAll().stream()
-                .filter(dto -> dto.idAsignatura() == idAsignatura &&
-                        dto.idProfesor() == idProfesor &&
-                        dto.comision().equals(comision))
-                .findFirst();
+        return almacen.buscarPorClave(CLAVE_COMISION, new ClaveComision(idAsignatura, idProfesor, comision));
+    }
+
+    /**
+     * Método para buscar las inscripciones de un profesor
+     * @param idProfesor de las inscripciones
+     * @return List<InscripcionDTO> inscripciones de ese profesor, en el orden del JSON
+     * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
+     */
+    public List<InscripcionDTO> findByProfesor(Integer idProfesor) throws JsonNotFoundException {
+        return almacen.buscarTodosPorClave(CLAVE_PROFESOR, idProfesor);
+    }
+
+    /**
+     * Método para buscar las inscripciones de una asignatura
+     * @param idAsignatura de las inscripciones
+     * @return List<InscripcionDTO> inscripciones de esa asignatura, en el orden del JSON
+     * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
+     */
+    public List<InscripcionDTO> findByAsignatura(Integer idAsignatura) throws JsonNotFoundException {
+        return almacen.buscarTodosPorClave(CLAVE_ASIGNATURA, idAsignatura);
     }
+
 }
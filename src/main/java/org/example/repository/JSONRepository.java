@@ -1,6 +1,7 @@
 package org.example.repository;
 
 import com.google.gson.Gson;
+import org.example.exception.ConflictException;
 import org.example.exception.JsonNotFoundException;
 
 import java.util.List;
@@ -8,6 +9,10 @@ import java.util.Optional;
 
 /**
  * Interfaz genérica para comunicarse con el JSON
+ * save y modify pueden lanzar ConflictException en los repositorios que declaran claves únicas;
+ * los que no tienen ninguna no la declaran en save
+ * modify lanza ModificacionConcurrenteException (una ConflictException) si otra sesión modificó
+ * el registro mientras tanto
  * @param <ID> Recibe el tipo del ID de T
  * @param <T> Recibe el tipo de Clase que se guarda en el JSON
  */
@@ -15,9 +20,9 @@ public interface JSONRepository <ID,T>{
     String getRuta();
     Gson getGson();
     void write(List<T> list) throws JsonNotFoundException;
-    void save(T t) throws JsonNotFoundException;
+    void save(T t) throws JsonNotFoundException, ConflictException;
     List<T> getAll() throws JsonNotFoundException;
     Optional<T> findById(ID id) throws JsonNotFoundException;
     void deleteById(ID id) throws JsonNotFoundException;
-    void modify(T t) throws JsonNotFoundException;
+    void modify(T t) throws JsonNotFoundException, ConflictException;
 }
@@ -1,14 +1,11 @@
 package org.example.repository;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import org.example.config.GsonConfig;
+import org.example.exception.ConflictException;
 import org.example.exception.JsonNotFoundException;
 import org.example.model.Profesor;
 
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.file.Paths;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -19,7 +16,32 @@ import java.util.Optional;
  * Su responsabilidad es interactuar con el JSON
  */
 public class ProfesorRepository implements JSONRepository<Integer, Profesor>{
+    private static final String CLAVE_MATRICULA = "matricula";
     private final String ruta = "./json/profesores.json";
+    private final AlmacenJSON<Profesor> almacen = AlmacenJSON.de(ruta, this::getGson,
+            Profesor.class, Profesor::getId,
+            AlmacenJSON.copiaConGson(this::getGson, Profesor.class))
+            .conVersion(Profesor::getVersion, (profesor, version) -> {
+                profesor.setVersion(version);
+                return profesor;
+            })
+            .conClave(CLAVE_MATRICULA, Profesor::getMatricula, true);
+
+    private ProfesorRepository() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida del repositorio
+     * @return ProfesorRepository único para toda la aplicación
+     */
+    public static ProfesorRepository getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    private static class Unica {
+        private static final ProfesorRepository INSTANCIA = new ProfesorRepository();
+    }
+
     /**
      * Método para retornar la ruta al json
      * que se quiere utilizar en el método default
@@ -37,7 +59,7 @@ public class ProfesorRepository implements JSONRepository<Integer, Profesor>{
      */
     @Override
     public Gson getGson() {
-        return new Gson();
+        return GsonConfig.gsonSimple();
     }
 
     /**
@@ -46,32 +68,22 @@ public class ProfesorRepository implements JSONRepository<Integer, Profesor>{
      * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
      */
     public void write(List<Profesor> list) throws JsonNotFoundException {
-        try (FileWriter writer = new FileWriter(getRuta())) {
-            getGson().toJson(list, writer);
-        } catch (IOException e) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{getRuta()}");
-        }
+        almacen.reemplazarTodos(list);
     }
 
     /**
      * Método que guarda un nuevo profesor en el JSON llamando al método write
      * @param profesor el nuevo profesor que se guarda en el JSON
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     * @throws ConflictException si ya existe un profesor con esa matrícula
      */
     @Override
-    public void save(Profesor profesor) throws JsonNotFoundException {
-        //Traigo lo que tengo en el json
-        var profesores = getAll();
+    public void save(Profesor profesor) throws JsonNotFoundException, ConflictException {
+        //Pido el próximo id a la secuencia
+        profesor.setId(almacen.proximoId());
 
-        //Verífico el último id y genero el próximo
-        var lastId = profesores.isEmpty() ? 0 : profesores.getLast().getId();
-        profesor.setId(lastId + 1);
-
-        // Agregamos el nuevo profesor
-        profesores.add(profesor);
-
-        // Guarda los cambios en el archivo JSON
-        write(profesores);
+        // Agregamos el nuevo profesor (si la matrícula no está repetida) y guardamos los cambios en el archivo JSON
+        almacen.agregarUnico(profesor);
     }
 
 
@@ -82,13 +94,9 @@ public class ProfesorRepository implements JSONRepository<Integer, Profesor>{
      */
     @Override
     public List<Profesor> getAll() throws JsonNotFoundException {
-        try (FileReader reader = new FileReader(ruta)) {
-            //Indico que el tipo va a ser una Lista de profesores
-            var rolListType = new TypeToken<List<Profesor>>() {}.getType();
-            return getGson().fromJson(reader, rolListType);
-        } catch (IOException e) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
-        }
+        //Indico que el tipo va a ser una Lista de profesores
+        //El archivo se lee una sola vez, las siguientes lecturas salen de memoria
+        return almacen.obtenerTodos();
     }
 
 
@@ -100,12 +108,9 @@ public class ProfesorRepository implements JSONRepository<Integer, Profesor>{
      */
     @Override
     public Optional<Profesor> findById(Integer id) throws JsonNotFoundException {
-        //Usamos stream para filtrar por ID
         //Devuelve el profesor si existe
         //Devuelve optional.empty() sino
-        return getAll().stream()
-                .filter(p -> Objects.equals(p.getId(), id))
-                .findFirst();
+        return almacen.buscarPorId(id);
     }
 
     /**
@@ -115,14 +120,8 @@ public class ProfesorRepository implements JSONRepository<Integer, Profesor>{
      */
     @Override
     public void deleteById(Integer id) throws JsonNotFoundException{
-        //Traigo lo que tiene el json
-        var profesores = getAll();
-
-        //Borro al que tenga el id
-        profesores.removeIf(p -> Objects.equals(p.getId(), id));
-
-        // Guarda los cambios en el archivo JSON
-        write(profesores);
+        //Borro al que tenga el id y guardo los cambios en el archivo JSON
+        almacen.eliminar(id);
     }
 
 
@@ -130,26 +129,25 @@ public class ProfesorRepository implements JSONRepository<Integer, Profesor>{
      * Método para modificar el profesor
      * @param profesor que queremos modificar
      * @throws JsonNotFoundException si no encuentra el archivo JSON
+     * @throws ConflictException si otro profesor ya tiene esa matrícula,
+     * o ModificacionConcurrenteException si otra sesión modificó el registro mientras tanto
      */
     @Override
-    public void modify(Profesor profesor) throws JsonNotFoundException {
-        // Obtén todos los profesores del JSON
-        var profesores = getAll();
-
+    public void modify(Profesor profesor) throws JsonNotFoundException, ConflictException {
         // Busca el profesor por ID y actualiza sus campos
-        var exist = profesores.stream()
-                .filter(p -> Objects.equals(p.getId(), profesor.getId()))
-                .findFirst()
+        var exist = almacen.buscarPorId(profesor.getId())
                 .orElseThrow(() -> new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}"));
 
         // Actualiza los atributos del profesor existente con los del nuevo objeto
         exist.setId(profesor.getId());
+        // Conserva la versión que se leyó, así se rechaza si otra sesión lo modificó
+        exist.setVersion(profesor.getVersion());
         exist.setNombre(profesor.getNombre());
         exist.setApellido(profesor.getApellido());
         exist.setMatricula(profesor.getMatricula());
 
         // Guarda los cambios en el archivo JSON
-        write(profesores);
+        almacen.actualizarUnico(exist);
     }
 
     /**
@@ -159,11 +157,9 @@ public class ProfesorRepository implements JSONRepository<Integer, Profesor>{
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
      */
     public Optional<Profesor> findByMatricula(String matricula) throws JsonNotFoundException {
-        //Usamos stream para filtrar por matricula
+        //Buscamos en el índice por matrícula
         //Devuelve el profesor si existe
         //Devuelve optional.empty() sino
-        return getAll().stream()
-                .filter(p -> p.getMatricula().equals(matricula))
-                .findFirst();
+        return almacen.buscarPorClave(CLAVE_MATRICULA, matricula);
     }
 }
@@ -2,22 +2,17 @@ package org.example.repository;
 
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-import org.example.adaptadores.AdaptadorLocalDate;
-import org.example.adaptadores.AdaptadorLocalDateTime;
+import org.example.config.GsonConfig;
 import org.example.exception.JsonNotFoundException;
+import org.example.exception.ModificacionConcurrenteException;
+import org.example.model.DiasYBloques;
 import org.example.model.dto.ReservaDTO;
 
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Repositorio de reservas
@@ -25,7 +20,30 @@ import java.util.Optional;
  * Su responsabilidad es interactuar con el JSON
  */
 public class ReservaRepository implements JSONRepository<Integer, ReservaDTO> {
+    private static final String CLAVE_INSCRIPCION = "inscripcion";
+    private static final String CLAVE_AULA = "aula";
     private final String ruta = "./json/reservas.json";
+    private final AlmacenJSON<ReservaDTO> almacen = AlmacenJSON.conDiario(ruta, this::getGson,
+            ReservaDTO.class, ReservaDTO::id, dto -> dto)
+            .conVersion(ReservaDTO::version, ReservaDTO::conVersion)
+            .conClave(CLAVE_INSCRIPCION, ReservaDTO::idInscripcion, false)
+            .conClave(CLAVE_AULA, ReservaDTO::idAula, false);
+
+    private ReservaRepository() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida del repositorio
+     * @return ReservaRepository único para toda la aplicación
+     */
+    public static ReservaRepository getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    private static class Unica {
+        private static final ReservaRepository INSTANCIA = new ReservaRepository();
+    }
+
     /**
      * Método para retornar la ruta al json
      * que se quiere utilizar en el método default
@@ -43,10 +61,7 @@ public class ReservaRepository implements JSONRepository<Integer, ReservaDTO> {
      */
     @Override
     public Gson getGson() {
-        return new GsonBuilder().setPrettyPrinting()
-                .registerTypeAdapter(LocalDate.class, new AdaptadorLocalDate())
-                .registerTypeAdapter(LocalDateTime.class, new AdaptadorLocalDateTime())
-                .create();
+        return GsonConfig.gsonConFechas();
     }
 
     /**
@@ -55,11 +70,7 @@ public class ReservaRepository implements JSONRepository<Integer, ReservaDTO> {
      * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
      */
     public void write(List<ReservaDTO> list) throws JsonNotFoundException {
-        try (FileWriter writer = new FileWriter(getRuta())) {
-            getGson().toJson(list, writer);
-        } catch (IOException e) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{getRuta()}");
-        }
+        almacen.reemplazarTodos(list);
     }
 
     /**
@@ -69,19 +80,52 @@ public class ReservaRepository implements JSONRepository<Integer, ReservaDTO> {
      */
     @Override
     public void save(ReservaDTO dto) throws JsonNotFoundException {
-        // Listamos todos las reservas (DTO)
-        var dtos = getAll();
+        // Pedimos el próximo ID a la secuencia
+        dto = new ReservaDTO(almacen.proximoId(), dto.fechaInicio(), dto.fechaFin(),
+                                dto.idAula(),dto.idInscripcion(),dto.diasYBloques(), 0);
 
-        // Verificamos el último ID y generamos el próximo
-        var lastId = dtos.isEmpty() ? 0 : dtos.getLast().id();
-        dto = new ReservaDTO(lastId + 1, dto.fechaInicio(), dto.fechaFin(),
-                                dto.idAula(),dto.idInscripcion(),dto.diasYBloques());
+        // Agregamos la nueva reserva y guardamos los cambios en el archivo JSON
+        almacen.agregar(dto);
+    }
 
-        // Agregamos la nueva reserva
-        dtos.add(dto);
+    /**
+     * Método que prepara el alta de una reserva en una unidad de trabajo
+     * La reserva se guarda recién cuando se confirma la unidad
+     * @param dto la nueva reserva
+     * @param unidad donde se prepara el alta
+     * @return ReservaDTO la reserva con el ID que va a tener
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     */
+    public ReservaDTO save(ReservaDTO dto, UnidadDeTrabajo unidad) throws JsonNotFoundException {
+        var nuevo = new ReservaDTO(unidad.proximoId(almacen), dto.fechaInicio(), dto.fechaFin(),
+                dto.idAula(), dto.idInscripcion(), dto.diasYBloques(), 0);
+        unidad.agregar(almacen, nuevo);
+        return nuevo;
+    }
 
-        // Guarda los cambios en el archivo JSON
-        write(dtos);
+    /**
+     * Método que guarda varias reservas nuevas con una sola escritura a disco
+     * @param dtos las nuevas reservas, en el orden en que se les asignan los ID
+     * @return List<ReservaDTO> las reservas guardadas, con su ID
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     */
+    public List<ReservaDTO> saveAll(List<ReservaDTO> dtos) throws JsonNotFoundException {
+        List<ReservaDTO> guardadas = new ArrayList<>(dtos.size());
+        if (dtos.isEmpty()) {
+            return guardadas;
+        }
+        // Reservamos todos los IDs del lote de una vez, con un solo acceso a la secuencia
+        var proximoId = almacen.reservarIds(dtos.size());
+        // Dentro del grupo las altas quedan en memoria y se llevan a disco una sola vez al final
+        try (var grupo = EscrituraDurable.grupo()) {
+            for (var dto : dtos) {
+                var nuevo = new ReservaDTO(proximoId++, dto.fechaInicio(), dto.fechaFin(),
+                        dto.idAula(), dto.idInscripcion(), dto.diasYBloques(), 0);
+                almacen.agregar(nuevo);
+                guardadas.add(nuevo);
+            }
+        }
+        return guardadas;
     }
 
     /**
@@ -91,13 +135,9 @@ public class ReservaRepository implements JSONRepository<Integer, ReservaDTO> {
      */
     @Override
     public List<ReservaDTO> getAll() throws JsonNotFoundException {
-        try (FileReader reader = new FileReader(ruta)) {
-            //Usamos ReservaDTO porque guardamos solo el ID de inscripción y aula que corresponde al usuario en este json
-            var listType = new TypeToken<List<ReservaDTO>>() {}.getType();
-            return getGson().fromJson(reader, listType);
-        } catch (IOException e) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
-        }
+        //Usamos ReservaDTO porque guardamos solo el ID de inscripción y aula que corresponde al usuario en este json
+        //El archivo se lee una sola vez, las siguientes lecturas salen de memoria
+        return almacen.obtenerTodos();
     }
 
 
@@ -109,12 +149,9 @@ public class ReservaRepository implements JSONRepository<Integer, ReservaDTO> {
      */
     @Override
     public Optional<ReservaDTO> findById(Integer id) throws JsonNotFoundException {
-        //Usamos stream para filtrar por id
         //Devuelve la reserva si existe
         //Devuelve optional.empty() sino
-        return getAll().stream()
-                .filter(dto -> Objects.equals(dto.id(), id))
-                .findFirst();
+        return almacen.buscarPorId(id);
     }
 
 
@@ -125,42 +162,74 @@ public class ReservaRepository implements JSONRepository<Integer, ReservaDTO> {
      */
     @Override
     public void deleteById(Integer id) throws JsonNotFoundException {
-        //Traemos todas las reservas y borramos el que tenga ese ID
-        var reservas = getAll();
-        reservas.removeIf(dto -> Objects.equals(dto.id(), id));
-
-        // Guarda los cambios en el archivo JSON
-        write(reservas);
+        //Borramos la reserva que tenga ese ID y guardamos los cambios en el archivo JSON
+        almacen.eliminar(id);
     }
 
     /**
      * Método para modificar una reserva
      * @param dto que queremos modificar
      * @throws JsonNotFoundException si no encuentra el archivo JSON
+     * @throws ModificacionConcurrenteException si otra sesión modificó el registro mientras tanto
      */
     @Override
-    public void modify(ReservaDTO dto) throws JsonNotFoundException {
-        // Obtén todas las reservas del JSON
-        var dtos = getAll();
-
-        // Busca el índice de la reserva que deseas modificar
-        int index = -1;
-        for (int i = 0; i < dtos.size(); i++) {
-            if (Objects.equals(dtos.get(i).id(), dto.id())) {
-                index = i;
-                break;
-            }
+    public void modify(ReservaDTO dto) throws JsonNotFoundException, ModificacionConcurrenteException {
+        // Reemplaza la reserva con una nueva instancia actualizada y guarda los cambios en el archivo JSON
+        var nuevoDTO = new ReservaDTO(dto.id(), dto.fechaInicio(),dto.fechaFin(),dto.idAula(),
+                dto.idInscripcion(),dto.diasYBloques(),dto.version());
+
+        // Si no se encuentra la reserva, lanza la excepción
+        if (!almacen.actualizarVerificado(nuevoDTO)) {
+            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
         }
-        // Si no se encuentra el índice, lanza la excepción
-        if (index == -1) {
+    }
+
+    /**
+     * Método que prepara la modificación de una reserva en una unidad de trabajo
+     * @param dto que queremos modificar
+     * @param unidad donde se prepara la modificación
+     * @throws JsonNotFoundException si no se encuentra la reserva
+     */
+    public void modify(ReservaDTO dto, UnidadDeTrabajo unidad) throws JsonNotFoundException {
+        if (almacen.buscarPorId(dto.id()).isEmpty()) {
             throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
         }
-        // Reemplaza el objeto en la lista con una nueva instancia actualizada
-        var nuevoDTO = new ReservaDTO(dto.id(), dto.fechaInicio(),dto.fechaFin(),dto.idAula(),
-                dto.idInscripcion(),dto.diasYBloques());
-        dtos.set(index, nuevoDTO);
+        unidad.actualizar(almacen, dto);
+    }
+
+    /**
+     * Método para obtener los ID de las aulas ocupadas en algún día y bloque de un período
+     * Usa el índice de ocupación, que se mantiene actualizado con cada alta, modificación y baja
+     * @param fechaInicio del período
+     * @param fechaFin del período
+     * @param diasYBloques días de la semana y bloques del período
+     * @return Set<Integer> ids de las aulas ocupadas
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     */
+    public Set<Integer> findAulasOcupadas(LocalDate fechaInicio, LocalDate fechaFin,
+                                          DiasYBloques diasYBloques) throws JsonNotFoundException {
+        return almacen.indice("ocupacion", IndiceOcupacion::new)
+                .aulasOcupadas(fechaInicio, fechaFin, diasYBloques);
+    }
+
+    /**
+     * Método para buscar las reservas de una inscripción
+     * @param idInscripcion de las reservas
+     * @return List<ReservaDTO> reservas de esa inscripción, en el orden del JSON
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     */
+    public List<ReservaDTO> findByInscripcion(Integer idInscripcion) throws JsonNotFoundException {
+        return almacen.buscarTodosPorClave(CLAVE_INSCRIPCION, idInscripcion);
+    }
 
-        // Guarda los cambios en el archivo JSON
-        write(dtos);
+    /**
+     * Método para buscar las reservas de un aula o laboratorio
+     * @param idAula de las reservas
+     * @return List<ReservaDTO> reservas de ese espacio, en el orden del JSON
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     */
+    public List<ReservaDTO> findByAula(Integer idAula) throws JsonNotFoundException {
+        return almacen.buscarTodosPorClave(CLAVE_AULA, idAula);
     }
+
 }
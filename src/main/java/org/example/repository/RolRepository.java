@@ -1,16 +1,11 @@
 package org.example.repository;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import org.example.config.GsonConfig;
+import org.example.exception.ConflictException;
 import org.example.exception.JsonNotFoundException;
 import org.example.model.Rol;
 
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -22,7 +17,31 @@ import java.util.Optional;
  * Su responsabilidad es interactuar con el JSON
  */
 public class RolRepository implements JSONRepository<Integer, Rol>{
+    private static final String CLAVE_NOMBRE = "nombre";
     private final String ruta = "./json/roles.json";
+    private final AlmacenJSON<Rol> almacen = AlmacenJSON.de(ruta, this::getGson,
+            Rol.class, Rol::getId,
+            AlmacenJSON.copiaConGson(this::getGson, Rol.class))
+            .conVersion(Rol::getVersion, (rol, version) -> {
+                rol.setVersion(version);
+                return rol;
+            })
+            .conClave(CLAVE_NOMBRE, Rol::getNombre, true);
+
+    private RolRepository() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida del repositorio
+     * @return RolRepository único para toda la aplicación
+     */
+    public static RolRepository getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    private static class Unica {
+        private static final RolRepository INSTANCIA = new RolRepository();
+    }
 
     /**
      * Método para retornar la ruta al json
@@ -41,7 +60,7 @@ public class RolRepository implements JSONRepository<Integer, Rol>{
      */
     @Override
     public Gson getGson() {
-        return new Gson();
+        return GsonConfig.gsonSimple();
     }
 
     /**
@@ -50,32 +69,22 @@ public class RolRepository implements JSONRepository<Integer, Rol>{
      * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
      */
     public void write(List<Rol> list) throws JsonNotFoundException {
-        try (FileWriter writer = new FileWriter(getRuta())) {
-            getGson().toJson(list, writer);
-        } catch (IOException e) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{getRuta()}");
-        }
+        almacen.reemplazarTodos(list);
     }
 
     /**
      * Método que guarda un nuevo rol en el JSON llamando al método write
      * @param rol el nuevo rol que se guarda en el JSON
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     * @throws ConflictException si ya existe un rol con ese nombre
      */
     @Override
-    public void save(Rol rol) throws JsonNotFoundException {
-        //Traigo lo que tengo en el json
-        var roles = getAll();
+    public void save(Rol rol) throws JsonNotFoundException, ConflictException {
+        //Pido el próximo id a la secuencia
+        rol.setId(almacen.proximoId());
 
-        //Verifíco el último id y genero el próximo
-        var lastId = roles.isEmpty() ? 0 : roles.getLast().getId();
-        rol.setId(lastId + 1);
-
-        // Agregamos el nuevo rol
-        roles.add(rol);
-
-        // Guarda los cambios en el archivo JSON
-        write(roles);
+        // Agregamos el nuevo rol (si el nombre no está repetido) y guardamos los cambios en el archivo JSON
+        almacen.agregarUnico(rol);
     }
 
 
@@ -86,13 +95,9 @@ public class RolRepository implements JSONRepository<Integer, Rol>{
      */
     @Override
     public List<Rol> getAll() throws JsonNotFoundException {
-        try (FileReader reader = new FileReader(ruta)) {
-            //Indico que el tipo va a ser una Lista de Roles
-            var rolListType = new TypeToken<List<Rol>>() {}.getType();
-            return getGson().fromJson(reader, rolListType);
-        } catch (IOException e) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
-        }
+        //Indico que el tipo va a ser una Lista de Roles
+        //El archivo se lee una sola vez, las siguientes lecturas salen de memoria
+        return almacen.obtenerTodos();
     }
 
 
@@ -104,12 +109,9 @@ public class RolRepository implements JSONRepository<Integer, Rol>{
      */
     @Override
     public Optional<Rol> findById(Integer id) throws JsonNotFoundException {
-        //Usamos stream para filtrar por ID
         //Devuelve el rol si existe
         //Devuelve optional.empty() sino
-        return getAll().stream()
-                .filter(r -> Objects.equals(r.getId(), id))
-                .findFirst();
+        return almacen.buscarPorId(id);
     }
 
     /**
@@ -119,39 +121,32 @@ public class RolRepository implements JSONRepository<Integer, Rol>{
      */
     @Override
     public void deleteById(Integer id) throws JsonNotFoundException{
-        //Traigo lo que tiene el json
-        var roles = getAll();
-
-        //Borro al que tenga el id
-        roles.removeIf(r -> Objects.equals(r.getId(), id));
-
-        // Guarda los cambios en el archivo JSON
-        write(roles);
+        //Borro al que tenga el id y guardo los cambios en el archivo JSON
+        almacen.eliminar(id);
     }
 
     /**
      * Método para modificar el rol
      * @param rol que queremos modificar
      * @throws JsonNotFoundException si no encuentra el archivo JSON
+     * @throws ConflictException si otro rol ya tiene ese nombre,
+     * o ModificacionConcurrenteException si otra sesión modificó el registro mientras tanto
      */
     @Override
-    public void modify(Rol rol) throws JsonNotFoundException {
-        // Obtén todos los roles del JSON
-        var roles = getAll();
-
+    public void modify(Rol rol) throws JsonNotFoundException, ConflictException {
         // Busca el rol por ID y actualiza sus campos
-        var exist = roles.stream()
-                .filter(r -> Objects.equals(r.getId(), rol.getId()))
-                .findFirst()
+        var exist = almacen.buscarPorId(rol.getId())
                 .orElseThrow(() -> new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}"));
 
         // Actualiza los atributos del rol existente con los del nuevo objeto
         exist.setId(rol.getId());
+        // Conserva la versión que se leyó, así se rechaza si otra sesión lo modificó
+        exist.setVersion(rol.getVersion());
         exist.setNombre(rol.getNombre());
         exist.setPermisos(rol.getPermisos());
 
         // Guarda los cambios en el archivo JSON
-        write(roles);
+        almacen.actualizarUnico(exist);
     }
 
     /**
@@ -161,11 +156,9 @@ public class RolRepository implements JSONRepository<Integer, Rol>{
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
      */
     public Optional<Rol> findByNombre(String nombre) throws JsonNotFoundException {
-        //Usamos stream para filtrar por nombre
+        //Buscamos en el índice por nombre
         //Devuelve el rol si existe
         //Devuelve optional.empty() sino
-        return getAll().stream()
-                .filter(r -> r.getNombre().equals(nombre))
-                .findFirst();
+        return almacen.buscarPorClave(CLAVE_NOMBRE, nombre);
     }
 }
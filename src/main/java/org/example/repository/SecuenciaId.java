@@ -0,0 +1,142 @@
+package org.example.repository;
+
+import org.example.exception.JsonNotFoundException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Secuencia persistente de IDs de un archivo JSON
+ * Guarda en un archivo chico al lado del JSON (por ejemplo ./json/reservas.secuencia) el próximo ID
+ * que todavía no se entregó, así que pedir un ID no lee el JSON y un ID borrado no se vuelve a usar
+ * Los IDs se reservan de a bloques con el archivo bloqueado (FileChannel.lock) y el nuevo valor se fuerza
+ * a disco antes de entregarlos, así que dos hilos o dos procesos que guardan a la vez nunca reciben el mismo ID
+ * Los IDs que sobran de un bloque cuando termina el proceso quedan sin usar (puede haber huecos)
+ * Si el archivo no existe o no se puede leer, la secuencia arranca después del ID más alto guardado
+ */
+public class SecuenciaId {
+    // IDs que se reservan de una vez para las altas sueltas (-Dgestionaulas.secuencia.bloque=N)
+    public static final String PROPIEDAD_BLOQUE = "gestionaulas.secuencia.bloque";
+    private static final int BLOQUE = Math.max(1, Integer.getInteger(PROPIEDAD_BLOQUE, 1));
+    // El valor se escribe siempre con el mismo ancho, así se pisa en el lugar sin truncar el archivo
+    private static final int ANCHO = 12;
+
+    /**
+     * Interfaz para el ID más alto ya usado, con la que se arranca la secuencia la primera vez
+     */
+    public interface Piso {
+        int ultimoId() throws JsonNotFoundException;
+    }
+
+    private final Path ruta;
+    private final Piso piso;
+    private int siguiente;
+    private int limite;
+
+    public SecuenciaId(Path ruta, Piso piso) {
+        this.ruta = ruta;
+        this.piso = piso;
+    }
+
+    /**
+     * Método que devuelve la ruta de la secuencia que acompaña a un archivo JSON
+     * @param rutaJson ruta al archivo JSON
+     * @return Path de la secuencia, por ejemplo ./json/reservas.secuencia
+     */
+    public static Path rutaPara(String rutaJson) {
+        var base = rutaJson.endsWith(".json") ? rutaJson.substring(0, rutaJson.length() - 5) : rutaJson;
+        return Path.of(STR."\{base}.secuencia");
+    }
+
+    /**
+     * Método que entrega el próximo ID
+     * Mientras quede algo del bloque reservado no se toca el archivo
+     * @return int ID que nadie más va a recibir
+     * @throws JsonNotFoundException si no se puede leer o escribir el archivo de la secuencia
+     */
+    public synchronized int proximo() throws JsonNotFoundException {
+        if (siguiente >= limite) {
+            siguiente = reservarEnArchivo(BLOQUE);
+            limite = siguiente + BLOQUE;
+        }
+        return siguiente++;
+    }
+
+    /**
+     * Método que reserva varios IDs consecutivos, para las altas en lote
+     * @param cantidad de IDs que se necesitan
+     * @return int primer ID del bloque; el bloque va de ese ID a ese ID + cantidad - 1
+     * @throws JsonNotFoundException si no se puede leer o escribir el archivo de la secuencia
+     */
+    public synchronized int reservar(int cantidad) throws JsonNotFoundException {
+        if (cantidad < 1) {
+            throw new IllegalArgumentException(STR."Cantidad de IDs inválida: \{cantidad}");
+        }
+        // Si alcanza con lo que queda del bloque actual no vamos al archivo
+        if (limite - siguiente >= cantidad) {
+            int primero = siguiente;
+            siguiente += cantidad;
+            return primero;
+        }
+        return reservarEnArchivo(cantidad);
+    }
+
+    /**
+     * Método que avanza la secuencia del archivo con el archivo bloqueado
+     * El lock es entre procesos; entre hilos del mismo proceso alcanza con el synchronized de la instancia
+     * @param cantidad de IDs que se reservan
+     * @return int primer ID reservado
+     * @throws JsonNotFoundException si no se puede leer o escribir el archivo de la secuencia
+     */
+    private int reservarEnArchivo(int cantidad) throws JsonNotFoundException {
+        try {
+            var carpeta = ruta.toAbsolutePath().getParent();
+            if (carpeta != null) {
+                Files.createDirectories(carpeta);
+            }
+            try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileLock ignored = canal.lock()) {
+                int primero = leer(canal);
+                if (primero < 1) {
+                    primero = piso.ultimoId() + 1;
+                }
+                escribir(canal, primero + cantidad);
+                canal.force(false);
+                return primero;
+            }
+        } catch (IOException e) {
+            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
+        }
+    }
+
+    private static int leer(FileChannel canal) throws IOException {
+        var buffer = ByteBuffer.allocate(ANCHO);
+        int leidos;
+        do {
+            leidos = canal.read(buffer, buffer.position());
+        } while (leidos > 0 && buffer.hasRemaining());
+        buffer.flip();
+        var texto = StandardCharsets.US_ASCII.decode(buffer).toString().trim();
+        try {
+            return texto.isEmpty() ? 0 : Integer.parseInt(texto);
+        } catch (NumberFormatException e) {
+            // Un archivo a medio escribir se trata como si no existiera y se vuelve a arrancar desde el piso
+            return 0;
+        }
+    }
+
+    private static void escribir(FileChannel canal, int valor) throws IOException {
+        var buffer = StandardCharsets.US_ASCII.encode(String.format(STR."%\{ANCHO - 1}d\n", valor));
+        int posicion = 0;
+        while (buffer.hasRemaining()) {
+            posicion += canal.write(buffer, posicion);
+        }
+    }
+}
@@ -2,32 +2,63 @@ package org.example.repository;
 
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-import org.example.adaptadores.AdaptadorLocalDate;
-import org.example.adaptadores.AdaptadorLocalDateTime;
-import org.example.enums.BloqueHorario;
+import org.example.config.GsonConfig;
 import org.example.enums.EstadoSolicitud;
 import org.example.exception.JsonNotFoundException;
+import org.example.exception.ModificacionConcurrenteException;
+import org.example.model.DiasYBloques;
 import org.example.model.dto.SolicitudCambioAulaDTO;
+import org.example.utils.Utils;
 
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.file.Paths;
-import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Predicate;
 
 /**
  * Repositorio de solicitud de cambio de aula
  * Implementa JSONRepository
  * Su responsabilidad es interactuar con el JSON
+ * En solicitudes.json quedan las pendientes y las resueltas recientes; las resueltas más viejas
+ * se mueven a un ArchivoJSON comprimido y solo se leen cuando se consulta el historial
  */
 public class SolicitudCambioAulaRepository implements JSONRepository<Integer, SolicitudCambioAulaDTO>{
+    // Claves secundarias que el almacén mantiene sobre las solicitudes
+    private static final String CLAVE_ESTADO = "estado";
+    private static final String CLAVE_AULA = "aula";
+    private static final String CLAVE_PROFESOR = "profesor";
+    private static final String CLAVE_RESERVA = "reserva";
     private final String ruta = "./json/solicitudes.json";
+    private final AlmacenJSON<SolicitudCambioAulaDTO> almacen = AlmacenJSON.conDiario(ruta, this::getGson,
+            SolicitudCambioAulaDTO.class, SolicitudCambioAulaDTO::id, dto -> dto)
+            .conVersion(SolicitudCambioAulaDTO::version, SolicitudCambioAulaDTO::conVersion)
+            .conPisoDeIds(() -> archivo.ultimoId())
+            .conClave(CLAVE_ESTADO, SolicitudCambioAulaDTO::estadoSolicitud, false)
+            .conClave(CLAVE_AULA, SolicitudCambioAulaDTO::idAula, false)
+            .conClave(CLAVE_PROFESOR, SolicitudCambioAulaDTO::idProfesor, false)
+            .conClave(CLAVE_RESERVA, SolicitudCambioAulaDTO::idReserva, false);
+
+    // Las solicitudes resueltas hace más de estos días pasan al archivo (-Dgestionaulas.solicitudes.diasRecientes=N)
+    public static final String PROPIEDAD_DIAS_RECIENTES = "gestionaulas.solicitudes.diasRecientes";
+    private static final int DIAS_RECIENTES = Integer.getInteger(PROPIEDAD_DIAS_RECIENTES, 90);
+    private static final ArchivoJSON<SolicitudCambioAulaDTO> archivo = new ArchivoJSON<>("./json/archivo",
+            "solicitudes", GsonConfig::gsonConFechas, SolicitudCambioAulaDTO.class, SolicitudCambioAulaDTO::id,
+            SolicitudCambioAulaRepository::fechaResolucion, dto -> dto);
+
+    private SolicitudCambioAulaRepository() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida del repositorio
+     * @return SolicitudCambioAulaRepository único para toda la aplicación
+     */
+    public static SolicitudCambioAulaRepository getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    private static class Unica {
+        private static final SolicitudCambioAulaRepository INSTANCIA = new SolicitudCambioAulaRepository();
+    }
+
     /**
      * Método para retornar la ruta al json
      * que se quiere utilizar en el método default
@@ -45,10 +76,7 @@ public class SolicitudCambioAulaRepository implements JSONRepository<Integer, So
      */
     @Override
     public Gson getGson() {
-        return new GsonBuilder().setPrettyPrinting()
-                .registerTypeAdapter(LocalDate.class, new AdaptadorLocalDate())
-                .registerTypeAdapter(LocalDateTime.class, new AdaptadorLocalDateTime())
-                .create();
+        return GsonConfig.gsonConFechas();
     }
 
     /**
@@ -57,11 +85,7 @@ public class SolicitudCambioAulaRepository implements JSONRepository<Integer, So
      * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
      */
     public void write(List<SolicitudCambioAulaDTO> list) throws JsonNotFoundException {
-        try (FileWriter writer = new FileWriter(getRuta())) {
-            getGson().toJson(list, writer);
-        } catch (IOException e) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{getRuta()}");
-        }
+        almacen.reemplazarTodos(list);
     }
 
     /**
@@ -71,20 +95,13 @@ public class SolicitudCambioAulaRepository implements JSONRepository<Integer, So
      */
     @Override
     public void save(SolicitudCambioAulaDTO dto) throws JsonNotFoundException {
-        // Listamos todos las solicitudes (DTO)
-        var dtos = getAll();
-
-        // Verificamos el último ID y generamos el próximo
-        var lastId = dtos.isEmpty() ? 0 : dtos.getLast().id();
-        dto = new SolicitudCambioAulaDTO(lastId + 1, dto.idProfesor(),dto.idReserva(),dto.idAula(),dto.estadoSolicitud(),
+        // Pedimos el próximo ID a la secuencia, que no repite los IDs que ya se archivaron
+        dto = new SolicitudCambioAulaDTO(almacen.proximoId(), dto.idProfesor(),dto.idReserva(),dto.idAula(),dto.estadoSolicitud(),
                 dto.tipoSolicitud(),dto.fechaInicio(),dto.fechaFin(),dto.diasYBloques(), dto.comentarioEstado(),
-                dto.comentarioProfesor(),dto.fechaHoraSolicitud());
-
-        // Agregamos la nueva solicitud
-        dtos.add(dto);
+                dto.comentarioProfesor(),dto.fechaHoraSolicitud(), dto.fechaHoraResolucion(), 0);
 
-        // Guarda los cambios en el archivo JSON
-        write(dtos);
+        // Agregamos la nueva solicitud y guardamos los cambios en el archivo JSON
+        almacen.agregar(dto);
     }
 
     /**
@@ -94,13 +111,10 @@ public class SolicitudCambioAulaRepository implements JSONRepository<Integer, So
      */
     @Override
     public List<SolicitudCambioAulaDTO> getAll() throws JsonNotFoundException {
-        try (FileReader reader = new FileReader(ruta)) {
-            //Usamos SolicitudCambioAulaDTO porque guardamos solo el ID de Clases que contiene en el json
-            var listType = new TypeToken<List<SolicitudCambioAulaDTO>>() {}.getType();
-            return getGson().fromJson(reader, listType);
-        } catch (IOException e) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
-        }
+        //Usamos SolicitudCambioAulaDTO porque guardamos solo el ID de Clases que contiene en el json
+        //El archivo se lee una sola vez, las siguientes lecturas salen de memoria
+        //Incluye el historial archivado
+        return unir(almacen.obtenerTodos(), archivo.buscar(dto -> true));
     }
 
     /**
@@ -111,12 +125,10 @@ public class SolicitudCambioAulaRepository implements JSONRepository<Integer, So
      */
     @Override
     public Optional<SolicitudCambioAulaDTO> findById(Integer id) throws JsonNotFoundException {
-        //Usamos stream para filtrar por id
-        //Devuelve la solicitud si existe
+        //Devuelve la solicitud si existe, buscando en el archivo si no está entre las recientes
         //Devuelve optional.empty() sino
-        return getAll().stream()
-                .filter(dto -> Objects.equals(dto.id(), id))
-                .findFirst();
+        var reciente = almacen.buscarPorId(id);
+        return reciente.isPresent() ? reciente : archivo.buscarPorId(id);
     }
 
     /**
@@ -126,48 +138,51 @@ public class SolicitudCambioAulaRepository implements JSONRepository<Integer, So
      */
     @Override
     public void deleteById(Integer id) throws JsonNotFoundException {
-        //Traemos todas las solicitudes y borramos el que tenga ese ID
-        var solicitudes = getAll();
-        solicitudes.removeIf(dto -> Objects.equals(dto.id(), id));
-
-        // Guarda los cambios en el archivo JSON
-        write(solicitudes);
+        //Borramos la solicitud que tenga ese ID y guardamos los cambios en el archivo JSON
+        //Si ya estaba archivada se borra de su segmento
+        if (almacen.buscarPorId(id).isPresent()) {
+            almacen.eliminar(id);
+        } else {
+            archivo.eliminar(id);
+        }
     }
 
     /**
      * Método para modificar una solicitud
      * @param dto que queremos modificar
      * @throws JsonNotFoundException si no encuentra el archivo JSON
+     * @throws ModificacionConcurrenteException si otra sesión modificó el registro mientras tanto
      */
     @Override
-    public void modify(SolicitudCambioAulaDTO dto) throws JsonNotFoundException {
-        // Obtén todas las solicitudes del JSON
-        var dtos = getAll();
-
-        // Busca el índice de la solicitud que deseas modificar
-        int index = -1;
-        for (int i = 0; i < dtos.size(); i++) {
-            if (Objects.equals(dtos.get(i).id(), dto.id())) {
-                index = i;
-                break;
-            }
-        }
-        // Si no se encuentra el índice, lanza la excepción
-        if (index == -1) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
-        }
-        // Reemplaza el objeto en la lista con una nueva instancia actualizada
+    public void modify(SolicitudCambioAulaDTO dto) throws JsonNotFoundException, ModificacionConcurrenteException {
+        // Reemplaza la solicitud con una nueva instancia actualizada y guarda los cambios en el archivo JSON
         var nuevoDTO = new SolicitudCambioAulaDTO(dto.id(), dto.idProfesor(),dto.idReserva(),dto.idAula(),dto.estadoSolicitud(),
                 dto.tipoSolicitud(),dto.fechaInicio(),dto.fechaFin(),dto.diasYBloques(), dto.comentarioEstado(),
-                dto.comentarioProfesor(),dto.fechaHoraSolicitud());
-        dtos.set(index, nuevoDTO);
+                dto.comentarioProfesor(),dto.fechaHoraSolicitud(),dto.fechaHoraResolucion(),dto.version());
 
-        // Guarda los cambios en el archivo JSON
-        write(dtos);
+        // Si no se encuentra la solicitud, lanza la excepción
+        if (!almacen.actualizarVerificado(nuevoDTO)) {
+            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
+        }
+    }
+
+    /**
+     * Método que prepara la modificación de una solicitud en una unidad de trabajo
+     * Solo se pueden modificar así las solicitudes de solicitudes.json, no las archivadas
+     * @param dto que queremos modificar
+     * @param unidad donde se prepara la modificación
+     * @throws JsonNotFoundException si no se encuentra la solicitud
+     */
+    public void modify(SolicitudCambioAulaDTO dto, UnidadDeTrabajo unidad) throws JsonNotFoundException {
+        if (almacen.buscarPorId(dto.id()).isEmpty()) {
+            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
+        }
+        unidad.actualizar(almacen, dto);
     }
 
     /**
      * Método para buscar una solicitud de cambio de aula que coincida con los parámetros dados.
+     * Recorre solo las solicitudes del profesor, usando el índice por profesor
      * @param idProfesor    el ID del profesor
      * @param idAula        el ID del aula
      * @param idReserva     el ID de la reserva original
@@ -179,40 +194,238 @@ public class SolicitudCambioAulaRepository implements JSONRepository<Integer, So
      */
     public Optional<SolicitudCambioAulaDTO> find(Integer idProfesor, Integer idAula, Integer idReserva,
                                                  LocalDate fechaInicio, LocalDate fechaFin,
-                                                 Map<DayOfWeek, Set<BloqueHorario>> diasYBloques) throws JsonNotFoundException {
-        return getAll().stream()
-                .filter(dto -> Objects.equals(dto.idProfesor(), idProfesor) &&
-                        Objects.equals(dto.idAula(), idAula) &&
+                                                 DiasYBloques diasYBloques) throws JsonNotFoundException {
+        return almacen.buscarTodosPorClave(CLAVE_PROFESOR, idProfesor,
+                dto -> Objects.equals(dto.idAula(), idAula) &&
                         Objects.equals(dto.idReserva(), idReserva) &&
                         dto.fechaInicio().equals(fechaInicio) &&
                         dto.fechaFin().equals(fechaFin) &&
                         dto.diasYBloques().equals(diasYBloques))
-                .findFirst();
+                .stream().findFirst();
     }
 
 
 
     /**
-     * Método para buscar las solicitudes de cambio de aula que coincida con los parámetros dados.
+     * Método para buscar las solicitudes de un aula que se solapan con un período y unos días y bloques
+     * Una solicitud se solapa si sus fechas se cruzan con las dadas y comparte al menos un bloque en algún día
+     * Recorre solo las solicitudes con ese estado, así que las aprobadas y rechazadas
+     * que se acumulan con el tiempo no afectan la búsqueda de pendientes
      * @param idAula        el ID del aula
-     * @param fechaInicio   la fecha de inicio de las solicitudes
-     * @param fechaFin      la fecha de fin de las solicitudes
-     * @param diasYBloques el bloque horario y los días de la semana de la solicitud
+     * @param fechaInicio   la fecha de inicio del período
+     * @param fechaFin      la fecha de fin del período
+     * @param diasYBloques el bloque horario y los días de la semana a verificar
      * @param estadoSolicitud el estado de las solicitudes
      * @return List<SolicitudCambioAulaDTO> lista de las solicitudes que cumplan con estos parámetros
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
      */
     public List<SolicitudCambioAulaDTO> find(Integer idAula, LocalDate fechaInicio,
-                                             LocalDate fechaFin, Map<DayOfWeek, Set<BloqueHorario>> diasYBloques,
+                                             LocalDate fechaFin, DiasYBloques diasYBloques,
                                              EstadoSolicitud estadoSolicitud) throws JsonNotFoundException {
-        return getAll().stream()
-                .filter(dto -> Objects.equals(dto.idAula(), idAula) &&
-                        dto.fechaInicio().equals(fechaInicio) &&
-                        dto.fechaFin().equals(fechaFin) &&
-                        dto.diasYBloques().equals(diasYBloques) &&
-                        dto.estadoSolicitud().equals(estadoSolicitud))
-                .collect(Collectors.toList());
+        Predicate<SolicitudCambioAulaDTO> filtro = dto -> seSolapa(dto, idAula, fechaInicio, fechaFin, diasYBloques);
+        return conHistorial(estadoSolicitud,
+                almacen.buscarTodosPorClave(CLAVE_ESTADO, estadoSolicitud, filtro),
+                dto -> dto.estadoSolicitud() == estadoSolicitud && filtro.test(dto));
+    }
+
+    /**
+     * Método para buscar las solicitudes de un aula que se solapan, teniendo en cuenta los cambios
+     * preparados en una unidad de trabajo que todavía no se confirmó
+     * Por ejemplo, una solicitud que se está aprobando ya no cuenta como pendiente
+     * @param idAula        el ID del aula
+     * @param fechaInicio   la fecha de inicio del período
+     * @param fechaFin      la fecha de fin del período
+     * @param diasYBloques el bloque horario y los días de la semana a verificar
+     * @param estadoSolicitud el estado de las solicitudes
+     * @param unidad con los cambios preparados
+     * @return List<SolicitudCambioAulaDTO> lista de las solicitudes que cumplan con estos parámetros
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     */
+    public List<SolicitudCambioAulaDTO> find(Integer idAula, LocalDate fechaInicio,
+                                             LocalDate fechaFin, DiasYBloques diasYBloques,
+                                             EstadoSolicitud estadoSolicitud, UnidadDeTrabajo unidad) throws JsonNotFoundException {
+        var encontradas = find(idAula, fechaInicio, fechaFin, diasYBloques, estadoSolicitud);
+        var preparadas = unidad.preparados(almacen);
+        if (preparadas.isEmpty()) {
+            return encontradas;
+        }
+        // La versión preparada reemplaza a la guardada
+        Map<Integer, SolicitudCambioAulaDTO> porId = new TreeMap<>();
+        encontradas.forEach(dto -> porId.put(dto.id(), dto));
+        for (var dto : preparadas) {
+            porId.remove(dto.id());
+            if (dto.estadoSolicitud() == estadoSolicitud && seSolapa(dto, idAula, fechaInicio, fechaFin, diasYBloques)) {
+                porId.put(dto.id(), dto);
+            }
+        }
+        return new ArrayList<>(porId.values());
+    }
+
+    /**
+     * Método para buscar las solicitudes con un estado
+     * @param estadoSolicitud de las solicitudes
+     * @return List<SolicitudCambioAulaDTO> solicitudes con ese estado, en el orden del archivo
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     */
+    public List<SolicitudCambioAulaDTO> findByEstado(EstadoSolicitud estadoSolicitud) throws JsonNotFoundException {
+        return conHistorial(estadoSolicitud,
+                almacen.buscarTodosPorClave(CLAVE_ESTADO, estadoSolicitud),
+                dto -> dto.estadoSolicitud() == estadoSolicitud);
+    }
+
+    /**
+     * Método para buscar las solicitudes de un profesor con un estado
+     * @param estadoSolicitud de las solicitudes
+     * @param idProfesor ID del profesor que hizo las solicitudes
+     * @return List<SolicitudCambioAulaDTO> solicitudes del profesor con ese estado, en el orden del archivo
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     */
+    public List<SolicitudCambioAulaDTO> findByEstadoYProfesor(EstadoSolicitud estadoSolicitud, Integer idProfesor)
+            throws JsonNotFoundException {
+        Predicate<SolicitudCambioAulaDTO> filtro = dto -> dto.estadoSolicitud() == estadoSolicitud;
+        return conHistorial(estadoSolicitud,
+                almacen.buscarTodosPorClave(CLAVE_PROFESOR, idProfesor, filtro),
+                dto -> Objects.equals(dto.idProfesor(), idProfesor) && filtro.test(dto));
+    }
+
+    /**
+     * Método para buscar las solicitudes de un profesor
+     * @param idProfesor ID del profesor que hizo las solicitudes
+     * @return List<SolicitudCambioAulaDTO> solicitudes del profesor, incluidas las archivadas, ordenadas por ID
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     */
+    public List<SolicitudCambioAulaDTO> findByProfesor(Integer idProfesor) throws JsonNotFoundException {
+        return unir(almacen.buscarTodosPorClave(CLAVE_PROFESOR, idProfesor),
+                archivo.buscar(dto -> Objects.equals(dto.idProfesor(), idProfesor)));
+    }
+
+    /**
+     * Método para buscar las solicitudes que piden un aula
+     * @param idAula ID del aula pedida
+     * @return List<SolicitudCambioAulaDTO> solicitudes para esa aula, incluidas las archivadas, ordenadas por ID
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     */
+    public List<SolicitudCambioAulaDTO> findByAula(Integer idAula) throws JsonNotFoundException {
+        return unir(almacen.buscarTodosPorClave(CLAVE_AULA, idAula),
+                archivo.buscar(dto -> Objects.equals(dto.idAula(), idAula)));
     }
 
+    /**
+     * Método para buscar las solicitudes de cambio de una reserva
+     * @param idReserva ID de la reserva
+     * @return List<SolicitudCambioAulaDTO> solicitudes de esa reserva, incluidas las archivadas, ordenadas por ID
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     */
+    public List<SolicitudCambioAulaDTO> findByReserva(Integer idReserva) throws JsonNotFoundException {
+        return unir(almacen.buscarTodosPorClave(CLAVE_RESERVA, idReserva),
+                archivo.buscar(dto -> Objects.equals(dto.idReserva(), idReserva)));
+    }
 
+    /**
+     * Método para buscar las solicitudes pendientes de una reserva
+     * Las pendientes nunca se archivan, así que solo se consulta el índice
+     * @param idReserva ID de la reserva
+     * @return List<SolicitudCambioAulaDTO> solicitudes pendientes de esa reserva
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     */
+    public List<SolicitudCambioAulaDTO> findPendientesByReserva(Integer idReserva) throws JsonNotFoundException {
+        return almacen.buscarTodosPorClave(CLAVE_RESERVA, idReserva,
+                dto -> dto.estadoSolicitud() == EstadoSolicitud.PENDIENTE);
+    }
+
+    /**
+     * Método para buscar las solicitudes pendientes que piden un aula
+     * @param idAula ID del aula pedida
+     * @return List<SolicitudCambioAulaDTO> solicitudes pendientes para esa aula
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     */
+    public List<SolicitudCambioAulaDTO> findPendientesByAula(Integer idAula) throws JsonNotFoundException {
+        return almacen.buscarTodosPorClave(CLAVE_AULA, idAula,
+                dto -> dto.estadoSolicitud() == EstadoSolicitud.PENDIENTE);
+    }
+
+    /**
+     * Método que mueve al archivo las solicitudes resueltas (aprobadas o rechazadas)
+     * antes de la ventana de días recientes, contada desde que se resolvieron
+     * Recorre solo las resueltas, usando el índice por estado
+     * Primero se escriben en el archivo y después se borran de solicitudes.json, con una sola escritura;
+     * si se corta en el medio quedan en los dos lados y las consultas se quedan con la de solicitudes.json
+     * @return int cantidad de solicitudes archivadas
+     * @throws JsonNotFoundException si no se puede escribir el archivo o el JSON
+     */
+    public int archivarResueltas() throws JsonNotFoundException {
+        var limite = LocalDate.now().minusDays(DIAS_RECIENTES);
+        Predicate<SolicitudCambioAulaDTO> vieja = dto -> fechaResolucion(dto).isBefore(limite);
+        var viejas = new ArrayList<>(almacen.buscarTodosPorClave(CLAVE_ESTADO, EstadoSolicitud.APROBADA, vieja));
+        viejas.addAll(almacen.buscarTodosPorClave(CLAVE_ESTADO, EstadoSolicitud.RECHAZADA, vieja));
+        if (viejas.isEmpty()) {
+            return 0;
+        }
+        archivo.archivar(viejas);
+        almacen.eliminarTodos(viejas.stream().map(SolicitudCambioAulaDTO::id).toList());
+        return viejas.size();
+    }
+
+    /**
+     * Método que devuelve el día en que se resolvió una solicitud
+     * Las resueltas antes de que se guardara la fecha de resolución usan la fecha en que se pidieron
+     * @param dto solicitud resuelta
+     * @return LocalDate día de la resolución
+     */
+    private static LocalDate fechaResolucion(SolicitudCambioAulaDTO dto) {
+        var fechaHora = dto.fechaHoraResolucion() != null ? dto.fechaHoraResolucion() : dto.fechaHoraSolicitud();
+        return fechaHora.toLocalDate();
+    }
+
+    /**
+     * Método que suma el historial archivado a lo encontrado en solicitudes.json
+     * Las pendientes nunca se archivan, así que para ellas no se lee el archivo
+     * @param estadoSolicitud que se está buscando
+     * @param recientes solicitudes encontradas en solicitudes.json
+     * @param filtro que deben cumplir las archivadas
+     * @return List<SolicitudCambioAulaDTO> solicitudes ordenadas por ID
+     * @throws JsonNotFoundException si no se puede leer el archivo
+     */
+    private List<SolicitudCambioAulaDTO> conHistorial(EstadoSolicitud estadoSolicitud,
+                                                      List<SolicitudCambioAulaDTO> recientes,
+                                                      Predicate<SolicitudCambioAulaDTO> filtro) throws JsonNotFoundException {
+        if (estadoSolicitud == EstadoSolicitud.PENDIENTE) {
+            return recientes;
+        }
+        return unir(recientes, archivo.buscar(filtro));
+    }
+
+    /**
+     * Método que une las solicitudes recientes con las archivadas, ordenadas por ID
+     * Si una solicitud quedó en los dos lados (se cortó un archivado) gana la de solicitudes.json
+     * @param recientes solicitudes de solicitudes.json
+     * @param archivadas solicitudes del archivo
+     * @return List<SolicitudCambioAulaDTO> lista nueva sin repetidos
+     */
+    private List<SolicitudCambioAulaDTO> unir(List<SolicitudCambioAulaDTO> recientes,
+                                              List<SolicitudCambioAulaDTO> archivadas) {
+        if (archivadas.isEmpty()) {
+            return recientes;
+        }
+        Map<Integer, SolicitudCambioAulaDTO> porId = new TreeMap<>();
+        archivadas.forEach(dto -> porId.put(dto.id(), dto));
+        recientes.forEach(dto -> porId.put(dto.id(), dto));
+        return new ArrayList<>(porId.values());
+    }
+
+    /**
+     * Método para saber si una solicitud pide un aula en un período y días y bloques que se solapan con los dados
+     * @param dto solicitud a verificar
+     * @param idAula        el ID del aula
+     * @param fechaInicio   la fecha de inicio del período
+     * @param fechaFin      la fecha de fin del período
+     * @param diasYBloques el bloque horario y los días de la semana a verificar
+     * @return boolean true si la solicitud se solapa
+     */
+    public static boolean seSolapa(SolicitudCambioAulaDTO dto, Integer idAula, LocalDate fechaInicio,
+                                   LocalDate fechaFin, DiasYBloques diasYBloques) {
+        return Objects.equals(dto.idAula(), idAula) &&
+                dto.diasYBloques().seSolapa(diasYBloques) &&
+                Utils.seSolapanFechas(dto.fechaInicio(), dto.fechaFin(), fechaInicio, fechaFin);
+    }
 }
@@ -0,0 +1,403 @@
+package org.example.repository;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.example.exception.JsonNotFoundException;
+import org.example.exception.ModificacionConcurrenteException;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Unidad de trabajo que junta cambios de varios almacenes y los confirma todos juntos
+ * Los cambios se preparan en memoria sin tocar los almacenes; si algo falla antes de confirmar
+ * (por ejemplo una validación) alcanza con cerrar la unidad y no queda nada a medias
+ * Al confirmar, primero se escribe un archivo de intención propio (./json/.transaccion-<id>.jsonl) con todos
+ * los cambios y recién después se aplican en los almacenes y se borra el archivo
+ * Mientras confirma, la unidad tiene tomado el lock de un archivo que acompaña al de intención (.lock):
+ * si el proceso se corta en el medio el sistema operativo suelta ese lock, y cada almacén, al cargarse,
+ * vuelve a aplicar sus cambios de las intenciones que quedaron sin dueño (roll-forward)
+ * Las intenciones de una unidad que sigue confirmando, en este proceso o en otro, no se tocan: cada línea lleva
+ * el ID de su unidad, así un almacén que se vuelve a leer en medio de una confirmación de este proceso no le
+ * aplica sus propios cambios antes de tiempo
+ * Las altas y modificaciones reemplazan por ID (o agregan si no existe) y las bajas borran por ID, así que
+ * aplicar dos veces el mismo cambio no duplica entidades
+ * Se usa con try-with-resources
+ */
+public class UnidadDeTrabajo implements AutoCloseable {
+    private static final Path CARPETA = Path.of("./json");
+    private static final String PREFIJO = ".transaccion";
+    // Las recuperaciones de distintos procesos se turnan con este lock; las unidades que confirman no lo usan
+    private static final BloqueoArchivo RECUPERACION = new BloqueoArchivo(CARPETA.resolve(".transacciones.lock"));
+    // IDs de las unidades de este proceso que están confirmando
+    private static final Set<String> CONFIRMANDO = ConcurrentHashMap.newKeySet();
+
+    private final List<Cambio<?>> cambios = new ArrayList<>();
+    private boolean cerrada;
+
+    private record Cambio<T>(AlmacenJSON<T> almacen, DiarioJSON.Operacion operacion, T entidad, Integer id) {
+        void aplicar() throws JsonNotFoundException {
+            switch (operacion) {
+                // Si el alta ya se aplicó (por ejemplo al recuperar la intención) se reemplaza en lugar de repetirla
+                case ALTA, MODIFICACION -> {
+                    if (!almacen.actualizar(entidad)) {
+                        almacen.agregar(entidad);
+                    }
+                }
+                case BAJA -> almacen.eliminar(id);
+            }
+        }
+
+        void verificar() throws JsonNotFoundException, ModificacionConcurrenteException {
+            if (operacion == DiarioJSON.Operacion.MODIFICACION) {
+                almacen.verificarVersiones(List.of(entidad));
+            }
+        }
+    }
+
+    /**
+     * Método que devuelve el ID para una entidad que se va a dar de alta en la unidad
+     * Lo entrega la secuencia del almacén, así que no choca con otras altas aunque la unidad no se confirme
+     * (en ese caso el ID queda sin usar)
+     * @param almacen donde se va a dar de alta la entidad
+     * @return int ID para la nueva entidad
+     * @throws JsonNotFoundException si no se puede leer o escribir el archivo de la secuencia
+     */
+    public int proximoId(AlmacenJSON<?> almacen) throws JsonNotFoundException {
+        return almacen.proximoId();
+    }
+
+    /**
+     * Método para preparar el alta de una entidad
+     * @param almacen donde se agrega
+     * @param t entidad nueva, ya con su ID (ver proximoId)
+     * @param <T> tipo de Clase que se guarda en el JSON
+     */
+    public <T> void agregar(AlmacenJSON<T> almacen, T t) {
+        preparar(new Cambio<>(almacen, DiarioJSON.Operacion.ALTA, t, null));
+    }
+
+    /**
+     * Método para preparar la modificación de una entidad
+     * @param almacen donde está la entidad
+     * @param t entidad modificada
+     * @param <T> tipo de Clase que se guarda en el JSON
+     */
+    public <T> void actualizar(AlmacenJSON<T> almacen, T t) {
+        preparar(new Cambio<>(almacen, DiarioJSON.Operacion.MODIFICACION, t, null));
+    }
+
+    /**
+     * Método para preparar la baja de una entidad
+     * @param almacen donde está la entidad
+     * @param id de la entidad a borrar
+     * @param <T> tipo de Clase que se guarda en el JSON
+     */
+    public <T> void eliminar(AlmacenJSON<T> almacen, Integer id) {
+        preparar(new Cambio<>(almacen, DiarioJSON.Operacion.BAJA, null, id));
+    }
+
+    /**
+     * Método que devuelve las entidades dadas de alta o modificadas en la unidad para un almacén
+     * Sirve para que las validaciones vean los cambios que todavía no se confirmaron
+     * @param almacen del que se quieren los cambios
+     * @return List<T> entidades preparadas, en el orden en que se prepararon
+     * @param <T> tipo de Clase que se guarda en el JSON
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> preparados(AlmacenJSON<T> almacen) {
+        var lista = new ArrayList<T>();
+        for (var cambio : cambios) {
+            if (cambio.almacen() == almacen && cambio.entidad() != null) {
+                lista.add((T) cambio.entidad());
+            }
+        }
+        return lista;
+    }
+
+    private void preparar(Cambio<?> cambio) {
+        if (cerrada) {
+            throw new IllegalStateException("La unidad de trabajo ya se confirmó o se cerró");
+        }
+        cambios.add(cambio);
+    }
+
+    /**
+     * Método que confirma todos los cambios preparados
+     * Con el lock de su archivo .lock tomado escribe el archivo de intención, aplica los cambios en los almacenes
+     * con una sola escritura por archivo (EscrituraDurable.grupo) y borra el archivo de intención
+     * Los almacenes se toman ordenados por ruta, así dos unidades que confirman a la vez no se bloquean entre sí
+     * Antes de escribir la intención, con los almacenes ya tomados, se verifica que cada entidad modificada
+     * traiga la versión guardada; si otra sesión la cambió no se aplica nada
+     * @throws JsonNotFoundException si no se puede escribir algún archivo; lo que falte se aplica al volver a cargar
+     * @throws ModificacionConcurrenteException si otra sesión modificó alguna entidad desde que se leyó
+     */
+    public void confirmar() throws JsonNotFoundException, ModificacionConcurrenteException {
+        if (cerrada) {
+            throw new IllegalStateException("La unidad de trabajo ya se confirmó o se cerró");
+        }
+        cerrada = true;
+        if (cambios.isEmpty()) {
+            return;
+        }
+        // Los almacenes se cargan antes de escribir la intención, así es más raro que alguno se vuelva a leer
+        // (y recupere intenciones) en medio de la confirmación
+        for (var cambio : cambios) {
+            cambio.almacen().asegurarCargado();
+        }
+        // Orden estable: los cambios de un mismo almacén conservan su orden
+        var ordenados = new ArrayList<>(cambios);
+        ordenados.sort(Comparator.comparing(cambio -> cambio.almacen().getRuta()));
+
+        var unidad = UUID.randomUUID().toString();
+        var intencion = CARPETA.resolve(STR."\{PREFIJO}-\{unidad}.jsonl");
+        var dueno = duenoDe(intencion);
+        CONFIRMANDO.add(unidad);
+        try {
+            Files.createDirectories(CARPETA);
+            try (var canal = FileChannel.open(dueno, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 var lock = canal.lock()) {
+                try (var grupo = EscrituraDurable.grupo()) {
+                    // Dentro del grupo cada almacén queda tomado desde la verificación hasta que se escribe
+                    for (var cambio : ordenados) {
+                        cambio.verificar();
+                    }
+                    var lineas = new ArrayList<String>(ordenados.size());
+                    for (var cambio : ordenados) {
+                        lineas.add(linea(unidad, cambio));
+                    }
+                    escribirIntencion(intencion, lineas);
+                    for (var cambio : ordenados) {
+                        cambio.aplicar();
+                    }
+                }
+                // Se borra con el lock tomado: quien consigue el lock y ve la intención sabe que quedó sin dueño
+                Files.deleteIfExists(intencion);
+            } finally {
+                Files.deleteIfExists(dueno);
+            }
+        } catch (IOException e) {
+            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{intencion}");
+        } finally {
+            CONFIRMANDO.remove(unidad);
+        }
+    }
+
+    /**
+     * Método que descarta los cambios si no se confirmaron
+     */
+    @Override
+    public void close() {
+        cerrada = true;
+        cambios.clear();
+    }
+
+    /**
+     * Método que aplica en un almacén recién cargado los cambios que quedaron en intenciones sin dueño
+     * Las líneas del almacén se sacan de cada archivo, y cuando no queda ninguna el archivo se borra
+     * Las recuperaciones se turnan (en el proceso y entre procesos), así nunca dos reescriben la misma intención
+     * @param almacen que se está cargando
+     * @param aplicador que aplica cada cambio sobre los datos en memoria
+     * @param <T> tipo de Clase que se guarda en el JSON
+     * @return boolean true si se aplicó algún cambio y el almacén tiene que persistirse
+     * @throws IOException si no se puede leer o reescribir un archivo de intención
+     * @throws JsonNotFoundException si no se consigue a tiempo el turno para recuperar
+     */
+    static <T> boolean recuperar(AlmacenJSON<T> almacen, DiarioJSON.Aplicador<T> aplicador)
+            throws IOException, JsonNotFoundException {
+        var intenciones = intenciones();
+        if (intenciones.isEmpty()) {
+            return false;
+        }
+        boolean aplicado = false;
+        // El lock de FileChannel es de todo el proceso: los hilos se turnan antes de pedirlo
+        synchronized (UnidadDeTrabajo.class) {
+            try (var turno = RECUPERACION.exclusivo()) {
+                for (var intencion : intenciones) {
+                    if (recuperarSinDueno(intencion, almacen, aplicador)) {
+                        aplicado = true;
+                    }
+                }
+            }
+        }
+        return aplicado;
+    }
+
+    /**
+     * Método que aplica los cambios del almacén de una intención, si su unidad ya no la está confirmando
+     * @param intencion archivo de intención
+     * @param almacen que se está cargando
+     * @param aplicador que aplica cada cambio sobre los datos en memoria
+     * @param <T> tipo de Clase que se guarda en el JSON
+     * @return boolean true si se aplicó algún cambio
+     * @throws IOException si no se puede leer o reescribir el archivo de intención
+     */
+    private static <T> boolean recuperarSinDueno(Path intencion, AlmacenJSON<T> almacen,
+                                                 DiarioJSON.Aplicador<T> aplicador) throws IOException {
+        var dueno = duenoDe(intencion);
+        try (var canal = FileChannel.open(dueno, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock;
+            try {
+                lock = canal.tryLock();
+            } catch (OverlappingFileLockException e) {
+                // Lo tiene una unidad de este mismo proceso que todavía está confirmando
+                lock = null;
+            }
+            if (lock == null) {
+                return false;
+            }
+            try {
+                // Si la unidad terminó mientras tanto ya no hay nada que recuperar
+                return Files.exists(intencion) && aplicarIntencion(intencion, almacen, aplicador);
+            } finally {
+                lock.release();
+            }
+        } finally {
+            if (!Files.exists(intencion)) {
+                Files.deleteIfExists(dueno);
+            }
+        }
+    }
+
+    private static <T> boolean aplicarIntencion(Path intencion, AlmacenJSON<T> almacen,
+                                                DiarioJSON.Aplicador<T> aplicador) throws IOException {
+        var otras = new ArrayList<String>();
+        boolean aplicado = false;
+        try (var reader = new BufferedReader(new FileReader(intencion.toFile()))) {
+            String linea;
+            while ((linea = reader.readLine()) != null) {
+                if (linea.isBlank()) {
+                    continue;
+                }
+                if (aplicarSiCorresponde(linea, almacen, aplicador)) {
+                    aplicado = true;
+                } else {
+                    otras.add(linea);
+                }
+            }
+        } catch (JsonParseException | IllegalArgumentException e) {
+            // El archivo de intención se escribe de forma atómica, una línea inválida no debería pasar
+            throw new IOException(e);
+        }
+        if (!aplicado) {
+            return false;
+        }
+        if (otras.isEmpty()) {
+            Files.deleteIfExists(intencion);
+        } else {
+            escribirIntencion(intencion, otras);
+        }
+        return true;
+    }
+
+    /**
+     * Método que lista los archivos de intención de la carpeta, incluido el único que usaban las versiones anteriores
+     * @return List<Path> archivos de intención, vacía si no hay ninguno
+     * @throws IOException si no se puede leer la carpeta
+     */
+    private static List<Path> intenciones() throws IOException {
+        var lista = new ArrayList<Path>();
+        if (!Files.isDirectory(CARPETA)) {
+            return lista;
+        }
+        try (var archivos = Files.newDirectoryStream(CARPETA, STR."\{PREFIJO}*.jsonl")) {
+            archivos.forEach(lista::add);
+        }
+        return lista;
+    }
+
+    /**
+     * Método que devuelve el archivo cuyo lock indica que la unidad de una intención sigue confirmando
+     * @param intencion archivo de intención, por ejemplo ./json/.transaccion-<id>.jsonl
+     * @return Path del archivo de lock, por ejemplo ./json/.transaccion-<id>.lock
+     */
+    private static Path duenoDe(Path intencion) {
+        var nombre = intencion.getFileName().toString();
+        return intencion.resolveSibling(STR."\{nombre.substring(0, nombre.length() - ".jsonl".length())}.lock");
+    }
+
+    private static <T> String linea(String unidad, Cambio<T> cambio) throws IOException {
+        var linea = new StringWriter();
+        try (JsonWriter out = new JsonWriter(linea)) {
+            out.setSerializeNulls(false);
+            out.beginObject();
+            // La ruta y la unidad van primero para poder saltear las líneas que no se aplican sin leer la entidad
+            out.name("ruta").value(cambio.almacen().getRuta());
+            out.name("unidad").value(unidad);
+            out.name("op").value(cambio.operacion().name());
+            if (cambio.id() != null) {
+                out.name("id").value(cambio.id());
+            }
+            if (cambio.entidad() != null) {
+                out.name("entidad");
+                cambio.almacen().escribirEntidad(out, cambio.entidad());
+            }
+            out.endObject();
+        }
+        return linea.toString();
+    }
+
+    private static <T> boolean aplicarSiCorresponde(String linea, AlmacenJSON<T> almacen,
+                                                    DiarioJSON.Aplicador<T> aplicador) throws IOException {
+        DiarioJSON.Operacion operacion = null;
+        Integer id = null;
+        T entidad = null;
+        try (var in = new JsonReader(new StringReader(linea))) {
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "ruta" -> {
+                        if (!almacen.getRuta().equals(in.nextString())) {
+                            return false;
+                        }
+                    }
+                    case "unidad" -> {
+                        // Es de una unidad de este proceso que todavía está confirmando: la aplica ella
+                        if (CONFIRMANDO.contains(in.nextString())) {
+                            return false;
+                        }
+                    }
+                    case "op" -> operacion = DiarioJSON.Operacion.valueOf(in.nextString());
+                    case "id" -> id = in.nextInt();
+                    case "entidad" -> entidad = almacen.leerEntidad(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+        }
+        if (operacion == null || (operacion != DiarioJSON.Operacion.BAJA && entidad == null)) {
+            throw new JsonParseException(STR."Entrada incompleta en la intención: \{linea}");
+        }
+        if (operacion == DiarioJSON.Operacion.BAJA) {
+            aplicador.borrar(id);
+        } else {
+            aplicador.guardar(entidad);
+        }
+        return true;
+    }
+
+    private static void escribirIntencion(Path intencion, List<String> lineas) throws IOException {
+        EscrituraDurable.escribir(intencion, destino -> {
+            for (var linea : lineas) {
+                destino.write(linea);
+                destino.write('\n');
+            }
+        });
+    }
+}
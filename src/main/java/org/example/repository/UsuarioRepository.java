@@ -1,18 +1,14 @@
 package org.example.repository;
 
 import com.google.gson.Gson;
+import org.example.config.GsonConfig;
 import org.example.model.dto.UsuarioDTO;
 import org.example.exception.JsonNotFoundException;
+import org.example.exception.ConflictException;
 
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.file.Paths;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 
-import com.google.gson.reflect.TypeToken;
 
 /**
  * Repositorio de usuario
@@ -20,7 +16,30 @@ import com.google.gson.reflect.TypeToken;
  * Su responsabilidad es interactuar con el JSON
  */
 public class UsuarioRepository implements JSONRepository<Integer, UsuarioDTO> {
+    private static final String CLAVE_USERNAME = "username";
+    private static final String CLAVE_PROFESOR = "profesor";
     private final String ruta = "./json/usuarios.json";
+    private final AlmacenJSON<UsuarioDTO> almacen = AlmacenJSON.de(ruta, this::getGson,
+            UsuarioDTO.class, UsuarioDTO::id, dto -> dto)
+            .conVersion(UsuarioDTO::version, UsuarioDTO::conVersion)
+            .conClave(CLAVE_USERNAME, UsuarioDTO::username, true)
+            .conClave(CLAVE_PROFESOR, UsuarioDTO::idProfesor, false);
+
+    private UsuarioRepository() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida del repositorio
+     * @return UsuarioRepository único para toda la aplicación
+     */
+    public static UsuarioRepository getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    private static class Unica {
+        private static final UsuarioRepository INSTANCIA = new UsuarioRepository();
+    }
+
     /**
      * Método para retornar la ruta al json
      * que se quiere utilizar en el método default
@@ -38,7 +57,7 @@ public class UsuarioRepository implements JSONRepository<Integer, UsuarioDTO> {
      */
     @Override
     public Gson getGson() {
-        return new Gson();
+        return GsonConfig.gsonSimple();
     }
 
     /**
@@ -47,32 +66,22 @@ public class UsuarioRepository implements JSONRepository<Integer, UsuarioDTO> {
      * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
      */
     public void write(List<UsuarioDTO> list) throws JsonNotFoundException {
-        try (FileWriter writer = new FileWriter(getRuta())) {
-            getGson().toJson(list, writer);
-        } catch (IOException e) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{getRuta()}");
-        }
+        almacen.reemplazarTodos(list);
     }
 
     /**
      * Método que guarda un nuevo usuario en el JSON llamando al método write
      * @param dto el nuevo usuario que se guarda en el JSON
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     * @throws ConflictException si ya existe un usuario con ese username
      */
     @Override
-    public void save(UsuarioDTO dto) throws JsonNotFoundException {
-        // Listamos todos los usuarios (DTO)
-        var dtos = getAll();
-
-        // Verificamos el último ID y generamos el próximo
-        var lastId = dtos.isEmpty() ? 0 : dtos.getLast().id();
-        dto = new UsuarioDTO(lastId + 1, dto.username(), dto.password(), dto.idRol(),dto.idProfesor());
-
-        // Agregamos el nuevo usuario
-        dtos.add(dto);
+    public void save(UsuarioDTO dto) throws JsonNotFoundException, ConflictException {
+        // Pedimos el próximo ID a la secuencia
+        dto = new UsuarioDTO(almacen.proximoId(), dto.username(), dto.password(), dto.idRol(),dto.idProfesor(), 0);
 
-        // Guarda los cambios en el archivo JSON
-        write(dtos);
+        // Agregamos el nuevo usuario (si el username no está repetido) y guardamos los cambios en el archivo JSON
+        almacen.agregarUnico(dto);
     }
 
     /**
@@ -82,13 +91,9 @@ public class UsuarioRepository implements JSONRepository<Integer, UsuarioDTO> {
      */
     @Override
     public List<UsuarioDTO> getAll() throws JsonNotFoundException {
-        try (FileReader reader = new FileReader(ruta)) {
-            //Usamos UsuarioDTO porque guardamos solo el ID del Rol que corresponde al usuario en este json
-            var usuarioListType = new TypeToken<List<UsuarioDTO>>() {}.getType();
-            return getGson().fromJson(reader, usuarioListType);
-        } catch (IOException e) {
-            throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
-        }
+        //Usamos UsuarioDTO porque guardamos solo el ID del Rol que corresponde al usuario en este json
+        //El archivo se lee una sola vez, las siguientes lecturas salen de memoria
+        return almacen.obtenerTodos();
     }
 
 
@@ -100,12 +105,9 @@ public class UsuarioRepository implements JSONRepository<Integer, UsuarioDTO> {
      */
     @Override
     public Optional<UsuarioDTO> findById(Integer id) throws JsonNotFoundException {
-        //Usamos stream para filtrar por id
         //Devuelve el usuario si existe
         //Devuelve optional.empty() sino
-        return getAll().stream()
-                .filter(dto -> Objects.equals(dto.id(), id))
-                .findFirst();
+        return almacen.buscarPorId(id);
     }
 
 
@@ -116,42 +118,26 @@ public class UsuarioRepository implements JSONRepository<Integer, UsuarioDTO> {
      */
     @Override
     public void deleteById(Integer id) throws JsonNotFoundException {
-        //Traemos todos los usuarios y borramos el que tenga ese ID
-        var usuarios = getAll();
-        usuarios.removeIf(dto -> Objects.equals(dto.id(), id));
-
-        // Guarda los cambios en el archivo JSON
-        write(usuarios);
+        //Borramos el usuario que tenga ese ID y guardamos los cambios en el archivo JSON
+        almacen.eliminar(id);
     }
 
     /**
      * Método para modificar un usuario
      * @param dto que queremos modificar
      * @throws JsonNotFoundException si no encuentra el archivo JSON
+     * @throws ConflictException si otro usuario ya tiene ese username,
+     * o ModificacionConcurrenteException si otra sesión modificó el registro mientras tanto
      */
     @Override
-    public void modify(UsuarioDTO dto) throws JsonNotFoundException {
-        // Obtén todos los usuarios del JSON
-        var dtos = getAll();
-
-        // Busca el índice del usuario que deseas modificar
-        int index = -1;
-        for (int i = 0; i < dtos.size(); i++) {
-            if (Objects.equals(dtos.get(i).id(), dto.id())) {
-                index = i;
-                break;
-            }
-        }
-        // Si no se encuentra el índice, lanza la excepción
-        if (index == -1) {
+    public void modify(UsuarioDTO dto) throws JsonNotFoundException, ConflictException {
+        // Reemplaza el usuario con una nueva instancia actualizada y guarda los cambios en el archivo JSON
+        var nuevoDTO = new UsuarioDTO(dto.id(),dto.username(),dto.password(),dto.idRol(),dto.idProfesor(),dto.version());
+
+        // Si no se encuentra el usuario, lanza la excepción
+        if (!almacen.actualizarUnico(nuevoDTO)) {
             throw new JsonNotFoundException(STR."No se encontró el archivo JSON: \{ruta}");
         }
-        // Reemplaza el objeto en la lista con una nueva instancia actualizada
-        var nuevoDTO = new UsuarioDTO(dto.id(),dto.username(),dto.password(),dto.idRol(),dto.idProfesor());
-        dtos.set(index, nuevoDTO);
-
-        // Guarda los cambios en el archivo JSON
-        write(dtos);
     }
 
     /**
@@ -161,12 +147,20 @@ public class UsuarioRepository implements JSONRepository<Integer, UsuarioDTO> {
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
      */
     public Optional<UsuarioDTO> findByUsername(String username) throws JsonNotFoundException {
-        //Usamos stream para filtrar por username
+        //Usamos la clave única por username que mantiene el almacén
         //Devuelve el usuario si existe
         //Devuelve optional.empty() sino
-        return getAll().stream()
-                .filter(dto -> dto.username().equals(username))
-                .findFirst();
+        return almacen.buscarPorClave(CLAVE_USERNAME, username);
+    }
+
+    /**
+     * Método para buscar los usuarios de un profesor
+     * @param idProfesor que representan los usuarios
+     * @return List<UsuarioDTO> usuarios de ese profesor, en el orden del JSON
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     */
+    public List<UsuarioDTO> findByProfesor(Integer idProfesor) throws JsonNotFoundException {
+        return almacen.buscarTodosPorClave(CLAVE_PROFESOR, idProfesor);
     }
 }
 
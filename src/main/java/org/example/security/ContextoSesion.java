@@ -0,0 +1,79 @@
+package org.example.security;
+
+import org.example.enums.Permisos;
+import org.example.model.Rol;
+import org.example.model.Usuario;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Contexto de autorización de una sesión iniciada
+ * Guarda los permisos efectivos del usuario como máscara de bits, así cada verificación es un AND
+ * Las sesiones abiertas quedan registradas por ID de usuario para que un cambio de rol les llegue
+ * Se abre al entrar al menú del usuario y se cierra al cerrar sesión (try-with-resources)
+ */
+public class ContextoSesion implements AutoCloseable {
+    private static final Map<Integer, ContextoSesion> activas = new ConcurrentHashMap<>();
+
+    private final Integer idUsuario;
+    private final Integer idRol;
+    private volatile long permisos;
+
+    private ContextoSesion(Usuario usuario) {
+        this.idUsuario = usuario.getId();
+        this.idRol = usuario.getRol().getId();
+        this.permisos = usuario.getRol().getMascaraPermisos();
+    }
+
+    /**
+     * Método para abrir el contexto de la sesión de un usuario autenticado
+     * Si el usuario ya tenía una sesión abierta, la reemplaza
+     * @param usuario autenticado, con su rol y permisos cargados
+     * @return ContextoSesion que hay que cerrar al terminar la sesión
+     */
+    public static ContextoSesion abrir(Usuario usuario) {
+        var contexto = new ContextoSesion(usuario);
+        activas.put(contexto.idUsuario, contexto);
+        return contexto;
+    }
+
+    /**
+     * Método para obtener el contexto de la sesión abierta de un usuario
+     * @param idUsuario ID del usuario
+     * @return ContextoSesion o null si el usuario no tiene una sesión abierta
+     */
+    public static ContextoSesion de(Integer idUsuario) {
+        return idUsuario == null ? null : activas.get(idUsuario);
+    }
+
+    /**
+     * Método para actualizar los permisos de las sesiones abiertas con un rol que se modificó
+     * @param rol con los permisos nuevos
+     */
+    public static void invalidarRol(Rol rol) {
+        long nuevos = rol.getMascaraPermisos();
+        for (ContextoSesion contexto : activas.values()) {
+            if (contexto.idRol.equals(rol.getId())) {
+                contexto.permisos = nuevos;
+            }
+        }
+    }
+
+    /**
+     * Método para saber si la sesión tiene un permiso
+     * @param permiso que se quiere verificar
+     * @return boolean true si el rol de la sesión lo tiene
+     */
+    public boolean tienePermiso(Permisos permiso) {
+        return (permisos & permiso.bit()) != 0;
+    }
+
+    /**
+     * Método que cierra la sesión y la saca del registro
+     */
+    @Override
+    public void close() {
+        activas.remove(idUsuario, this);
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.security;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+/**
+ * Clase que centraliza el hash de contraseñas con bcrypt
+ * El costo (log2 de las rondas) no es fijo: al arrancar se mide cuánto tarda un hash
+ * y se elige el costo más alto que entra en el presupuesto de latencia del login
+ * Cada hash guarda su propio costo en el prefijo ($2a$NN$), así que no hace falta otro campo en el JSON
+ * Con -Dgestionaulas.bcrypt.presupuestoMs=N se cambia el presupuesto (por defecto 250 ms)
+ * y con -Dgestionaulas.bcrypt.costo=N se fija el costo sin medir
+ */
+public class HashContrasenia {
+    public static final String PROPIEDAD_PRESUPUESTO = "gestionaulas.bcrypt.presupuestoMs";
+    public static final String PROPIEDAD_COSTO = "gestionaulas.bcrypt.costo";
+
+    // Nunca bajamos del costo por defecto de jBCrypt, aunque la máquina sea lenta
+    public static final int COSTO_MINIMO = 10;
+    public static final int COSTO_MAXIMO = 16;
+    private static final long PRESUPUESTO_POR_DEFECTO_MS = 250;
+
+    private HashContrasenia() {
+    }
+
+    // Se calcula la primera vez que se usa y queda para toda la ejecución
+    private static class Calibracion {
+        private static final int COSTO = calcularCosto();
+    }
+
+    /**
+     * Método que devuelve el costo con el que se hashean las contraseñas nuevas
+     * @return int costo de bcrypt elegido al arrancar
+     */
+    public static int costoObjetivo() {
+        return Calibracion.COSTO;
+    }
+
+    /**
+     * Método para hashear una contraseña con el costo objetivo
+     * @param password contraseña en texto plano
+     * @return String hash de bcrypt
+     */
+    public static String hashear(String password) {
+        return BCrypt.hashpw(password, BCrypt.gensalt(costoObjetivo()));
+    }
+
+    /**
+     * Método para leer el costo con el que se generó un hash
+     * @param hash de bcrypt, con el formato $2a$NN$...
+     * @return int costo del hash o -1 si no tiene el formato de bcrypt
+     */
+    public static int costoDe(String hash) {
+        if (hash == null || hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$'
+                || hash.charAt(6) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hash.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Método para saber si un hash quedó con un costo menor al actual y conviene regenerarlo
+     * @param hash de bcrypt guardado
+     * @return boolean true si hay que volver a hashear la contraseña
+     */
+    public static boolean necesitaRehash(String hash) {
+        return costoDe(hash) < costoObjetivo();
+    }
+
+    private static int calcularCosto() {
+        var fijo = Integer.getInteger(PROPIEDAD_COSTO);
+        if (fijo != null) {
+            return Math.clamp(fijo, COSTO_MINIMO, COSTO_MAXIMO);
+        }
+        long presupuestoNanos = Long.getLong(PROPIEDAD_PRESUPUESTO, PRESUPUESTO_POR_DEFECTO_MS) * 1_000_000L;
+
+        // Un hash barato para que la medición no incluya la carga de la clase ni el JIT
+        BCrypt.hashpw("calibracion", BCrypt.gensalt(4));
+        long inicio = System.nanoTime();
+        BCrypt.hashpw("calibracion", BCrypt.gensalt(COSTO_MINIMO));
+        long nanosMinimo = Math.max(1, System.nanoTime() - inicio);
+
+        // Cada punto de costo duplica las rondas, así que el tiempo también se duplica
+        int costo = COSTO_MINIMO;
+        long estimado = nanosMinimo;
+        while (costo < COSTO_MAXIMO && estimado * 2 <= presupuestoNanos) {
+            estimado *= 2;
+            costo++;
+        }
+        return costo;
+    }
+}
@@ -3,7 +3,10 @@ package org.example.security;
 import org.example.enums.Permisos;
 import org.example.exception.AutenticacionException;
 import org.example.exception.JsonNotFoundException;
+import org.example.exception.ConflictException;
 import org.example.exception.NotFoundException;
+import org.example.model.dto.UsuarioDTO;
+import org.example.repository.UsuarioRepository;
 import org.example.service.UsuarioService;
 import org.example.model.Usuario;
 import org.mindrot.jbcrypt.BCrypt;
@@ -13,10 +16,34 @@ import org.mindrot.jbcrypt.BCrypt;
  * Se encarga del inicio de Sesión y de validar permisos
  */
 public class Seguridad {
-    private final UsuarioService usuarioService = new UsuarioService();
+    private final UsuarioService usuarioService = UsuarioService.getInstancia();
+    private final UsuarioRepository usuarioRepository = UsuarioRepository.getInstancia();
+
+    // Hash de una contraseña cualquiera, para verificar algo aunque el usuario no exista
+    // Así un username inexistente tarda lo mismo que uno existente con la contraseña mal
+    // Usa el costo calibrado: las altas se hashean con ese costo y los hashes viejos se suben al iniciar sesión,
+    // así que es el costo al que llegan los hashes de los usuarios
+    private static final String HASH_FICTICIO = HashContrasenia.hashear("usuario-inexistente");
+
+    private Seguridad() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida de seguridad
+     * @return Seguridad único para toda la aplicación
+     */
+    public static Seguridad getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    private static class Unica {
+        private static final Seguridad INSTANCIA = new Seguridad();
+    }
 
     /**
      * Método para iniciar sesión
+     * Busca el usuario por el índice de username y hace una sola verificación de bcrypt
+     * Si el hash guardado tiene un costo menor al actual, se regenera con la contraseña recién verificada
      * @param username nombre de usuario
      * @param password contraseña
      * @return Usuario que inicia sesión
@@ -24,23 +51,45 @@ public class Seguridad {
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
      */
     public Usuario autenticar(String username, String password) throws AutenticacionException, JsonNotFoundException, NotFoundException {
-        //Verificamos si existe un usuario con ese username y password a traves de un stream
-        return usuarioService.listar().stream()
-                .filter(usuario -> usuario.getUsername().equals(username) &&
-                        BCrypt.checkpw(password, usuario.getPassword())) // decodifico la contraseña para validar
-                .findFirst()
-                .orElseThrow(() -> new AutenticacionException("Usuario o contraseña incorrectos"));
+        var dto = usuarioRepository.findByUsername(username);
+
+        // Verificamos siempre un hash, el del usuario o el ficticio, para que el tiempo no delate si existe
+        var hash = dto.map(UsuarioDTO::password).orElse(HASH_FICTICIO);
+        boolean coincide = BCrypt.checkpw(password, hash); // decodifico la contraseña para validar
+        if (dto.isEmpty() || !coincide) {
+            throw new AutenticacionException("Usuario o contraseña incorrectos");
+        }
+
+        // Es el único momento en que tenemos la contraseña en texto plano para subir el costo
+        var guardado = dto.get();
+        if (HashContrasenia.necesitaRehash(guardado.password())) {
+            try {
+                usuarioRepository.modify(new UsuarioDTO(guardado.id(), guardado.username(),
+                        HashContrasenia.hashear(password), guardado.idRol(), guardado.idProfesor(), guardado.version()));
+            } catch (ConflictException e) {
+                // Otra sesión acaba de modificar el usuario: no lo pisamos, el hash se sube en el próximo inicio
+            }
+        }
+
+        // Solo armamos con su rol y profesor al usuario que inició sesión
+        return usuarioService.obtener(guardado.id());
     }
 
 
     /**
      * Método para validar permisos del usuario
+     * Si el usuario tiene una sesión abierta se usan los permisos de su contexto,
+     * que se mantienen al día si se modifica su rol
      * @param usuario usuario que quiere realizar una acción
      * @param permisos enum que indica que es lo que quiere hacer el usuario
      * @return boolean que indica si tiene permisos o no
      */
     public boolean verificarPermiso(Usuario usuario, Permisos permisos) {
-        //Llamamos al método que devuelve si el usuario tiene permiso según su Rol
+        var contexto = ContextoSesion.de(usuario.getId());
+        if (contexto != null) {
+            return contexto.tienePermiso(permisos);
+        }
+        //Sin sesión abierta, usamos la máscara del rol del usuario
         return usuario.getRol().tienePermiso(permisos);
     }
 }
@@ -1,10 +1,13 @@
 package org.example.service;
 
 import org.example.exception.BadRequestException;
+import org.example.exception.ConflictException;
 import org.example.exception.JsonNotFoundException;
+import org.example.exception.ModificacionConcurrenteException;
 import org.example.exception.NotFoundException;
 import org.example.model.Asignatura;
 import org.example.repository.AsignaturaRepository;
+import org.example.repository.InscripcionRepository;
 
 import java.util.List;
 
@@ -14,9 +17,25 @@ import java.util.List;
  * y aplicar la lógica de negocio para manipular asignaturas
  */
 public class AsignaturaService{
-    private final AsignaturaRepository repositorio = new AsignaturaRepository();
+    private final AsignaturaRepository repositorio = AsignaturaRepository.getInstancia();
+    private final InscripcionRepository inscripcionRepository = InscripcionRepository.getInstancia();
 
 
+    private AsignaturaService() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida del servicio
+     * @return AsignaturaService único para toda la aplicación
+     */
+    public static AsignaturaService getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    private static class Unica {
+        private static final AsignaturaService INSTANCIA = new AsignaturaService();
+    }
+
     /**
      * Método para listar todas las asignaturas
      * @return List<Asignatura>
@@ -35,13 +54,12 @@ public class AsignaturaService{
      * @throws BadRequestException sí existe una asignatura con ese código
      */
     public Asignatura guardar(Asignatura asignatura) throws JsonNotFoundException, BadRequestException {
-        // Verificamos que no existe esa asignatura y si existe lanzamos la excepción
-        var optional = repositorio.findByCodigo(asignatura.getCodigo());
-        if (optional.isPresent()){
+        // El repositorio rechaza el código repetido con su índice único, y lo informamos como BadRequest
+        try {
+            repositorio.save(asignatura);
+        } catch (ConflictException e) {
             throw new BadRequestException(STR."Ya existe una asignatura con el código: \{asignatura.getCodigo()}");
         }
-
-        repositorio.save(asignatura);
         return asignatura;
     }
 
@@ -51,9 +69,15 @@ public class AsignaturaService{
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
      * @throws NotFoundException si no se encuentra una asignatura con ese ID
      */
-    public void eliminar(Integer id) throws JsonNotFoundException, NotFoundException {
+    public void eliminar(Integer id) throws JsonNotFoundException, NotFoundException, BadRequestException {
         // Verificamos que existe una asignatura con ese ID y si no lanzamos la excepción
         validarAsignaturaExistente(id);
+
+        // Verificamos en el índice inverso que no tenga inscripciones
+        var inscripciones = inscripcionRepository.findByAsignatura(id);
+        if (!inscripciones.isEmpty()) {
+            throw new BadRequestException(STR."No se puede eliminar la asignatura \{id}: tiene \{inscripciones.size()} inscripciones");
+        }
         repositorio.deleteById(id);
     }
 
@@ -74,10 +98,18 @@ public class AsignaturaService{
      * @param asignatura modificado
      * @throws JsonNotFoundException si no encuentra el archivo JSON
      * @throws NotFoundException si no encuentra la asignatura
+     * @throws BadRequestException si otra asignatura ya tiene ese código
      */
-    public void modificar(Asignatura asignatura) throws JsonNotFoundException, NotFoundException {
-        //Verificamos que la asignatura con ese ID exista y lo modificamos
-        repositorio.modify(validarAsignaturaExistente(asignatura.getId()));
+    public void modificar(Asignatura asignatura) throws JsonNotFoundException, NotFoundException, BadRequestException {
+        //Verificamos que la asignatura con ese ID exista y la modificamos
+        validarAsignaturaExistente(asignatura.getId());
+        try {
+            repositorio.modify(asignatura);
+        } catch (ModificacionConcurrenteException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (ConflictException e) {
+            throw new BadRequestException(STR."Ya existe una asignatura con el código: \{asignatura.getCodigo()}");
+        }
     }
 
 
@@ -1,23 +1,26 @@
 package org.example.service;
 
-import org.example.enums.BloqueHorario;
 import org.example.exception.BadRequestException;
 import org.example.exception.JsonNotFoundException;
+import org.example.exception.ModificacionConcurrenteException;
 import org.example.exception.NotFoundException;
 import org.example.model.Aula;
+import org.example.model.DiasYBloques;
+import org.example.model.EspacioRecomendado;
+import org.example.model.Inscripcion;
 import org.example.model.Laboratorio;
-import org.example.model.dto.ReservaDTO;
 import org.example.repository.AulaRepository;
+import org.example.repository.IndiceEspacios;
 import org.example.repository.ReservaRepository;
-import org.example.utils.Utils;
+import org.example.repository.SolicitudCambioAulaRepository;
 
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import static java.lang.StringTemplate.STR;
 
@@ -27,8 +30,36 @@ import static java.lang.StringTemplate.STR;
  * y aplicar la lógica de negocio para manipular aulas
  */
 public class AulaService{
-    private final AulaRepository repositorio = new AulaRepository();
-    private final ReservaRepository reservaRepository = new ReservaRepository();
+    private final AulaRepository repositorio = AulaRepository.getInstancia();
+    private final ReservaRepository reservaRepository = ReservaRepository.getInstancia();
+    private final SolicitudCambioAulaRepository solicitudRepository = SolicitudCambioAulaRepository.getInstancia();
+
+    // Pesos del ranking de espacios: el ajuste de capacidad va de 0 a 100
+    private static final int PESO_EQUIPAMIENTO = 20;
+    private static final int PESO_COMPUTADORAS = 10;
+    private static final int PENALIZACION_LABORATORIO = 30;
+
+    private record Candidato(int id, int puntaje, int sobrantes) {}
+
+    // El peor candidato queda primero en el heap: menos puntaje, más lugares sobrantes, ID más alto
+    private static final Comparator<Candidato> PEOR_PRIMERO = Comparator.comparingInt(Candidato::puntaje)
+            .thenComparing(Comparator.comparingInt(Candidato::sobrantes).reversed())
+            .thenComparing(Comparator.comparingInt(Candidato::id).reversed());
+
+    private AulaService() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida del servicio
+     * @return AulaService único para toda la aplicación
+     */
+    public static AulaService getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    private static class Unica {
+        private static final AulaService INSTANCIA = new AulaService();
+    }
 
     /**
      * Método para listar todas las aulas
@@ -62,13 +93,27 @@ public class AulaService{
      * @param id del aula que queremos eliminar
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
      * @throws NotFoundException si no se encuentra un aula con ese numero
+     * @throws BadRequestException si el aula tiene reservas o solicitudes de cambio pendientes
      */
-    public void eliminar(Integer id) throws JsonNotFoundException, NotFoundException {
+    public void eliminar(Integer id) throws JsonNotFoundException, NotFoundException, BadRequestException {
         // Verificamos que existe una asignatura con ese ID y si no lanzamos la excepción
         var aula = validarAulaExistenteById(id);
 
-        // Borramos esa aula por ID
-        repositorio.deleteById(aula.getId());
+        // Con el aula tomada nadie puede reservarla entre que verificamos y la borramos
+        try (var tomada = BloqueoPorAula.tomar(id)) {
+            // No se puede borrar un aula que todavía se usa: lo consultamos en los índices inversos
+            var reservas = reservaRepository.findByAula(id);
+            if (!reservas.isEmpty()) {
+                throw new BadRequestException(STR."No se puede eliminar el espacio \{id}: tiene \{reservas.size()} reservas");
+            }
+            var solicitudes = solicitudRepository.findPendientesByAula(id);
+            if (!solicitudes.isEmpty()) {
+                throw new BadRequestException(STR."No se puede eliminar el espacio \{id}: tiene \{solicitudes.size()} solicitudes de cambio pendientes");
+            }
+
+            // Borramos esa aula por ID
+            repositorio.deleteById(aula.getId());
+        }
     }
 
     /**
@@ -88,13 +133,18 @@ public class AulaService{
      * @param aula modificada
      * @throws JsonNotFoundException si no encuentra el archivo JSON
      * @throws NotFoundException si no encuentra el aula
+     * @throws BadRequestException si otra sesión modificó el aula mientras tanto
      */
-    public void modificar(Aula aula) throws JsonNotFoundException, NotFoundException {
+    public void modificar(Aula aula) throws JsonNotFoundException, NotFoundException, BadRequestException {
         //Verificamos que el aula con ese ID exista
         validarAulaExistenteById(aula.getId());
 
         //la modificamos
-        repositorio.modify(aula);
+        try {
+            repositorio.modify(aula);
+        } catch (ModificacionConcurrenteException e) {
+            throw new BadRequestException(e.getMessage());
+        }
     }
 
     //Filtros
@@ -105,10 +155,7 @@ public class AulaService{
      * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
      */
     public List<Laboratorio> listarLaboratorios() throws JsonNotFoundException {
-        return listar().stream()
-                .filter(aula -> aula instanceof Laboratorio)
-                .map(aula -> (Laboratorio) aula)// Filtra si es instancia de Laboratorio
-                .collect(Collectors.toList());
+        return comoLaboratorios(filtrarEspacios(true, null, null, null, null, Set.of()));
     }
 
     /**
@@ -117,27 +164,40 @@ public class AulaService{
      * @throws JsonNotFoundException sí existe un problema con el archivo JSON
      */
     public List<Aula> listarAulas() throws JsonNotFoundException {
-        return listar().stream()
-                .filter(aula -> !(aula instanceof Laboratorio)) // Filtra si no es instancia de Laboratorio
-                .toList();
+        return filtrarEspacios(false, null, null, null, null, Set.of());
     }
 
     /**
      * Método genérico para aplicar filtros en los espacios
-     * @param espacios la lista a filtrar
+     * Resuelve las condiciones intersectando los BitSet del índice de atributos
+     * y solo copia los espacios que quedan
+     * @param laboratorio true para solo laboratorios, false para solo aulas (null para los dos)
      * @param capacidad mínima del espacio
      * @param tieneProyector si tiene o no proyector
      * @param tieneTV si tiene o no TV
      * @param computadoras mínima del espacio (si aplica)
-     * @return <T extends Aula> List<T>  lista de espacios
-     * @param <T> si queremos utilizar Aula o Laboratorio
+     * @param excluidos ids de los espacios que no se tienen que devolver (por ejemplo, los ocupados)
+     * @return List<Aula> lista de espacios, en el orden del JSON
+     * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
      */
-    private <T extends Aula> List<T> filtrarEspacios(List<T> espacios, Integer capacidad, Boolean tieneProyector, Boolean tieneTV, Integer computadoras) {
+    private List<Aula> filtrarEspacios(Boolean laboratorio, Integer capacidad, Boolean tieneProyector, Boolean tieneTV,
+                                       Integer computadoras, Set<Integer> excluidos) throws JsonNotFoundException {
+        var indice = repositorio.getIndiceEspacios();
+        var ids = indice.filtrar(laboratorio, capacidad, tieneProyector, tieneTV, computadoras).stream()
+                .map(posicion -> indice.ids()[posicion])
+                .filter(id -> !excluidos.contains(id))
+                .toArray();
+        return repositorio.findAllById(ids);
+    }
+
+    /**
+     * Método para convertir una lista de espacios que solo tiene laboratorios
+     * @param espacios filtrados con laboratorio = true
+     * @return List<Laboratorio> los mismos espacios
+     */
+    private List<Laboratorio> comoLaboratorios(List<Aula> espacios) {
         return espacios.stream()
-                .filter(aula -> capacidad == null || aula.getCapacidad() >= capacidad)
-                .filter(aula -> tieneProyector == null || aula.isTieneProyector() == tieneProyector)
-                .filter(aula -> tieneTV == null || aula.isTieneTV() == tieneTV)
-                .filter(aula -> computadoras == null || !(aula instanceof Laboratorio) || ((Laboratorio) aula).getComputadoras() >= computadoras)
+                .map(aula -> (Laboratorio) aula)
                 .toList();
     }
 
@@ -152,7 +212,7 @@ public class AulaService{
      * @throws JsonNotFoundException Sí existe un problema con el archivo JSON.
      */
     public List<Aula> filtrarEspaciosPorCondiciones(Integer capacidad, Boolean tieneProyector, Boolean tieneTV) throws JsonNotFoundException {
-        return filtrarEspacios(listar(), capacidad, tieneProyector, tieneTV, null);
+        return filtrarEspacios(null, capacidad, tieneProyector, tieneTV, null, Set.of());
     }
 
 
@@ -166,7 +226,7 @@ public class AulaService{
      * @throws JsonNotFoundException Sí existe un problema con el archivo JSON.
      */
     public List<Aula> filtrarAulasPorCondiciones(Integer capacidad, Boolean tieneProyector, Boolean tieneTV) throws JsonNotFoundException {
-        return filtrarEspacios(listarAulas(), capacidad, tieneProyector, tieneTV, null);
+        return filtrarEspacios(false, capacidad, tieneProyector, tieneTV, null, Set.of());
     }
 
 
@@ -181,9 +241,7 @@ public class AulaService{
      * @throws JsonNotFoundException Sí existe un problema con el archivo JSON.
      */
     public List<Laboratorio> filtrarLaboratoriosPorCondiciones(Integer capacidad, Boolean tieneProyector, Boolean tieneTV, Integer computadoras) throws JsonNotFoundException {
-        return filtrarEspacios(listarLaboratorios(), capacidad, tieneProyector, tieneTV, computadoras)
-                .stream()
-                .toList();
+        return comoLaboratorios(filtrarEspacios(true, capacidad, tieneProyector, tieneTV, computadoras, Set.of()));
     }
 
     /**
@@ -191,35 +249,29 @@ public class AulaService{
      * @param fechaInicio del rango de fecha
      * @param fechaFin del rango de fecha
      * @param diasYBloques que queremos filtrar
-     * @return List<Integer> ids de las aulas ocupadas
+     * @return Set<Integer> ids de las aulas ocupadas
      * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
      */
-    private List<Integer> obtenerIdsEspaciosOcupados(LocalDate fechaInicio, LocalDate fechaFin, Map<DayOfWeek, Set<BloqueHorario>> diasYBloques) throws JsonNotFoundException {
-        return reservaRepository.getAll()
-                .stream()
-                .filter(r -> Utils.seSolapanFechas(fechaInicio, fechaFin, r.fechaInicio(), r.fechaFin()))
-                .filter(r -> Utils.tieneSolapamientoEnDiasYBloques(r.diasYBloques(), diasYBloques))
-                .map(ReservaDTO::idAula)
-                .toList();
+    private Set<Integer> obtenerIdsEspaciosOcupados(LocalDate fechaInicio, LocalDate fechaFin, DiasYBloques diasYBloques) throws JsonNotFoundException {
+        // Consultamos el índice de ocupación en lugar de recorrer todas las reservas
+        return reservaRepository.findAulasOcupadas(fechaInicio, fechaFin, diasYBloques);
     }
     /**
      * Método para filtrar Aulas por fecha, período y días/bloques de la semana.
      * @param fechaInicio desde qué fecha debe estar disponible.
      * @param fechaFin hasta qué fecha debe estar disponible.
-     * @param diasYBloques mapa con los días de la semana y sus respectivos bloques horarios.
+     * @param diasYBloques días de la semana y sus respectivos bloques horarios.
      * @return List<Aula> lista de aulas que cumplen con las condiciones.
      * @throws JsonNotFoundException sí existe un problema con el archivo JSON.
      */
     public List<Aula> listarEspaciosDisponibles(LocalDate fechaInicio, LocalDate fechaFin,
-                                             Map<DayOfWeek, Set<BloqueHorario>> diasYBloques)
+                                             DiasYBloques diasYBloques)
             throws JsonNotFoundException {
         // Filtramos las reservas existentes que coinciden en los días y bloques horarios
         var idsAulasSolapadas = obtenerIdsEspaciosOcupados(fechaInicio,fechaFin,diasYBloques);
 
         // Filtramos las aulas disponibles que no están en las reservas solapadas
-        return listar().stream()
-                .filter(aula -> !idsAulasSolapadas.contains(aula.getId()))
-                .toList();
+        return filtrarEspacios(null, null, null, null, null, idsAulasSolapadas);
     }
 
 
@@ -227,19 +279,17 @@ public class AulaService{
      * Método para filtrar solo Aulas disponibles por fecha, período y días/bloques de la semana.
      * @param fechaInicio desde qué fecha debe estar disponible.
      * @param fechaFin hasta qué fecha debe estar disponible.
-     * @param diasYBloques mapa con los días de la semana y sus respectivos bloques horarios.
+     * @param diasYBloques días de la semana y sus respectivos bloques horarios.
      * @return List<Aula> lista de aulas disponibles que cumplen con las condiciones.
      * @throws JsonNotFoundException sí existe un problema con el archivo JSON.
      */
     public List<Aula> listarAulasDisponibles(LocalDate fechaInicio, LocalDate fechaFin,
-                                             Map<DayOfWeek, Set<BloqueHorario>> diasYBloques) throws JsonNotFoundException {
+                                             DiasYBloques diasYBloques) throws JsonNotFoundException {
         // Filtramos las reservas existentes que coinciden en los días y bloques horarios
         var idsAulasSolapadas = obtenerIdsEspaciosOcupados(fechaInicio,fechaFin,diasYBloques);
 
         // Filtramos las Aulas disponibles que no están en las reservas solapadas
-        return listarAulas().stream()
-                .filter(aula -> !idsAulasSolapadas.contains(aula.getId()))
-                .toList();
+        return filtrarEspacios(false, null, null, null, null, idsAulasSolapadas);
     }
 
 
@@ -247,19 +297,17 @@ public class AulaService{
      * Método para filtrar solo Laboratorios disponibles por fecha, período y días/bloques de la semana.
      * @param fechaInicio desde qué fecha debe estar disponible.
      * @param fechaFin hasta qué fecha debe estar disponible.
-     * @param diasYBloques mapa con los días de la semana y sus respectivos bloques horarios.
+     * @param diasYBloques días de la semana y sus respectivos bloques horarios.
      * @return List<Laboratorio> lista de laboratorios disponibles que cumplen con las condiciones.
      * @throws JsonNotFoundException sí existe un problema con el archivo JSON.
      */
     public List<Laboratorio> listarLaboratoriosDisponibles(LocalDate fechaInicio, LocalDate fechaFin,
-                                                           Map<DayOfWeek, Set<BloqueHorario>> diasYBloques) throws JsonNotFoundException {
+                                                           DiasYBloques diasYBloques) throws JsonNotFoundException {
         // Filtramos las reservas existentes que coinciden en los días y bloques horarios
         var idsLaboratoriosSolapados = obtenerIdsEspaciosOcupados(fechaInicio,fechaFin,diasYBloques);
 
         // Filtramos los Laboratorios disponibles que no están en las reservas solapadas
-        return listarLaboratorios().stream()
-                .filter(laboratorio -> !idsLaboratoriosSolapados.contains(laboratorio.getId()))
-                .toList();
+        return comoLaboratorios(filtrarEspacios(true, null, null, null, null, idsLaboratoriosSolapados));
     }
 
     /**
@@ -273,9 +321,9 @@ public class AulaService{
      * @return List<Aula> disponibles con esas condiciones en ese rango de fecha
      * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
      */
-    public List<Aula> listarEspaciosDisponiblesConCondiciones(Integer capacidad, Boolean tieneProyector, Boolean tieneTV, LocalDate fechaInicio, LocalDate fechaFin, Map<DayOfWeek, Set<BloqueHorario>> diasYBloques) throws JsonNotFoundException {
-        var espaciosDisponibles = listarEspaciosDisponibles(fechaInicio, fechaFin, diasYBloques);
-        return filtrarEspacios(espaciosDisponibles, capacidad, tieneProyector, tieneTV, null);
+    public List<Aula> listarEspaciosDisponiblesConCondiciones(Integer capacidad, Boolean tieneProyector, Boolean tieneTV, LocalDate fechaInicio, LocalDate fechaFin, DiasYBloques diasYBloques) throws JsonNotFoundException {
+        var ocupados = obtenerIdsEspaciosOcupados(fechaInicio, fechaFin, diasYBloques);
+        return filtrarEspacios(null, capacidad, tieneProyector, tieneTV, null, ocupados);
     }
 
 
@@ -290,9 +338,9 @@ public class AulaService{
      * @return List<Aula> disponibles con esas condiciones en ese rango de fecha
      * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
      */
-    public List<Aula> listarAulasDisponiblesConCondiciones(Integer capacidad, Boolean tieneProyector, Boolean tieneTV, LocalDate fechaInicio, LocalDate fechaFin, Map<DayOfWeek, Set<BloqueHorario>> diasYBloques) throws JsonNotFoundException {
-        var aulasDisponibles = listarAulasDisponibles(fechaInicio, fechaFin, diasYBloques);
-        return filtrarEspacios(aulasDisponibles, capacidad, tieneProyector, tieneTV, null);
+    public List<Aula> listarAulasDisponiblesConCondiciones(Integer capacidad, Boolean tieneProyector, Boolean tieneTV, LocalDate fechaInicio, LocalDate fechaFin, DiasYBloques diasYBloques) throws JsonNotFoundException {
+        var ocupadas = obtenerIdsEspaciosOcupados(fechaInicio, fechaFin, diasYBloques);
+        return filtrarEspacios(false, capacidad, tieneProyector, tieneTV, null, ocupadas);
     }
 
 
@@ -307,14 +355,103 @@ public class AulaService{
      * @return List<Laboratorio> disponibles con esas condiciones en ese rango de fecha
      * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
      */
-    public List<Laboratorio> listarLaboratoriosDisponiblesConCondiciones(Integer computadoras, Integer capacidad, Boolean tieneProyector, Boolean tieneTV, LocalDate fechaInicio, LocalDate fechaFin, Map<DayOfWeek, Set<BloqueHorario>> diasYBloques) throws JsonNotFoundException {
-        var laboratoriosDisponibles = listarLaboratoriosDisponibles(fechaInicio, fechaFin, diasYBloques);
-        return filtrarEspacios(laboratoriosDisponibles, capacidad, tieneProyector, tieneTV, computadoras)
-                .stream()
-                .toList();
+    public List<Laboratorio> listarLaboratoriosDisponiblesConCondiciones(Integer computadoras, Integer capacidad, Boolean tieneProyector, Boolean tieneTV, LocalDate fechaInicio, LocalDate fechaFin, DiasYBloques diasYBloques) throws JsonNotFoundException {
+        var ocupados = obtenerIdsEspaciosOcupados(fechaInicio, fechaFin, diasYBloques);
+        return comoLaboratorios(filtrarEspacios(true, capacidad, tieneProyector, tieneTV, computadoras, ocupados));
     }
 
 
+    /**
+     * Método para recomendar los espacios libres que mejor se ajustan a una inscripción
+     * Solo se consideran los espacios con capacidad para los alumnos requeridos (alumnos más el margen
+     * mientras la inscripción siga abierta) y, si la asignatura lo requiere, solo laboratorios
+     * El puntaje premia el ajuste de capacidad (menos lugares vacíos), el equipamiento pedido
+     * y los laboratorios con una computadora por alumno; a las asignaturas que no necesitan laboratorio
+     * se les penalizan los laboratorios para dejarlos libres
+     * Recorre el índice de atributos desde la primera capacidad que alcanza y se queda con los mejores
+     * en un heap acotado, así que no ordena todos los espacios
+     * @param inscripcion para la que se busca espacio
+     * @param tieneProyector si se prefiere con o sin proyector (null si no importa)
+     * @param tieneTV si se prefiere con o sin TV (null si no importa)
+     * @param fechaInicio desde qué fecha debe estar disponible
+     * @param fechaFin hasta qué fecha debe estar disponible
+     * @param diasYBloques días de la semana y sus respectivos bloques horarios
+     * @param cantidad máxima de espacios a devolver
+     * @return List<EspacioRecomendado> los mejores espacios, del mejor al peor
+     * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
+     */
+    public List<EspacioRecomendado> recomendarEspacios(Inscripcion inscripcion, Boolean tieneProyector, Boolean tieneTV,
+                                                       LocalDate fechaInicio, LocalDate fechaFin,
+                                                       DiasYBloques diasYBloques, int cantidad) throws JsonNotFoundException {
+        if (cantidad <= 0) {
+            return List.of();
+        }
+        int requeridos = alumnosRequeridos(inscripcion);
+        boolean requiereLaboratorio = inscripcion.getAsignatura().isRequiereLaboratorio();
+        var ocupadas = obtenerIdsEspaciosOcupados(fechaInicio, fechaFin, diasYBloques);
+        var indice = repositorio.getIndiceEspacios();
+
+        var mejores = new PriorityQueue<>(cantidad + 1, PEOR_PRIMERO);
+        for (int i = indice.desde(requeridos); i < indice.tamanio(); i++) {
+            boolean esLaboratorio = indice.tiene(i, IndiceEspacios.LABORATORIO);
+            if ((requiereLaboratorio && !esLaboratorio) || ocupadas.contains(indice.ids()[i])) {
+                continue;
+            }
+            int capacidad = indice.capacidades()[i];
+            int puntaje = capacidad == 0 ? 0 : requeridos * 100 / capacidad;
+            puntaje += puntajeEquipamiento(tieneProyector, indice.tiene(i, IndiceEspacios.PROYECTOR));
+            puntaje += puntajeEquipamiento(tieneTV, indice.tiene(i, IndiceEspacios.TV));
+            if (esLaboratorio) {
+                if (!requiereLaboratorio) {
+                    puntaje -= PENALIZACION_LABORATORIO;
+                } else if (indice.computadoras()[i] >= inscripcion.getCantidadAlumnos()) {
+                    puntaje += PESO_COMPUTADORAS;
+                }
+            }
+
+            var candidato = new Candidato(indice.ids()[i], puntaje, capacidad - requeridos);
+            if (mejores.size() < cantidad) {
+                mejores.add(candidato);
+            } else if (PEOR_PRIMERO.compare(candidato, mejores.peek()) > 0) {
+                mejores.poll();
+                mejores.add(candidato);
+            }
+        }
+
+        // Sacamos del heap del peor al mejor y buscamos solo los espacios elegidos
+        var recomendados = new ArrayList<EspacioRecomendado>(mejores.size());
+        while (!mejores.isEmpty()) {
+            var candidato = mejores.poll();
+            var aula = repositorio.findById(candidato.id());
+            aula.ifPresent(a -> recomendados.add(new EspacioRecomendado(a, candidato.puntaje(), candidato.sobrantes())));
+        }
+        return recomendados.reversed();
+    }
+
+    /**
+     * Método que calcula los alumnos que tiene que poder recibir un espacio
+     * El margen solo se suma mientras la inscripción siga abierta, igual que al validar una reserva
+     * @param inscripcion de la que se calculan los alumnos
+     * @return int alumnos requeridos
+     */
+    private int alumnosRequeridos(Inscripcion inscripcion) {
+        return inscripcion.getCantidadAlumnos() +
+                (inscripcion.getFechaFinInscripcion().isAfter(LocalDate.now()) ? inscripcion.getMargenAlumnos() : 0);
+    }
+
+    /**
+     * Método que puntúa un equipamiento según la preferencia
+     * @param preferencia si se quiere o no el equipamiento (null si no importa)
+     * @param tiene si el espacio lo tiene
+     * @return int puntos a sumar o restar
+     */
+    private int puntajeEquipamiento(Boolean preferencia, boolean tiene) {
+        if (preferencia == null) {
+            return 0;
+        }
+        return preferencia == tiene ? PESO_EQUIPAMIENTO : -PESO_EQUIPAMIENTO;
+    }
+
 
 
     // Validaciones
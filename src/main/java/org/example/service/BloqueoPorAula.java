@@ -0,0 +1,98 @@
+package org.example.service;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Locks de los servicios por aula, repartidos en franjas (lock striping)
+ * Validar una reserva y guardarla tiene que ser atómico para el aula: si no, dos reservas del mismo
+ * aula y horario pueden pasar la validación a la vez; con un lock por franja las reservas de aulas
+ * distintas se validan en paralelo y solo esperan las que caen en la misma franja
+ * Las franjas se toman siempre de menor a mayor, así dos operaciones con varias aulas no se bloquean entre sí
+ * Los locks son reentrantes: un servicio que ya tiene el aula puede llamar a otro que la vuelve a pedir
+ */
+class BloqueoPorAula {
+    // Potencia de 2, para repartir con una máscara
+    private static final int FRANJAS = 64;
+    private static final ReentrantLock[] franjas = new ReentrantLock[FRANJAS];
+
+    static {
+        for (int i = 0; i < FRANJAS; i++) {
+            franjas[i] = new ReentrantLock();
+        }
+    }
+
+    private BloqueoPorAula() {
+    }
+
+    /**
+     * Aulas tomadas, se sueltan con close()
+     */
+    static class Tomadas implements AutoCloseable {
+        private final Set<Integer> aulas;
+        private final int[] tomadas;
+
+        private Tomadas(Set<Integer> aulas, int[] tomadas) {
+            this.aulas = aulas;
+            this.tomadas = tomadas;
+        }
+
+        /**
+         * Método para saber si un aula quedó cubierta por los locks tomados
+         * @param idAula ID del aula
+         * @return boolean true si se pidió al tomar los locks
+         */
+        boolean incluye(Integer idAula) {
+            return aulas.contains(idAula);
+        }
+
+        @Override
+        public void close() {
+            // Se sueltan al revés de como se tomaron
+            for (int i = tomadas.length - 1; i >= 0; i--) {
+                franjas[tomadas[i]].unlock();
+            }
+        }
+    }
+
+    /**
+     * Método para tomar el lock de un aula
+     * @param idAula ID del aula, si es null no se toma nada
+     * @return Tomadas para soltar el lock
+     */
+    static Tomadas tomar(Integer idAula) {
+        return tomar(idAula == null ? Set.of() : Set.of(idAula));
+    }
+
+    /**
+     * Método para tomar los locks de varias aulas, en orden de franja
+     * @param idsAulas IDs de las aulas, los null se ignoran
+     * @return Tomadas para soltar los locks
+     */
+    static Tomadas tomar(Collection<Integer> idsAulas) {
+        Set<Integer> aulas = new TreeSet<>();
+        Set<Integer> porTomar = new TreeSet<>();
+        idsAulas.stream().filter(Objects::nonNull).forEach(id -> {
+            aulas.add(id);
+            porTomar.add(franja(id));
+        });
+        int[] tomadas = new int[porTomar.size()];
+        int cantidad = 0;
+        for (int franja : porTomar) {
+            franjas[franja].lock();
+            tomadas[cantidad++] = franja;
+        }
+        return new Tomadas(aulas, tomadas);
+    }
+
+    /**
+     * Mezcla los bits del ID para que aulas con IDs consecutivos caigan en franjas distintas
+     */
+    private static int franja(int idAula) {
+        int h = idAula * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (FRANJAS - 1);
+    }
+}
@@ -2,7 +2,9 @@ package org.example.service;
 
 
 import org.example.exception.BadRequestException;
+import org.example.exception.ConflictException;
 import org.example.exception.JsonNotFoundException;
+import org.example.exception.ModificacionConcurrenteException;
 import org.example.exception.NotFoundException;
 import org.example.model.Asignatura;
 import org.example.model.Inscripcion;
@@ -11,11 +13,14 @@ import org.example.model.dto.InscripcionDTO;
 import org.example.repository.AsignaturaRepository;
 import org.example.repository.InscripcionRepository;
 import org.example.repository.ProfesorRepository;
+import org.example.repository.ReservaRepository;
 import org.example.utils.Mapper;
 
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -23,24 +28,89 @@ import java.util.List;
  * y aplicar la lógica de negocio para manipular inscripciones
  */
 public class InscripcionService{
-    private final InscripcionRepository repositorio = new InscripcionRepository();
-    private final AsignaturaRepository asignaturaRepository = new AsignaturaRepository();
-    private final ProfesorRepository profesorRepository = new ProfesorRepository();
+    private final InscripcionRepository repositorio = InscripcionRepository.getInstancia();
+    private final AsignaturaRepository asignaturaRepository = AsignaturaRepository.getInstancia();
+    private final ProfesorRepository profesorRepository = ProfesorRepository.getInstancia();
+    private final ReservaRepository reservaRepository = ReservaRepository.getInstancia();
 
 
+    private InscripcionService() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida del servicio
+     * @return InscripcionService único para toda la aplicación
+     */
+    public static InscripcionService getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    private static class Unica {
+        private static final InscripcionService INSTANCIA = new InscripcionService();
+    }
+
     /**
      * Método para listar todas las inscripciones
      * @return List<Inscripcion>
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
      */
     public List<Inscripcion> listar() throws JsonNotFoundException, NotFoundException {
-        List<Inscripcion> inscripciones = new ArrayList<>();
-        var dtoList = repositorio.getAll();
+        return hidratar(repositorio.getAll());
+    }
+
+    /**
+     * Método para listar las inscripciones de un profesor
+     * @param idProfesor del profesor
+     * @return List<Inscripcion> del profesor
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     * @throws NotFoundException si no existe el profesor
+     */
+    public List<Inscripcion> listarPorProfesor(Integer idProfesor) throws JsonNotFoundException, NotFoundException {
+        validarProfesorExistente(idProfesor);
+        return hidratar(repositorio.findByProfesor(idProfesor));
+    }
+
+    /**
+     * Método para listar las inscripciones de una asignatura
+     * @param idAsignatura de la asignatura
+     * @return List<Inscripcion> de la asignatura
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     * @throws NotFoundException si no existe la asignatura
+     */
+    public List<Inscripcion> listarPorAsignatura(Integer idAsignatura) throws JsonNotFoundException, NotFoundException {
+        validarAsignaturaExistente(idAsignatura);
+        return hidratar(repositorio.findByAsignatura(idAsignatura));
+    }
+
+    /**
+     * Método para armar las inscripciones de una lista de DTO
+     * Lee asignaturas y profesores una sola vez y los cruza en memoria por ID
+     * @param dtoList inscripciones a armar
+     * @return List<Inscripcion> en el mismo orden que los DTO
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     * @throws NotFoundException si una inscripción tiene una asignatura o un profesor que no existe
+     */
+    public List<Inscripcion> hidratar(List<InscripcionDTO> dtoList) throws JsonNotFoundException, NotFoundException {
+        List<Inscripcion> inscripciones = new ArrayList<>(dtoList.size());
+        if (dtoList.isEmpty()) {
+            return inscripciones;
+        }
+        Map<Integer, Asignatura> asignaturas = new HashMap<>();
+        asignaturaRepository.getAll().forEach(a -> asignaturas.put(a.getId(), a));
+        Map<Integer, Profesor> profesores = new HashMap<>();
+        profesorRepository.getAll().forEach(p -> profesores.put(p.getId(), p));
+
         for (InscripcionDTO dto : dtoList){
             // Validamos que la asignatura exista
-            var asignatura = validarAsignaturaExistente(dto.idAsignatura());
+            var asignatura = asignaturas.get(dto.idAsignatura());
+            if (asignatura == null) {
+                throw new NotFoundException(STR."No existe una asignatura con el id: \{dto.idAsignatura()}");
+            }
             // Validamos que el profesor exista
-            var profesor = validarProfesorExistente(dto.idProfesor());
+            var profesor = profesores.get(dto.idProfesor());
+            if (profesor == null) {
+                throw new NotFoundException(STR."No existe un profesor con el id: \{dto.idProfesor()}");
+            }
             // Mapeamos y guardamos en inscripciones
             inscripciones.add(Mapper.toInscripcion(dto,asignatura,profesor));
         }
@@ -58,11 +128,6 @@ public class InscripcionService{
     public Inscripcion guardar(Inscripcion inscripcion) throws JsonNotFoundException, BadRequestException, NotFoundException {
         var idAsignatura = inscripcion.getAsignatura().getId();
         var idProfesor = inscripcion.getProfesor().getId();
-        //Verificamos que no existe una inscripción con esas características, sino lanzamos excepción
-        var optional = repositorio.find(idAsignatura, idProfesor, inscripcion.getComision());
-        if (optional.isPresent()){
-            throw new BadRequestException("Ya existe una inscripción con esas características");
-        }
 
         //Tomamos el ID de Asignatura y verificamos que existe, si no lanzamos excepción
         validarAsignaturaExistente(idAsignatura);
@@ -70,7 +135,12 @@ public class InscripcionService{
         //Tomamos el ID de Profesor y verificamos que existe, si no lanzamos excepción
         validarProfesorExistente(idProfesor);
 
-        repositorio.save(Mapper.inscripcionToDTO(inscripcion));
+        //El repositorio rechaza con su índice único una inscripción con esas características
+        try {
+            repositorio.save(Mapper.inscripcionToDTO(inscripcion));
+        } catch (ConflictException e) {
+            throw new BadRequestException("Ya existe una inscripción con esas características");
+        }
         return inscripcion;
     }
 
@@ -81,10 +151,16 @@ public class InscripcionService{
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
      * @throws NotFoundException si no se encuentra una inscripción con ese ID
      */
-    public void eliminar(Integer id) throws JsonNotFoundException, NotFoundException {
+    public void eliminar(Integer id) throws JsonNotFoundException, NotFoundException, BadRequestException {
         //Verificamos que existe una inscripción con ese ID, si no lanzamos excepción
         validarInscripcionExistente(id);
 
+        //Verificamos en el índice inverso que no tenga reservas
+        var reservas = reservaRepository.findByInscripcion(id);
+        if (!reservas.isEmpty()) {
+            throw new BadRequestException(STR."No se puede eliminar la inscripción \{id}: tiene \{reservas.size()} reservas");
+        }
+
         //Borramos la inscripción por ID
         repositorio.deleteById(id);
     }
@@ -114,8 +190,9 @@ public class InscripcionService{
      * @param inscripcion que se va a modificar
      * @throws JsonNotFoundException si ocurre un error con el archivo JSON
      * @throws NotFoundException Si no encuentra inscripción o asignatura o profesor
+     * @throws BadRequestException si otra inscripción ya tiene esa asignatura, profesor y comisión
      */
-    public void modificar(Inscripcion inscripcion) throws JsonNotFoundException, NotFoundException {
+    public void modificar(Inscripcion inscripcion) throws JsonNotFoundException, NotFoundException, BadRequestException {
         //Validamos que exista la inscripción
         var dto = validarInscripcionExistente(inscripcion.getId());
 
@@ -125,8 +202,14 @@ public class InscripcionService{
         //Validamos que exista el profesor
         validarProfesorExistente(dto.idProfesor());
 
-        //Mapeamos y modificamos la inscripción
-        repositorio.modify(Mapper.inscripcionToDTO(inscripcion));
+        //Mapeamos y modificamos la inscripción, si no repite otra con esas características
+        try {
+            repositorio.modify(Mapper.inscripcionToDTO(inscripcion));
+        } catch (ModificacionConcurrenteException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (ConflictException e) {
+            throw new BadRequestException("Ya existe una inscripción con esas características");
+        }
     }
 
 
@@ -0,0 +1,340 @@
+package org.example.service;
+
+import org.example.enums.EstadoSolicitud;
+import org.example.exception.JsonNotFoundException;
+import org.example.exception.NotFoundException;
+import org.example.model.*;
+import org.example.model.dto.SolicitudCambioAulaDTO;
+import org.example.repository.AulaRepository;
+import org.example.repository.IndiceEspacios;
+import org.example.repository.ReservaRepository;
+import org.example.repository.SolicitudCambioAulaRepository;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static java.lang.StringTemplate.STR;
+
+/**
+ * Clase que arma automáticamente las reservas de un cuatrimestre
+ * Cada inscripción pide sus días y bloques de la semana y el planificador le busca un espacio
+ * respetando la capacidad, el laboratorio si la asignatura lo requiere, las reservas existentes
+ * y las solicitudes de cambio pendientes
+ * Es una búsqueda con backtracking: el dominio de cada inscripción es un BitSet con los espacios
+ * que le sirven, y al ubicar una inscripción se saca ese espacio del dominio de las que se le solapan
+ * (forward checking). Las inscripciones que no se solapan con ninguna otra de un grupo no se afectan,
+ * así que cada grupo se resuelve por separado y en paralelo
+ * Con -Dgestionaulas.planificador.limiteNodos=N se cambia el límite de nodos por grupo (por defecto 200000);
+ * al llegar al límite se devuelve la mejor solución encontrada hasta ese momento
+ */
+public class PlanificadorService {
+    public static final String PROPIEDAD_LIMITE_NODOS = "gestionaulas.planificador.limiteNodos";
+    private static final long LIMITE_NODOS_POR_DEFECTO = 200_000;
+
+    private final AulaRepository aulaRepository = AulaRepository.getInstancia();
+    private final ReservaRepository reservaRepository = ReservaRepository.getInstancia();
+    private final SolicitudCambioAulaRepository solicitudRepository = SolicitudCambioAulaRepository.getInstancia();
+    private final InscripcionService inscripcionService = InscripcionService.getInstancia();
+
+    private PlanificadorService() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida del servicio
+     * @return PlanificadorService único para toda la aplicación
+     */
+    public static PlanificadorService getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    private static class Unica {
+        private static final PlanificadorService INSTANCIA = new PlanificadorService();
+    }
+
+    /**
+     * Método para planificar las reservas de un cuatrimestre
+     * No guarda nada: las reservas propuestas se pueden revisar y después guardar con ReservaService.guardarLote
+     * @param fechaInicio del cuatrimestre
+     * @param fechaFin del cuatrimestre
+     * @param pedidos días y bloques que pide cada inscripción, por ID de inscripción
+     * @return Planificacion con las reservas propuestas y las inscripciones que no se pudieron ubicar
+     * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
+     * @throws NotFoundException si no existe alguna de las inscripciones
+     */
+    public Planificacion planificar(LocalDate fechaInicio, LocalDate fechaFin, Map<Integer, DiasYBloques> pedidos)
+            throws JsonNotFoundException, NotFoundException {
+        // Cargamos las inscripciones pedidas, ordenadas por ID para que el resultado no dependa del mapa
+        Map<Integer, Inscripcion> todas = new HashMap<>();
+        inscripcionService.listar().forEach(i -> todas.put(i.getId(), i));
+        var ids = new ArrayList<>(pedidos.keySet());
+        Collections.sort(ids);
+        var inscripciones = new ArrayList<Inscripcion>(ids.size());
+        var patrones = new ArrayList<DiasYBloques>(ids.size());
+        for (var id : ids) {
+            var inscripcion = todas.get(id);
+            if (inscripcion == null) {
+                throw new NotFoundException(STR."No existe una inscripción con el id: \{id}");
+            }
+            inscripciones.add(inscripcion);
+            patrones.add(pedidos.get(id));
+        }
+
+        // Los espacios se numeran primero las aulas y después los laboratorios, cada grupo por capacidad,
+        // así el BitSet se recorre del espacio más ajustado al más grande y los laboratorios quedan al final
+        var indice = aulaRepository.getIndiceEspacios();
+        var orden = new ArrayList<Integer>(indice.tamanio());
+        for (int i = 0; i < indice.tamanio(); i++) {
+            if (!indice.tiene(i, IndiceEspacios.LABORATORIO)) {
+                orden.add(i);
+            }
+        }
+        for (int i = 0; i < indice.tamanio(); i++) {
+            if (indice.tiene(i, IndiceEspacios.LABORATORIO)) {
+                orden.add(i);
+            }
+        }
+        int[] idsEspacios = orden.stream().mapToInt(i -> indice.ids()[i]).toArray();
+
+        // Armamos el dominio de cada inscripción
+        var pendientes = solicitudRepository.findByEstado(EstadoSolicitud.PENDIENTE);
+        int n = inscripciones.size();
+        var dominios = new BitSet[n];
+        var motivos = new String[n];
+        for (int v = 0; v < n; v++) {
+            dominios[v] = new BitSet(idsEspacios.length);
+            motivos[v] = dominio(inscripciones.get(v), patrones.get(v), fechaInicio, fechaFin, indice, orden,
+                    pendientes, dominios[v]);
+        }
+
+        // Dos inscripciones se restringen entre sí si sus días y bloques se solapan
+        var vecinos = new ArrayList<List<Integer>>(n);
+        for (int v = 0; v < n; v++) {
+            vecinos.add(new ArrayList<>());
+        }
+        for (int v = 0; v < n; v++) {
+            for (int w = v + 1; w < n; w++) {
+                if (patrones.get(v).seSolapa(patrones.get(w)) && dominios[v].intersects(dominios[w])) {
+                    vecinos.get(v).add(w);
+                    vecinos.get(w).add(v);
+                }
+            }
+        }
+
+        // Cada grupo de inscripciones conectadas es un problema independiente
+        long limite = Long.getLong(PROPIEDAD_LIMITE_NODOS, LIMITE_NODOS_POR_DEFECTO);
+        int[] asignacion = new int[n];
+        Arrays.fill(asignacion, Busqueda.SIN_UBICAR);
+        grupos(vecinos).parallelStream()
+                .map(grupo -> new Busqueda(grupo, dominios, vecinos, limite).resolver())
+                .toList()
+                .forEach(resultado -> resultado.forEach((v, espacio) -> asignacion[v] = espacio));
+
+        // Armamos las reservas propuestas y las inscripciones sin ubicar
+        var reservas = new ArrayList<Reserva>();
+        var sinUbicar = new ArrayList<Planificacion.SinUbicar>();
+        for (int v = 0; v < n; v++) {
+            if (asignacion[v] == Busqueda.SIN_UBICAR) {
+                var motivo = motivos[v] != null ? motivos[v]
+                        : "Los espacios que le sirven quedaron ocupados por otras inscripciones en los mismos bloques";
+                sinUbicar.add(new Planificacion.SinUbicar(inscripciones.get(v), motivo));
+            } else {
+                var aula = aulaRepository.findById(idsEspacios[asignacion[v]])
+                        .orElseThrow(() -> new NotFoundException("El espacio asignado ya no existe"));
+                reservas.add(new Reserva(null, fechaInicio, fechaFin, aula, inscripciones.get(v), patrones.get(v)));
+            }
+        }
+        return new Planificacion(reservas, sinUbicar);
+    }
+
+    /**
+     * Método que marca en el dominio los espacios que le sirven a una inscripción
+     * @param inscripcion a ubicar
+     * @param patron días y bloques que pide
+     * @param fechaInicio del cuatrimestre
+     * @param fechaFin del cuatrimestre
+     * @param indice de atributos de los espacios
+     * @param orden posición en el índice de cada espacio numerado
+     * @param pendientes solicitudes de cambio pendientes
+     * @param dominio BitSet donde se marcan los espacios
+     * @return String motivo si no le sirve ningún espacio, null si tiene alguno
+     * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
+     */
+    private String dominio(Inscripcion inscripcion, DiasYBloques patron, LocalDate fechaInicio, LocalDate fechaFin,
+                           IndiceEspacios.Vista indice, List<Integer> orden, List<SolicitudCambioAulaDTO> pendientes,
+                           BitSet dominio) throws JsonNotFoundException {
+        if (patron == null || patron.estaVacio()) {
+            return "No pidió días ni bloques";
+        }
+        int requeridos = inscripcion.getCantidadAlumnos() +
+                (inscripcion.getFechaFinInscripcion().isAfter(LocalDate.now()) ? inscripcion.getMargenAlumnos() : 0);
+        boolean requiereLaboratorio = inscripcion.getAsignatura().isRequiereLaboratorio();
+        var ocupadas = reservaRepository.findAulasOcupadas(fechaInicio, fechaFin, patron);
+
+        boolean hayCapacidad = false;
+        for (int e = 0; e < orden.size(); e++) {
+            int i = orden.get(e);
+            int idAula = indice.ids()[i];
+            if (indice.capacidades()[i] < requeridos
+                    || (requiereLaboratorio && !indice.tiene(i, IndiceEspacios.LABORATORIO))) {
+                continue;
+            }
+            hayCapacidad = true;
+            if (ocupadas.contains(idAula) || pendientes.stream()
+                    .anyMatch(s -> SolicitudCambioAulaRepository.seSolapa(s, idAula, fechaInicio, fechaFin, patron))) {
+                continue;
+            }
+            dominio.set(e);
+        }
+        if (!hayCapacidad) {
+            return requiereLaboratorio ? STR."No hay laboratorios con capacidad para \{requeridos} alumnos"
+                    : STR."No hay espacios con capacidad para \{requeridos} alumnos";
+        }
+        return dominio.isEmpty() ? "Los espacios que le sirven ya están reservados en esos días y bloques" : null;
+    }
+
+    /**
+     * Método que separa las inscripciones en grupos conectados por solapamientos
+     * @param vecinos de cada inscripción
+     * @return List<int[]> inscripciones de cada grupo
+     */
+    private List<int[]> grupos(List<List<Integer>> vecinos) {
+        int n = vecinos.size();
+        var visitada = new boolean[n];
+        var grupos = new ArrayList<int[]>();
+        var pila = new ArrayDeque<Integer>();
+        for (int inicio = 0; inicio < n; inicio++) {
+            if (visitada[inicio]) {
+                continue;
+            }
+            var grupo = new ArrayList<Integer>();
+            visitada[inicio] = true;
+            pila.push(inicio);
+            while (!pila.isEmpty()) {
+                int v = pila.pop();
+                grupo.add(v);
+                for (int w : vecinos.get(v)) {
+                    if (!visitada[w]) {
+                        visitada[w] = true;
+                        pila.push(w);
+                    }
+                }
+            }
+            grupos.add(grupo.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return grupos;
+    }
+
+    /**
+     * Búsqueda con backtracking sobre un grupo de inscripciones
+     * Maximiza la cantidad de inscripciones ubicadas: cada inscripción prueba sus espacios del más ajustado
+     * al más grande y por último quedar sin ubicar. Se elige siempre la inscripción con menos espacios
+     * posibles, y se poda cuando ni ubicando a todas las que quedan se supera la mejor solución
+     */
+    private static class Busqueda {
+        static final int SIN_UBICAR = -1;
+        private static final int LIBRE = -2;
+
+        private final int[] variables;
+        private final BitSet[] dominios;
+        private final int[][] vecinos;
+        private final long limite;
+        private final int[] asignacion;
+        private int[] mejor;
+        private int mejorUbicadas = -1;
+        private long nodos;
+
+        Busqueda(int[] grupo, BitSet[] todos, List<List<Integer>> vecinosGlobales, long limite) {
+            this.variables = grupo;
+            this.limite = limite;
+            int n = grupo.length;
+            // Renumeramos las inscripciones del grupo de 0 a n - 1 y copiamos sus dominios
+            var local = new HashMap<Integer, Integer>();
+            for (int v = 0; v < n; v++) {
+                local.put(grupo[v], v);
+            }
+            dominios = new BitSet[n];
+            vecinos = new int[n][];
+            for (int v = 0; v < n; v++) {
+                dominios[v] = (BitSet) todos[grupo[v]].clone();
+                vecinos[v] = vecinosGlobales.get(grupo[v]).stream().mapToInt(local::get).toArray();
+            }
+            asignacion = new int[n];
+            Arrays.fill(asignacion, LIBRE);
+        }
+
+        /**
+         * Método que resuelve el grupo
+         * @return Map<Integer, Integer> espacio asignado (o SIN_UBICAR) por inscripción
+         */
+        Map<Integer, Integer> resolver() {
+            buscar(0);
+            var resultado = new HashMap<Integer, Integer>();
+            for (int v = 0; v < variables.length; v++) {
+                resultado.put(variables[v], mejor[v]);
+            }
+            return resultado;
+        }
+
+        private void buscar(int ubicadas) {
+            if (terminada()) {
+                return;
+            }
+            nodos++;
+            // Elegimos la inscripción libre con menos espacios posibles y contamos cuántas podrían ubicarse
+            int elegida = -1;
+            int posibles = 0;
+            for (int v = 0; v < asignacion.length; v++) {
+                if (asignacion[v] != LIBRE) {
+                    continue;
+                }
+                int tamanio = dominios[v].cardinality();
+                if (tamanio > 0) {
+                    posibles++;
+                }
+                if (elegida == -1 || tamanio < dominios[elegida].cardinality()) {
+                    elegida = v;
+                }
+            }
+            if (elegida == -1) {
+                if (ubicadas > mejorUbicadas) {
+                    mejorUbicadas = ubicadas;
+                    mejor = asignacion.clone();
+                }
+                return;
+            }
+            if (ubicadas + posibles <= mejorUbicadas) {
+                return;
+            }
+
+            var dominio = dominios[elegida];
+            for (int espacio = dominio.nextSetBit(0); espacio >= 0; espacio = dominio.nextSetBit(espacio + 1)) {
+                asignacion[elegida] = espacio;
+                // Forward checking: el espacio deja de servirles a las inscripciones que se solapan
+                var podadas = new ArrayList<Integer>();
+                for (int w : vecinos[elegida]) {
+                    if (asignacion[w] == LIBRE && dominios[w].get(espacio)) {
+                        dominios[w].clear(espacio);
+                        podadas.add(w);
+                    }
+                }
+                buscar(ubicadas + 1);
+                for (int w : podadas) {
+                    dominios[w].set(espacio);
+                }
+                if (terminada()) {
+                    asignacion[elegida] = LIBRE;
+                    return;
+                }
+            }
+
+            asignacion[elegida] = SIN_UBICAR;
+            buscar(ubicadas);
+            asignacion[elegida] = LIBRE;
+        }
+
+        private boolean terminada() {
+            // Paramos si ya ubicamos a todas o si se terminó el presupuesto (ya hay al menos una solución)
+            return mejorUbicadas == variables.length || (nodos >= limite && mejor != null);
+        }
+    }
+}
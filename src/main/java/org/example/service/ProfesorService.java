@@ -1,17 +1,40 @@
 package org.example.service;
 
 import org.example.exception.BadRequestException;
+import org.example.exception.ConflictException;
 import org.example.exception.JsonNotFoundException;
+import org.example.exception.ModificacionConcurrenteException;
 import org.example.exception.NotFoundException;
 import org.example.model.Profesor;
+import org.example.repository.InscripcionRepository;
 import org.example.repository.ProfesorRepository;
+import org.example.repository.SolicitudCambioAulaRepository;
+import org.example.repository.UsuarioRepository;
 
 import java.util.List;
 
 public class ProfesorService {
-    private final ProfesorRepository repositorio = new ProfesorRepository();
+    private final ProfesorRepository repositorio = ProfesorRepository.getInstancia();
+    private final InscripcionRepository inscripcionRepository = InscripcionRepository.getInstancia();
+    private final UsuarioRepository usuarioRepository = UsuarioRepository.getInstancia();
+    private final SolicitudCambioAulaRepository solicitudRepository = SolicitudCambioAulaRepository.getInstancia();
 
 
+    private ProfesorService() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida del servicio
+     * @return ProfesorService único para toda la aplicación
+     */
+    public static ProfesorService getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    private static class Unica {
+        private static final ProfesorService INSTANCIA = new ProfesorService();
+    }
+
     /**
      * Método para listar todos los profesores
      * @return List<Profesor>
@@ -30,13 +53,12 @@ public class ProfesorService {
      * @throws BadRequestException sí existe un profesor con esa matrícula
      */
     public Profesor guardar(Profesor profesor) throws JsonNotFoundException, BadRequestException {
-        // Verificamos que no existe esa asignatura y si existe lanzamos la excepción
-        var optional = repositorio.findByMatricula(profesor.getMatricula());
-        if (optional.isPresent()){
+        // El repositorio rechaza la matrícula repetida con su índice único, y lo informamos como BadRequest
+        try {
+            repositorio.save(profesor);
+        } catch (ConflictException e) {
             throw new BadRequestException(STR."Ya existe un profesor con la matrícula: \{profesor.getMatricula()}");
         }
-
-        repositorio.save(profesor);
         return profesor;
     }
 
@@ -45,10 +67,25 @@ public class ProfesorService {
      * @param id del profesor que queremos eliminar
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
      * @throws NotFoundException si no se encuentra un profesor con ese ID
+     * @throws BadRequestException si el profesor tiene inscripciones, usuarios o solicitudes
      */
-    public void eliminar(Integer id) throws JsonNotFoundException, NotFoundException {
+    public void eliminar(Integer id) throws JsonNotFoundException, NotFoundException, BadRequestException {
         // Verificamos que existe un profesor con ese ID y si no lanzamos la excepción
         validarProfesorExistente(id);
+
+        // Verificamos en los índices inversos que no tenga inscripciones, usuarios ni solicitudes
+        var inscripciones = inscripcionRepository.findByProfesor(id);
+        if (!inscripciones.isEmpty()) {
+            throw new BadRequestException(STR."No se puede eliminar el profesor \{id}: tiene \{inscripciones.size()} inscripciones");
+        }
+        var usuarios = usuarioRepository.findByProfesor(id);
+        if (!usuarios.isEmpty()) {
+            throw new BadRequestException(STR."No se puede eliminar el profesor \{id}: tiene \{usuarios.size()} usuarios");
+        }
+        var solicitudes = solicitudRepository.findByProfesor(id);
+        if (!solicitudes.isEmpty()) {
+            throw new BadRequestException(STR."No se puede eliminar el profesor \{id}: tiene \{solicitudes.size()} solicitudes");
+        }
         repositorio.deleteById(id);
     }
 
@@ -69,10 +106,18 @@ public class ProfesorService {
      * @param profesor modificado
      * @throws JsonNotFoundException si no encuentra el archivo JSON
      * @throws NotFoundException si no encuentra al profesor
+     * @throws BadRequestException si otro profesor ya tiene esa matrícula
      */
-    public void modificar(Profesor profesor) throws JsonNotFoundException, NotFoundException {
+    public void modificar(Profesor profesor) throws JsonNotFoundException, NotFoundException, BadRequestException {
         //Verificamos que el profesor con ese ID exista y lo modificamos
-        repositorio.modify(validarProfesorExistente(profesor.getId()));
+        validarProfesorExistente(profesor.getId());
+        try {
+            repositorio.modify(profesor);
+        } catch (ModificacionConcurrenteException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (ConflictException e) {
+            throw new BadRequestException(STR."Ya existe un profesor con la matrícula: \{profesor.getMatricula()}");
+        }
     }
 
 
@@ -7,14 +7,16 @@ import org.example.exception.ConflictException;
 import org.example.exception.JsonNotFoundException;
 import org.example.exception.NotFoundException;
 import org.example.model.*;
+import org.example.model.dto.InscripcionDTO;
 import org.example.model.dto.ReservaDTO;
+import org.example.model.dto.SolicitudCambioAulaDTO;
 import org.example.repository.*;
 import org.example.utils.Mapper;
 import org.example.utils.Utils;
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 
@@ -23,30 +25,76 @@ import java.util.stream.Collectors;
  * y aplicar la lógica de negocio para manipular inscripciones
  */
 public class ReservaService{
-    private final ReservaRepository repositorio = new ReservaRepository();
-    private final AulaRepository aulaRepository = new AulaRepository();
-    private final AulaService aulaService = new AulaService();
-    private final InscripcionService inscripcionService = new InscripcionService();
-    private final ProfesorRepository profesorRepository = new ProfesorRepository();
-    private final AsignaturaRepository asignaturaRepository = new AsignaturaRepository();
-    private final SolicitudCambioAulaRepository solicitudRepository = new SolicitudCambioAulaRepository();
+    private final ReservaRepository repositorio = ReservaRepository.getInstancia();
+    private final AulaRepository aulaRepository = AulaRepository.getInstancia();
+    private final AulaService aulaService = AulaService.getInstancia();
+    private final InscripcionService inscripcionService = InscripcionService.getInstancia();
+    private final ProfesorRepository profesorRepository = ProfesorRepository.getInstancia();
+    private final AsignaturaRepository asignaturaRepository = AsignaturaRepository.getInstancia();
+    private final SolicitudCambioAulaRepository solicitudRepository = SolicitudCambioAulaRepository.getInstancia();
+    private final InscripcionRepository inscripcionRepository = InscripcionRepository.getInstancia();
 
 
+    private ReservaService() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida del servicio
+     * @return ReservaService único para toda la aplicación
+     */
+    public static ReservaService getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    private static class Unica {
+        private static final ReservaService INSTANCIA = new ReservaService();
+    }
+
     /**
      * Método para listar todas las reservas
      * @return List<Reserva>
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
      */
     public List<Reserva> listar() throws JsonNotFoundException, NotFoundException {
+        //Obtenemos todas las reservas del JSON y las armamos
+        return hidratar(repositorio.getAll(), inscripcion -> true);
+    }
+
+    /**
+     * Método para armar las reservas de una lista de DTO
+     * Lee aulas e inscripciones (con sus asignaturas y profesores) una sola vez
+     * y los cruza en memoria por ID, en lugar de buscarlos para cada reserva
+     * @param dtoList reservas a armar
+     * @param filtro que tiene que cumplir la inscripción de la reserva para incluirla
+     * @return List<Reserva> las reservas que pasan el filtro, en el mismo orden que los DTO
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     * @throws NotFoundException si una reserva tiene un aula o una inscripción que no existe
+     */
+    private List<Reserva> hidratar(List<ReservaDTO> dtoList, Predicate<Inscripcion> filtro)
+            throws JsonNotFoundException, NotFoundException {
         List<Reserva> reservas = new ArrayList<>();
-        //Obtenemos todas las reservas del JSON
-        var dtoList = repositorio.getAll();
-        //Recorremos
+        if (dtoList.isEmpty()) {
+            return reservas;
+        }
+        Map<Integer, Inscripcion> inscripciones = new HashMap<>();
+        inscripcionService.listar().forEach(i -> inscripciones.put(i.getId(), i));
+        Map<Integer, Aula> aulas = new HashMap<>();
+        aulaRepository.getAll().forEach(a -> aulas.put(a.getId(), a));
+
         for (ReservaDTO dto : dtoList){
-            // Validamos que el aula exista
-            var aula = validarAulaExistenteById(dto.idAula());
             // Validamos que la inscripción exista
-            var inscripcion = validarInscripcionExistente(dto.idInscripcion());
+            var inscripcion = inscripciones.get(dto.idInscripcion());
+            if (inscripcion == null) {
+                throw new NotFoundException(STR."No existe una inscripción con el id: \{dto.idInscripcion()}");
+            }
+            if (!filtro.test(inscripcion)) {
+                continue;
+            }
+            // Validamos que el aula exista
+            var aula = aulas.get(dto.idAula());
+            if (aula == null) {
+                throw new NotFoundException(STR."No existe un aula con el id: \{dto.idAula()}");
+            }
             // Mapeamos y guardamos en reservas
             reservas.add(Mapper.toReserva(dto, aula, inscripcion));
         }
@@ -62,30 +110,84 @@ public class ReservaService{
      * @throws BadRequestException si existe un problema con los datos de reserva
      */
     public Reserva guardar(Reserva reserva) throws JsonNotFoundException, BadRequestException, ConflictException, NotFoundException {
-        var idAula = reserva.getAula().getId();
-        var idInscripcion = reserva.getInscripcion().getId();
+        // Validamos y guardamos con el aula tomada: otra reserva del mismo aula no puede validarse en el medio
+        try (var tomada = BloqueoPorAula.tomar(idAula(reserva))) {
+            validarReserva(reserva, null);
 
-        //Validamos y obtenemos la inscripción de la reserva
-        var inscripcion = validarInscripcionExistente(idInscripcion);
-
-        //Validamos y obtenemos el aula de la reserva
-        var aula = validarAulaExistenteById(idAula);
-
-        // Validamos si el aula está disponible en el rango y bloque horario especificado
-        validarDisponibilidadAula(reserva);
+            // Guardamos la reserva si pasa todas las validaciones
+            repositorio.save(Mapper.reservaToDTO(reserva));
+            return reserva;
+        }
+    }
 
-        // Validamos la capacidad del aula y la cantidad de alumnos en la inscripción
-        validarCapacidadAula(aula,inscripcion);
+    /**
+     * Método para validar una reserva y preparar su alta en una unidad de trabajo
+     * La reserva se guarda recién cuando se confirma la unidad, junto con el resto de sus cambios
+     * @param reserva que queremos guardar
+     * @param unidad donde se prepara el alta
+     * @return Reserva que se va a guardar
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     * @throws BadRequestException si existe un problema con los datos de reserva
+     */
+    public Reserva guardar(Reserva reserva, UnidadDeTrabajo unidad) throws JsonNotFoundException, BadRequestException, ConflictException, NotFoundException {
+        validarReserva(reserva, unidad);
 
-        // Validación de que el aula sea un laboratorio si la asignatura lo requiere
-        validarRequiereLaboratorio(aula,inscripcion.getAsignatura().getId());
+        repositorio.save(Mapper.reservaToDTO(reserva), unidad);
+        return reserva;
+    }
 
-        // Validamos si existen solicitudes de cambio pendientes que generen conflicto con la reserva
-        validarSolicitudesPendientes(reserva);
+    /**
+     * Método para guardar muchas reservas juntas, por ejemplo al cargar un cuatrimestre
+     * Aplica las mismas validaciones que guardar, pero lee aulas, inscripciones, asignaturas y
+     * solicitudes una sola vez y valida los solapamientos contra las reservas existentes y contra
+     * las reservas del mismo lote que ya se aceptaron
+     * Las reservas aceptadas se guardan todas juntas con una sola escritura
+     * @param reservas que queremos guardar
+     * @return List<ResultadoLote<Reserva>> un resultado por reserva, en el mismo orden, con el motivo si se rechazó
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     * @throws NotFoundException si los datos guardados hacen referencia a entidades que no existen
+     */
+    public List<ResultadoLote<Reserva>> guardarLote(List<Reserva> reservas) throws JsonNotFoundException, NotFoundException {
+        // Tomamos todas las aulas del lote antes de leer la ocupación, así nadie reserva en ellas mientras validamos
+        var idsAulas = reservas.stream().map(ReservaService::idAula).toList();
+        try (var tomadas = BloqueoPorAula.tomar(idsAulas)) {
+            // Cargamos los datos de referencia una sola vez
+            Map<Integer, Aula> aulas = new HashMap<>();
+            aulaRepository.getAll().forEach(a -> aulas.put(a.getId(), a));
+            Map<Integer, Inscripcion> inscripciones = new HashMap<>();
+            inscripcionService.listar().forEach(i -> inscripciones.put(i.getId(), i));
+            Map<Integer, Asignatura> asignaturas = new HashMap<>();
+            asignaturaRepository.getAll().forEach(a -> asignaturas.put(a.getId(), a));
+            var solicitudesPendientes = solicitudRepository.findByEstado(EstadoSolicitud.PENDIENTE);
+
+            // Agenda en memoria con las reservas guardadas, a la que se suman las del lote que se van aceptando
+            var agenda = new IndiceOcupacion();
+            agenda.reconstruir(repositorio.getAll());
+            List<ResultadoLote<Reserva>> resultados = new ArrayList<>(reservas.size());
+            List<ReservaDTO> aceptadas = new ArrayList<>();
+            List<Reserva> reservasAceptadas = new ArrayList<>();
+
+            for (int i = 0; i < reservas.size(); i++) {
+                var reserva = reservas.get(i);
+                try {
+                    validarEnLote(reserva, aulas, inscripciones, asignaturas, solicitudesPendientes, agenda);
+                    var dto = Mapper.reservaToDTO(reserva);
+                    agenda.agregar(dto);
+                    aceptadas.add(dto);
+                    reservasAceptadas.add(reserva);
+                    resultados.add(ResultadoLote.aceptado(i, reserva));
+                } catch (NotFoundException | BadRequestException | ConflictException e) {
+                    resultados.add(ResultadoLote.rechazado(i, reserva, e.getMessage()));
+                }
+            }
 
-        // Guardamos la reserva si pasa todas las validaciones
-        repositorio.save(Mapper.reservaToDTO(reserva));
-        return reserva;
+            // Guardamos las aceptadas juntas y les pasamos el ID que les tocó
+            var guardadas = repositorio.saveAll(aceptadas);
+            for (int i = 0; i < guardadas.size(); i++) {
+                reservasAceptadas.get(i).setId(guardadas.get(i).id());
+            }
+            return resultados;
+        }
     }
 
 
@@ -94,11 +196,21 @@ public class ReservaService{
      * @param id de la reserva que queremos eliminar
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
      * @throws NotFoundException si no se encuentra una reserva con ese ID
+     * @throws BadRequestException si la reserva tiene solicitudes de cambio pendientes
      */
-    public void eliminar(Integer id) throws JsonNotFoundException, NotFoundException {
+    public void eliminar(Integer id) throws JsonNotFoundException, NotFoundException, BadRequestException {
         //Verificamos que existe una reserva con ese ID, si no lanzamos excepción
-        validarReservaExistente(id);
-        repositorio.deleteById(id);
+        var dto = validarReservaExistente(id);
+
+        // Con el aula tomada no se puede aprobar en el medio una solicitud de cambio de esta reserva
+        try (var tomada = BloqueoPorAula.tomar(dto.idAula())) {
+            //Verificamos en el índice inverso que no tenga solicitudes de cambio pendientes
+            var pendientes = solicitudRepository.findPendientesByReserva(id);
+            if (!pendientes.isEmpty()) {
+                throw new BadRequestException(STR."No se puede eliminar la reserva \{id}: tiene \{pendientes.size()} solicitudes de cambio pendientes");
+            }
+            repositorio.deleteById(id);
+        }
     }
 
     /**
@@ -133,6 +245,46 @@ public class ReservaService{
         repositorio.findById(reserva.getId())
                 .orElseThrow(()-> new NotFoundException(STR."No existe una reserva con el id: \{reserva.getId()}"));
 
+        // Solo puede haber conflictos en el aula nueva, así que es la única que tomamos
+        try (var tomada = BloqueoPorAula.tomar(idAula(reserva))) {
+            validarReserva(reserva, null);
+
+            // Modificamos la reserva si pasa todas las validaciones
+            repositorio.modify(Mapper.reservaToDTO(reserva));
+        }
+    }
+
+    /**
+     * Método para validar una reserva y preparar su modificación en una unidad de trabajo
+     * @param reserva que se va a modificar
+     * @param unidad donde se prepara la modificación
+     * @throws JsonNotFoundException si ocurre un error con el archivo JSON
+     * @throws NotFoundException Si no encuentra reserva o aula o inscripción
+     */
+    public void modificar(Reserva reserva, UnidadDeTrabajo unidad) throws JsonNotFoundException, NotFoundException, BadRequestException, ConflictException {
+        // Validamos que existe la reserva que se quiere modificar
+        repositorio.findById(reserva.getId())
+                .orElseThrow(()-> new NotFoundException(STR."No existe una reserva con el id: \{reserva.getId()}"));
+
+        validarReserva(reserva, unidad);
+
+        repositorio.modify(Mapper.reservaToDTO(reserva), unidad);
+    }
+
+    private static Integer idAula(Reserva reserva) {
+        return reserva.getAula() == null ? null : reserva.getAula().getId();
+    }
+
+    /**
+     * Método con las validaciones comunes para guardar o modificar una reserva
+     * @param reserva a validar
+     * @param unidad de trabajo con cambios sin confirmar que hay que tener en cuenta, o null
+     * @throws JsonNotFoundException si ocurre un error con el archivo JSON
+     * @throws NotFoundException si no encuentra el aula o la inscripción
+     * @throws BadRequestException si el aula no está disponible, no tiene capacidad o no es un laboratorio
+     * @throws ConflictException si hay solicitudes pendientes que se solapan con la reserva
+     */
+    private void validarReserva(Reserva reserva, UnidadDeTrabajo unidad) throws JsonNotFoundException, NotFoundException, BadRequestException, ConflictException {
         //Validamos y obtenemos la inscripción de la reserva
         var inscripcion = validarInscripcionExistente(reserva.getInscripcion().getId());
 
@@ -149,10 +301,7 @@ public class ReservaService{
         validarRequiereLaboratorio(aula,inscripcion.getAsignatura().getId());
 
         // Validamos si existen solicitudes de cambio pendientes que generen conflicto con la reserva
-        validarSolicitudesPendientes(reserva);
-
-        // Modificamos la reserva si pasa todas las validaciones
-        repositorio.modify(Mapper.reservaToDTO(reserva));
+        validarSolicitudesPendientes(reserva, unidad);
     }
 
 
@@ -164,27 +313,27 @@ public class ReservaService{
      * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
      */
     public List<Reserva> listarPorInscripcion(int idInscripcion) throws NotFoundException, JsonNotFoundException {
-        List<Reserva> reservas = new ArrayList<>();
-        //Obtenemos todas las reservas del JSON que tengan ese idInscripción
-        var dtoList = repositorio.getAll()
-                .stream()
-                .filter(r -> r.idInscripcion() == idInscripcion)
-                .toList();
+        //Obtenemos del índice las reservas que tengan ese idInscripción
+        var dtoList = repositorio.findByInscripcion(idInscripcion);
 
         //Si no hay reservas con ese idInscripción lanzamos excepción
         if (dtoList.isEmpty()) {
             throw new NotFoundException(STR."No se encontraron reservas para la inscripción con ID: \{idInscripcion}");
         }
 
-        for (ReservaDTO dto : dtoList){
-            // Validamos que el aula exista
-            var aula = validarAulaExistenteById(dto.idAula());
-            // Validamos que la inscripción exista
-            var inscripcion = validarInscripcionExistente(dto.idInscripcion());
-            // Mapeamos y guardamos en reservas
-            reservas.add(Mapper.toReserva(dto, aula, inscripcion));
-        }
-        return reservas;
+        return hidratar(dtoList, inscripcion -> true);
+    }
+
+    /**
+     * Método para listar las reservas de un aula
+     * @param idAula del aula
+     * @return List<Reserva> del aula ordenadas por ID
+     * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
+     * @throws NotFoundException si no existe el aula
+     */
+    public List<Reserva> listarPorAula(Integer idAula) throws JsonNotFoundException, NotFoundException {
+        validarAulaExistenteById(idAula);
+        return hidratar(repositorio.findByAula(idAula), inscripcion -> true);
     }
 
     // Validaciones
@@ -265,48 +414,125 @@ public class ReservaService{
         }
     }
 
+    /**
+     * Método que aplica a una reserva del lote las validaciones de guardar, con los datos ya cargados
+     * También lo usa la revisión en lote de solicitudes de cambio
+     * @param reserva que se valida
+     * @param aulas por ID
+     * @param inscripciones por ID
+     * @param asignaturas por ID
+     * @param solicitudesPendientes solicitudes pendientes con las que no se puede solapar
+     * @param agenda ocupación en memoria: las reservas guardadas más los cambios del lote ya aceptados
+     * @throws NotFoundException si no existe el aula, la inscripción o la asignatura
+     * @throws BadRequestException si el aula no está disponible, no alcanza o no es laboratorio
+     * @throws ConflictException si hay solicitudes pendientes con los mismos parámetros
+     * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
+     */
+    void validarEnLote(Reserva reserva, Map<Integer, Aula> aulas, Map<Integer, Inscripcion> inscripciones,
+                       Map<Integer, Asignatura> asignaturas, List<SolicitudCambioAulaDTO> solicitudesPendientes,
+                       IndiceOcupacion agenda)
+            throws NotFoundException, BadRequestException, ConflictException, JsonNotFoundException {
+        if (reserva.getAula() == null || reserva.getInscripcion() == null || reserva.getFechaInicio() == null
+                || reserva.getFechaFin() == null || reserva.getDiasYBloques() == null) {
+            throw new BadRequestException("La reserva no tiene todos sus datos.");
+        }
+        var idAula = reserva.getAula().getId();
+        var idInscripcion = reserva.getInscripcion().getId();
+
+        var inscripcion = inscripciones.get(idInscripcion);
+        if (inscripcion == null) {
+            throw new NotFoundException(STR."No existe una inscripción con el id: \{idInscripcion}");
+        }
+        var aula = aulas.get(idAula);
+        if (aula == null) {
+            throw new NotFoundException(STR."No existe un aula con el id: \{idAula}");
+        }
+
+        // El aula tiene que estar libre en la agenda, que ya tiene las reservas guardadas y las del lote
+        if (agenda.estaOcupada(idAula, reserva.getFechaInicio(), reserva.getFechaFin(), reserva.getDiasYBloques())) {
+            throw new BadRequestException(STR."El aula \{idAula} no está disponible.");
+        }
+
+        validarCapacidadAula(aula, inscripcion);
+
+        var idAsignatura = inscripcion.getAsignatura().getId();
+        var asignatura = asignaturas.get(idAsignatura);
+        if (asignatura == null) {
+            throw new NotFoundException(STR."No existe una asignatura con el id: \{idAsignatura}");
+        }
+        validarRequiereLaboratorio(aula, asignatura);
+
+        var conflictos = solicitudesPendientes.stream()
+                .filter(s -> SolicitudCambioAulaRepository.seSolapa(s, idAula, reserva.getFechaInicio(),
+                        reserva.getFechaFin(), reserva.getDiasYBloques()))
+                .toList();
+        if (!conflictos.isEmpty()) {
+            throw conflictoConSolicitudes(reserva, conflictos);
+        }
+    }
+
     /**
      * Método para validar las solicitudes pendientes
      * @param reserva que contiene la información de la reserva
-     * @throws ConflictException si existe alguna solicitud pendiente con los mismos parámetros que la reserva
+     * @param unidad de trabajo con cambios sin confirmar que hay que tener en cuenta, o null
+     * @throws ConflictException si existe alguna solicitud pendiente para el aula que se solapa con la reserva
      * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
      */
-    private void validarSolicitudesPendientes(Reserva reserva) throws ConflictException, JsonNotFoundException {
-        var solicitudesPendientes = solicitudRepository.find(reserva.getAula().getId(),
-                reserva.getFechaInicio(),
-                reserva.getFechaFin(),
-                reserva.getDiasYBloques(),
-                EstadoSolicitud.PENDIENTE);
+    private void validarSolicitudesPendientes(Reserva reserva, UnidadDeTrabajo unidad) throws ConflictException, JsonNotFoundException {
+        var solicitudesPendientes = unidad == null
+                ? solicitudRepository.find(reserva.getAula().getId(), reserva.getFechaInicio(),
+                        reserva.getFechaFin(), reserva.getDiasYBloques(), EstadoSolicitud.PENDIENTE)
+                : solicitudRepository.find(reserva.getAula().getId(), reserva.getFechaInicio(),
+                        reserva.getFechaFin(), reserva.getDiasYBloques(), EstadoSolicitud.PENDIENTE, unidad);
 
         if (!solicitudesPendientes.isEmpty()) {
-            // Creamos un StringBuilder para armar el mensaje de conflicto
-            StringBuilder mensajeConflicto = new StringBuilder();
-            mensajeConflicto.append(STR."Hay solicitudes pendientes en el Aula \{reserva.getAula().getNumero()}.\n");
-
-            for (var solicitud : solicitudesPendientes) {
-                // Obtenemos los días y bloques horarios de la solicitud pendiente
-                Map<DayOfWeek, Set<BloqueHorario>> diasYBloquesSolicitud = solicitud.diasYBloques();
-
-                mensajeConflicto.append("Solicitud ID: ").append(solicitud.id())
-                        .append(" - Días y bloques en conflicto:\n");
-
-                // Iteramos sobre los días y bloques de la solicitud para mostrar los conflictos
-                diasYBloquesSolicitud.forEach((dia, bloques) -> {
-                    String bloquesStr = bloques.stream()
-                            .map(BloqueHorario::name)
-                            .collect(Collectors.joining(", "));
-
-                    mensajeConflicto.append("  Día: ").append(Utils.obtenerDiasEnEspaniol(Set.of(dia)))
-                            .append(" - Bloques: ").append(bloquesStr).append("\n");
-                });
-            }
+            throw conflictoConSolicitudes(reserva, solicitudesPendientes);
+        }
+    }
 
-            throw new ConflictException(mensajeConflicto.toString());
+    /**
+     * Método que arma la excepción con el detalle de las solicitudes pendientes en conflicto
+     * @param reserva que genera el conflicto
+     * @param solicitudesPendientes en conflicto con la reserva
+     * @return ConflictException con los días y bloques de cada solicitud
+     */
+    private ConflictException conflictoConSolicitudes(Reserva reserva, List<SolicitudCambioAulaDTO> solicitudesPendientes) {
+        // Creamos un StringBuilder para armar el mensaje de conflicto
+        StringBuilder mensajeConflicto = new StringBuilder();
+        mensajeConflicto.append(STR."Hay solicitudes pendientes en el Aula \{reserva.getAula().getNumero()}.\n");
+
+        for (var solicitud : solicitudesPendientes) {
+            // Obtenemos los días y bloques horarios de la solicitud pendiente
+            DiasYBloques diasYBloquesSolicitud = solicitud.diasYBloques();
+
+            mensajeConflicto.append("Solicitud ID: ").append(solicitud.id())
+                    .append(" - Días y bloques en conflicto:\n");
+
+            // Iteramos sobre los días y bloques de la solicitud para mostrar los conflictos
+            diasYBloquesSolicitud.aMapa().forEach((dia, bloques) -> {
+                String bloquesStr = bloques.stream()
+                        .map(BloqueHorario::name)
+                        .collect(Collectors.joining(", "));
+
+                mensajeConflicto.append("  Día: ").append(Utils.obtenerDiasEnEspaniol(Set.of(dia)))
+                        .append(" - Bloques: ").append(bloquesStr).append("\n");
+            });
         }
+
+        return new ConflictException(mensajeConflicto.toString());
     }
 
     private void validarRequiereLaboratorio(Aula aula,Integer idAsignatura) throws JsonNotFoundException, NotFoundException, BadRequestException {
-        var asignatura = validarAsignaturaExistente(idAsignatura);
+        validarRequiereLaboratorio(aula, validarAsignaturaExistente(idAsignatura));
+    }
+
+    /**
+     * Método para validar que el aula sea un laboratorio si la asignatura, ya leída, lo requiere
+     * @param aula donde se quiere reservar
+     * @param asignatura de la inscripción
+     * @throws BadRequestException si la asignatura requiere laboratorio y el aula no lo es
+     */
+    private void validarRequiereLaboratorio(Aula aula, Asignatura asignatura) throws BadRequestException {
         if (asignatura.isRequiereLaboratorio() && !(aula instanceof Laboratorio)){
             throw new BadRequestException(STR."El aula \{aula.getNumero()} no es un laboratorio, no sirve para \{asignatura.getNombre()}");
         }
@@ -328,9 +554,8 @@ public class ReservaService{
             throw new NotFoundException(STR."El profesor con el id: \{idProfe} no existe");
         }
 
-        return listar().stream()
-                .filter(r -> r.getInscripcion().getProfesor().getId() == idProfe)
-                .collect(Collectors.toList());
+        // Vamos por las inscripciones del profesor y de ahí a sus reservas, sin recorrer todas
+        return hidratar(reservasDe(inscripcionRepository.findByProfesor(idProfe)), inscripcion -> true);
     }
 
 
@@ -347,9 +572,7 @@ public class ReservaService{
             throw new NotFoundException(STR."La comisión \{comision} no existe");
         }
 
-        return listar().stream()
-                .filter(r -> r.getInscripcion().getComision().equals(comision))
-                .collect(Collectors.toList());
+        return hidratar(repositorio.getAll(), i -> i.getComision().equals(comision));
     }
 
     /**
@@ -363,9 +586,22 @@ public class ReservaService{
         throws JsonNotFoundException, NotFoundException {
         validarAsignaturaExistente(idAsignatura);
 
-        return listar().stream()
-                .filter(r -> r.getInscripcion().getAsignatura().getId().equals(idAsignatura))
-                .collect(Collectors.toList());
+        return hidratar(reservasDe(inscripcionRepository.findByAsignatura(idAsignatura)), inscripcion -> true);
+    }
+
+    /**
+     * Método que junta las reservas de varias inscripciones usando el índice por inscripción
+     * @param inscripciones de las que se quieren las reservas
+     * @return List<ReservaDTO> ordenada por ID, como la devuelve getAll()
+     * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
+     */
+    private List<ReservaDTO> reservasDe(List<InscripcionDTO> inscripciones) throws JsonNotFoundException {
+        List<ReservaDTO> reservas = new ArrayList<>();
+        for (var inscripcion : inscripciones) {
+            reservas.addAll(repositorio.findByInscripcion(inscripcion.id()));
+        }
+        reservas.sort(Comparator.comparing(ReservaDTO::id));
+        return reservas;
     }
 
 }
@@ -1,10 +1,13 @@
 package org.example.service;
 
 import org.example.exception.BadRequestException;
+import org.example.exception.ConflictException;
 import org.example.exception.JsonNotFoundException;
+import org.example.exception.ModificacionConcurrenteException;
 import org.example.exception.NotFoundException;
 import org.example.model.Rol;
 import org.example.repository.RolRepository;
+import org.example.security.ContextoSesion;
 
 import java.util.List;
 
@@ -13,7 +16,22 @@ import java.util.List;
  * y aplicar la lógica de negocio para manipular roles
  */
 public class RolService{
-    private final RolRepository repositorio = new RolRepository();
+    private final RolRepository repositorio = RolRepository.getInstancia();
+
+    private RolService() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida del servicio
+     * @return RolService único para toda la aplicación
+     */
+    public static RolService getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    private static class Unica {
+        private static final RolService INSTANCIA = new RolService();
+    }
 
     /**
      * Método para listar todos los roles
@@ -33,13 +51,12 @@ public class RolService{
      * @throws BadRequestException si existe un rol con ese nombre
      */
     public Rol guardar(Rol rol) throws JsonNotFoundException, BadRequestException {
-        // Verificamos que no existe ese rol y si existe lanzamos la excepción
-        var optional = repositorio.findByNombre(rol.getNombre());
-        if (optional.isPresent()){
+        // El repositorio rechaza el nombre repetido con su índice único, y lo informamos como BadRequest
+        try {
+            repositorio.save(rol);
+        } catch (ConflictException e) {
             throw new BadRequestException(STR."Ya existe un rol: \{rol.getNombre()}");
         }
-
-        repositorio.save(rol);
         return rol;
     }
 
@@ -74,13 +91,23 @@ public class RolService{
      * @param rol modificado
      * @throws JsonNotFoundException si no encuentra el archivo JSON
      * @throws NotFoundException si no encuentra el rol
+     * @throws BadRequestException si otro rol ya tiene ese nombre
      */
-    public void modificar(Rol rol) throws JsonNotFoundException, NotFoundException {
+    public void modificar(Rol rol) throws JsonNotFoundException, NotFoundException, BadRequestException {
         //Verificamos que el rol con ese ID exista
         validarRolExistente(rol.getId());
 
-        //Lo modificamos
-        repositorio.modify(rol);
+        //Lo modificamos, si el nombre no lo usa otro rol
+        try {
+            repositorio.modify(rol);
+        } catch (ModificacionConcurrenteException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (ConflictException e) {
+            throw new BadRequestException(STR."Ya existe un rol: \{rol.getNombre()}");
+        }
+
+        //Las sesiones abiertas con este rol pasan a usar los permisos nuevos
+        ContextoSesion.invalidarRol(rol);
     }
 
 
@@ -5,33 +5,84 @@ import org.example.enums.TipoSolicitud;
 import org.example.exception.BadRequestException;
 import org.example.exception.ConflictException;
 import org.example.exception.JsonNotFoundException;
+import org.example.exception.ModificacionConcurrenteException;
 import org.example.exception.NotFoundException;
 import org.example.model.*;
+import org.example.model.dto.ReservaDTO;
 import org.example.model.dto.SolicitudCambioAulaDTO;
+import org.example.repository.AsignaturaRepository;
 import org.example.repository.AulaRepository;
+import org.example.repository.IndiceOcupacion;
 import org.example.repository.ProfesorRepository;
+import org.example.repository.ReservaRepository;
 import org.example.repository.SolicitudCambioAulaRepository;
+import org.example.repository.UnidadDeTrabajo;
 import org.example.utils.Mapper;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 public class SolicitudCambioAulaService{
-    private final SolicitudCambioAulaRepository repositorio = new SolicitudCambioAulaRepository();
-    private final AulaRepository aulaRepository = new AulaRepository();
-    private final AulaService aulaService = new AulaService();
-    private final ReservaService reservaService = new ReservaService();
-    private final ProfesorRepository profesorRepository = new ProfesorRepository();
+    private final SolicitudCambioAulaRepository repositorio = SolicitudCambioAulaRepository.getInstancia();
+    private final AulaRepository aulaRepository = AulaRepository.getInstancia();
+    private final AulaService aulaService = AulaService.getInstancia();
+    private final ReservaService reservaService = ReservaService.getInstancia();
+    private final ProfesorRepository profesorRepository = ProfesorRepository.getInstancia();
+    private final ReservaRepository reservaRepository = ReservaRepository.getInstancia();
+    private final AsignaturaRepository asignaturaRepository = AsignaturaRepository.getInstancia();
+    private final InscripcionService inscripcionService = InscripcionService.getInstancia();
+
+    private SolicitudCambioAulaService() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida del servicio
+     * @return SolicitudCambioAulaService único para toda la aplicación
+     */
+    public static SolicitudCambioAulaService getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    private static class Unica {
+        private static final SolicitudCambioAulaService INSTANCIA = new SolicitudCambioAulaService();
+    }
+
+    /**
+     * Método que mueve al archivo las solicitudes resueltas que quedaron fuera de la ventana de recientes
+     * Se llama una vez al iniciar la aplicación, no en cada aprobación o rechazo
+     * @return int cantidad de solicitudes archivadas
+     * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
+     */
+    public int archivarResueltas() throws JsonNotFoundException {
+        return repositorio.archivarResueltas();
+    }
+
     /**
      * Método para listar todas las solicitudes
      * @return List<SolicitudCambioAula>
      * @throws JsonNotFoundException si no se encuentra el archivo JSON
      */
     public List<SolicitudCambioAula> listar() throws JsonNotFoundException, NotFoundException {
+        return hidratar(repositorio.getAll());
+    }
+
+    /**
+     * Método para armar las solicitudes a partir de sus DTO
+     * @param dtoList DTO de las solicitudes
+     * @return List<SolicitudCambioAula> con su aula, profesor y reserva original
+     * @throws JsonNotFoundException si no se encuentra el archivo JSON
+     * @throws NotFoundException si no encuentra los datos internos de solicitud
+     */
+    private List<SolicitudCambioAula> hidratar(List<SolicitudCambioAulaDTO> dtoList) throws JsonNotFoundException, NotFoundException {
         List<SolicitudCambioAula> solicitudes = new ArrayList<>();
-        var dtoList = repositorio.getAll();
         for (SolicitudCambioAulaDTO dto : dtoList){
             // Validamos que el aula exista
             var aula = validarAulaExistente(dto.idAula());
@@ -137,7 +188,11 @@ public class SolicitudCambioAulaService{
         // Validamos que existe la reserva, si no lanzamos excepción
         reservaService.obtener(dto.idReserva());
 
-        repositorio.modify(Mapper.solicitudToDTO(solicitud));
+        try {
+            repositorio.modify(Mapper.solicitudToDTO(solicitud));
+        } catch (ModificacionConcurrenteException e) {
+            throw new BadRequestException(e.getMessage());
+        }
     }
 
     /**
@@ -150,34 +205,56 @@ public class SolicitudCambioAulaService{
      */
     public void aprobarSolicitud(Integer id,String comentario) throws NotFoundException, JsonNotFoundException, BadRequestException, ConflictException {
         // Validamos que existe una solicitud con ese ID
-        var dto = validarSolicitudExistente(id);
-
-        //Validamos que la solicitud esté pendiente
-        if (!dto.estadoSolicitud().equals(EstadoSolicitud.PENDIENTE)){
-            throw new BadRequestException(STR."La solicitud \{id} no esta pendiente");
-        }
-
-        var reserva = reservaService.obtener(dto.idReserva());
-        var aula = aulaService.obtener(dto.idAula());
-
-        //Creamos un DTO con la solicitud aprobada
-        SolicitudCambioAulaDTO nuevoDTO = new SolicitudCambioAulaDTO(dto.id(),dto.idProfesor(),dto.idReserva(),
-                dto.idAula(),EstadoSolicitud.APROBADA, dto.tipoSolicitud(),dto.fechaInicio(),dto.fechaFin(),
-                dto.diasYBloques(),(comentario.isBlank()) ? "Aprobada" : comentario,
-                dto.comentarioProfesor(), dto.fechaHoraSolicitud());
-
-        //La modificamos
-        repositorio.modify(nuevoDTO);
-
-        // Si la solicitud es temporal creamos una nueva reserva
-        if (dto.tipoSolicitud().equals(TipoSolicitud.TEMPORAL)){
-            reservaService.guardar(new Reserva(null,dto.fechaInicio(),dto.fechaFin(),aula,
-                    reserva.getInscripcion(),dto.diasYBloques()));
-
-            //Si no la reserva es Permanente y modificamos la original
-        }else if(dto.tipoSolicitud().equals(TipoSolicitud.PERMANENTE)){
-            reservaService.modificar(new Reserva(reserva.getId(),dto.fechaInicio(),dto.fechaFin(),aula,
-                    reserva.getInscripcion(),dto.diasYBloques()));
+        var pedida = validarSolicitudExistente(id);
+
+        // Tomamos el aula pedida y volvemos a leer la solicitud: si dos aprueban a la vez, el segundo la ve resuelta
+        try (var tomada = BloqueoPorAula.tomar(pedida.idAula())) {
+            var dto = validarSolicitudExistente(id);
+            if (dto.idAula() != pedida.idAula()) {
+                throw new BadRequestException(STR."La solicitud \{id} fue modificada en otra sesión, vuelva a cargarla e intente de nuevo");
+            }
+
+            //Validamos que la solicitud esté pendiente
+            if (!dto.estadoSolicitud().equals(EstadoSolicitud.PENDIENTE)){
+                throw new BadRequestException(STR."La solicitud \{id} no esta pendiente");
+            }
+
+            var reserva = reservaService.obtener(dto.idReserva());
+            var aula = aulaService.obtener(dto.idAula());
+
+            //Creamos un DTO con la solicitud aprobada
+            SolicitudCambioAulaDTO nuevoDTO = new SolicitudCambioAulaDTO(dto.id(),dto.idProfesor(),dto.idReserva(),
+                    dto.idAula(),EstadoSolicitud.APROBADA, dto.tipoSolicitud(),dto.fechaInicio(),dto.fechaFin(),
+                    dto.diasYBloques(),(comentario.isBlank()) ? "Aprobada" : comentario,
+                    dto.comentarioProfesor(), dto.fechaHoraSolicitud(), LocalDateTime.now(), dto.version());
+
+            // Preparamos la solicitud aprobada y el cambio de reserva en una unidad de trabajo:
+            // si la reserva no pasa las validaciones no se guarda nada, y si pasa se confirman los dos juntos
+            try (var unidad = new UnidadDeTrabajo()) {
+                //La modificamos
+                repositorio.modify(nuevoDTO, unidad);
+
+                // Si la solicitud es temporal creamos una nueva reserva
+                if (dto.tipoSolicitud().equals(TipoSolicitud.TEMPORAL)){
+                    reservaService.guardar(new Reserva(null,dto.fechaInicio(),dto.fechaFin(),aula,
+                            reserva.getInscripcion(),dto.diasYBloques()), unidad);
+
+                    //Si no la reserva es Permanente y modificamos la original
+                }else if(dto.tipoSolicitud().equals(TipoSolicitud.PERMANENTE)){
+                    var modificada = new Reserva(reserva.getId(),dto.fechaInicio(),dto.fechaFin(),aula,
+                            reserva.getInscripcion(),dto.diasYBloques());
+                    // Con la versión leída, así la unidad rechaza el cambio si otra sesión modificó la reserva
+                    modificada.setVersion(reserva.getVersion());
+                    reservaService.modificar(modificada, unidad);
+                }
+
+                //Si otra sesión resolvió la solicitud o modificó la reserva mientras tanto, no se guarda nada
+                try {
+                    unidad.confirmar();
+                } catch (ModificacionConcurrenteException e) {
+                    throw new BadRequestException(e.getMessage());
+                }
+            }
         }
     }
 
@@ -200,14 +277,199 @@ public class SolicitudCambioAulaService{
         SolicitudCambioAulaDTO nuevoDTO = new SolicitudCambioAulaDTO(dto.id(),dto.idProfesor(),dto.idReserva(),
                 dto.idAula(),EstadoSolicitud.RECHAZADA, dto.tipoSolicitud(),dto.fechaInicio(),dto.fechaFin(),
                 dto.diasYBloques(),(comentario.isBlank()) ? "Rechazada" : comentario
-                ,dto.comentarioProfesor(), dto.fechaHoraSolicitud());
+                ,dto.comentarioProfesor(), dto.fechaHoraSolicitud(), LocalDateTime.now(), dto.version());
+
+        //La modificamos, salvo que otra sesión la haya resuelto mientras tanto
+        try {
+            repositorio.modify(nuevoDTO);
+        } catch (ModificacionConcurrenteException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+
+
 
-        //La modificamos
-        repositorio.modify(nuevoDTO);
+    /**
+     * Método para revisar muchas solicitudes pendientes de una vez
+     * Carga aulas, inscripciones, asignaturas y reservas una sola vez y arma una agenda en memoria
+     * Primero aplica los rechazos y después las aprobaciones, de la solicitud más vieja a la más nueva:
+     * si dos solicitudes piden el mismo aula y bloque gana la que se pidió primero, y la otra queda pendiente
+     * Cada aprobación se valida contra la agenda, que ya incluye las aprobadas antes en el mismo lote
+     * Todos los cambios se confirman juntos en una unidad de trabajo, con una sola escritura por archivo
+     * @param decisiones sobre las solicitudes pendientes
+     * @return List<ResultadoLote<DecisionSolicitud>> un resultado por decisión, en el mismo orden, con el motivo si no se aplicó
+     * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
+     * @throws NotFoundException si los datos guardados hacen referencia a entidades que no existen
+     */
+    public List<ResultadoLote<DecisionSolicitud>> revisarLote(List<DecisionSolicitud> decisiones)
+            throws JsonNotFoundException, NotFoundException {
+        // Tomamos las aulas que piden las aprobaciones antes de leer la ocupación, así nadie reserva en ellas mientras validamos
+        Set<Integer> aprobadas = new HashSet<>();
+        decisiones.stream().filter(DecisionSolicitud::aprobar).forEach(d -> aprobadas.add(d.idSolicitud()));
+        var idsAulas = repositorio.findByEstado(EstadoSolicitud.PENDIENTE).stream()
+                .filter(dto -> aprobadas.contains(dto.id()))
+                .map(SolicitudCambioAulaDTO::idAula)
+                .toList();
+        List<ResultadoLote<DecisionSolicitud>> resultados;
+        try (var tomadas = BloqueoPorAula.tomar(idsAulas)) {
+            // Cargamos los datos de referencia una sola vez
+            Map<Integer, SolicitudCambioAulaDTO> pendientes = new HashMap<>();
+            repositorio.findByEstado(EstadoSolicitud.PENDIENTE).forEach(dto -> pendientes.put(dto.id(), dto));
+            Map<Integer, Aula> aulas = new HashMap<>();
+            aulaRepository.getAll().forEach(a -> aulas.put(a.getId(), a));
+            Map<Integer, Inscripcion> inscripciones = new HashMap<>();
+            inscripcionService.listar().forEach(i -> inscripciones.put(i.getId(), i));
+            Map<Integer, Asignatura> asignaturas = new HashMap<>();
+            asignaturaRepository.getAll().forEach(a -> asignaturas.put(a.getId(), a));
+            Map<Integer, ReservaDTO> reservas = new HashMap<>();
+            var reservasGuardadas = reservaRepository.getAll();
+            reservasGuardadas.forEach(r -> reservas.put(r.id(), r));
+            var agenda = new IndiceOcupacion();
+            agenda.reconstruir(reservasGuardadas);
+
+            // Las solicitudes que se deciden en el lote no bloquean a las otras del lote:
+            // entre ellas el conflicto lo resuelve la agenda
+            Set<Integer> enLote = new HashSet<>();
+            decisiones.forEach(d -> enLote.add(d.idSolicitud()));
+            var pendientesFueraDelLote = pendientes.values().stream()
+                    .filter(dto -> !enLote.contains(dto.id()))
+                    .toList();
+
+            // Rechazos primero, después aprobaciones por fecha de solicitud
+            List<Integer> orden = new ArrayList<>();
+            for (int i = 0; i < decisiones.size(); i++) {
+                orden.add(i);
+            }
+            Comparator<Integer> porFecha = Comparator.comparing(i -> {
+                var dto = pendientes.get(decisiones.get(i).idSolicitud());
+                return dto == null ? null : dto.fechaHoraSolicitud();
+            }, Comparator.nullsFirst(Comparator.naturalOrder()));
+            orden.sort(Comparator.<Integer, Boolean>comparing(i -> decisiones.get(i).aprobar())
+                    .thenComparing(porFecha)
+                    .thenComparing(i -> decisiones.get(i).idSolicitud(), Comparator.nullsFirst(Comparator.naturalOrder())));
+
+            resultados = new ArrayList<>(decisiones.size());
+            for (int i = 0; i < decisiones.size(); i++) {
+                resultados.add(null);
+            }
+            Set<Integer> decididas = new HashSet<>();
+            try (var unidad = new UnidadDeTrabajo()) {
+                for (int i : orden) {
+                    var decision = decisiones.get(i);
+                    var dto = pendientes.get(decision.idSolicitud());
+                    if (dto == null || !decididas.add(dto.id())) {
+                        resultados.set(i, ResultadoLote.rechazado(i, decision,
+                                STR."La solicitud \{decision.idSolicitud()} no esta pendiente"));
+                        continue;
+                    }
+                    try {
+                        if (decision.aprobar() && !tomadas.incluye(dto.idAula())) {
+                            // Cambió de aula después de tomar los locks: no la validamos con un aula que otro puede estar reservando
+                            throw new BadRequestException(STR."La solicitud \{dto.id()} fue modificada en otra sesión, vuelva a cargarla e intente de nuevo");
+                        }
+                        if (decision.aprobar()) {
+                            aprobarEnLote(dto, decision.comentario(), reservas, aulas, inscripciones, asignaturas,
+                                    pendientesFueraDelLote, agenda, unidad);
+                        } else {
+                            repositorio.modify(resuelta(dto, EstadoSolicitud.RECHAZADA, decision.comentario(), "Rechazada"), unidad);
+                        }
+                        resultados.set(i, ResultadoLote.aceptado(i, decision));
+                    } catch (NotFoundException | BadRequestException | ConflictException e) {
+                        decididas.remove(dto.id());
+                        resultados.set(i, ResultadoLote.rechazado(i, decision, e.getMessage()));
+                    }
+                }
+                try {
+                    unidad.confirmar();
+                } catch (ModificacionConcurrenteException e) {
+                    // No se aplicó ninguna decisión: las que se habían aceptado quedan rechazadas con el motivo
+                    for (int i = 0; i < resultados.size(); i++) {
+                        var resultado = resultados.get(i);
+                        if (resultado.aceptado()) {
+                            resultados.set(i, ResultadoLote.rechazado(i, resultado.elemento(), e.getMessage()));
+                        }
+                    }
+                }
+            }
+        }
+        return resultados;
     }
 
+    /**
+     * Método que valida una aprobación del lote contra la agenda y prepara sus cambios
+     * @param dto solicitud pendiente que se aprueba
+     * @param comentario del administrador
+     * @param reservas guardadas por ID
+     * @param aulas por ID
+     * @param inscripciones por ID
+     * @param asignaturas por ID
+     * @param pendientes solicitudes pendientes que no se deciden en el lote
+     * @param agenda ocupación en memoria, se actualiza si la aprobación es válida
+     * @param unidad donde se preparan los cambios
+     * @throws NotFoundException si no existe la reserva original, el aula o la inscripción
+     * @throws BadRequestException si el aula no está disponible, no alcanza o no es laboratorio
+     * @throws ConflictException si se solapa con otra solicitud pendiente
+     * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
+     */
+    private void aprobarEnLote(SolicitudCambioAulaDTO dto, String comentario, Map<Integer, ReservaDTO> reservas,
+                               Map<Integer, Aula> aulas, Map<Integer, Inscripcion> inscripciones,
+                               Map<Integer, Asignatura> asignaturas, List<SolicitudCambioAulaDTO> pendientes,
+                               IndiceOcupacion agenda, UnidadDeTrabajo unidad)
+            throws NotFoundException, BadRequestException, ConflictException, JsonNotFoundException {
+        var original = reservas.get(dto.idReserva());
+        if (original == null) {
+            throw new NotFoundException(STR."No existe una reserva con el id: \{dto.idReserva()}");
+        }
+        boolean permanente = dto.tipoSolicitud().equals(TipoSolicitud.PERMANENTE);
+        var reserva = new Reserva(permanente ? original.id() : null, dto.fechaInicio(), dto.fechaFin(),
+                aulas.get(dto.idAula()), inscripciones.get(original.idInscripcion()), dto.diasYBloques());
+        if (reserva.getAula() == null) {
+            throw new NotFoundException(STR."No existe un aula con el id: \{dto.idAula()}");
+        }
+        if (permanente) {
+            reserva.setVersion(original.version());
+        }
+
+        // Un cambio permanente libera el lugar que ocupaba la reserva original
+        if (permanente) {
+            agenda.quitar(original);
+        }
+        try {
+            reservaService.validarEnLote(reserva, aulas, inscripciones, asignaturas, pendientes, agenda);
+        } catch (NotFoundException | BadRequestException | ConflictException e) {
+            if (permanente) {
+                agenda.agregar(original);
+            }
+            throw e;
+        }
 
+        repositorio.modify(resuelta(dto, EstadoSolicitud.APROBADA, comentario, "Aprobada"), unidad);
+        var nueva = Mapper.reservaToDTO(reserva);
+        if (permanente) {
+            reservaRepository.modify(nueva, unidad);
+        } else {
+            nueva = reservaRepository.save(nueva, unidad);
+        }
+        agenda.agregar(nueva);
+        reservas.put(nueva.id(), nueva);
+    }
 
+    /**
+     * Método que arma la solicitud resuelta a partir de la pendiente
+     * @param dto solicitud pendiente
+     * @param estado nuevo estado
+     * @param comentario del administrador
+     * @param porDefecto comentario si el del administrador está en blanco
+     * @return SolicitudCambioAulaDTO con el nuevo estado
+     */
+    private SolicitudCambioAulaDTO resuelta(SolicitudCambioAulaDTO dto, EstadoSolicitud estado,
+                                            String comentario, String porDefecto) {
+        return new SolicitudCambioAulaDTO(dto.id(), dto.idProfesor(), dto.idReserva(), dto.idAula(), estado,
+                dto.tipoSolicitud(), dto.fechaInicio(), dto.fechaFin(), dto.diasYBloques(),
+                (comentario == null || comentario.isBlank()) ? porDefecto : comentario,
+                dto.comentarioProfesor(), dto.fechaHoraSolicitud(), LocalDateTime.now(), dto.version());
+    }
 
     // Validaciones
     /**
@@ -298,9 +560,8 @@ public class SolicitudCambioAulaService{
      */
     public List<SolicitudCambioAula> listarSolicitudesPorEstado(EstadoSolicitud estado)
             throws JsonNotFoundException, NotFoundException {
-        return listar().stream()
-                .filter(s -> s.getEstado().equals(estado))
-                .collect(Collectors.toList());
+        // Solo armamos las solicitudes con ese estado, usando el índice por estado
+        return hidratar(repositorio.findByEstado(estado));
     }
 
 
@@ -321,9 +582,20 @@ public class SolicitudCambioAulaService{
             throw new NotFoundException(STR."El profesor con el id: \{idProfesor} no existe");
         }
 
-        return listar().stream()
-                .filter(s -> s.getEstado().equals(estado))
-                .filter(s -> s.getProfesor().getId().equals(idProfesor))
-                .collect(Collectors.toList());
+        // Solo armamos las solicitudes del profesor con ese estado, usando el índice por profesor
+        return hidratar(repositorio.findByEstadoYProfesor(estado, idProfesor));
+    }
+
+    /**
+     * Método para listar las solicitudes de cambio de una reserva, incluidas las archivadas
+     * @param idReserva de la reserva
+     * @return List<SolicitudCambioAula> de la reserva
+     * @throws JsonNotFoundException si ocurre un problema con el archivo JSON
+     * @throws NotFoundException si no existe la reserva
+     */
+    public List<SolicitudCambioAula> listarSolicitudesPorReserva(Integer idReserva)
+            throws JsonNotFoundException, NotFoundException {
+        validarReservaExistente(idReserva);
+        return hidratar(repositorio.findByReserva(idReserva));
     }
 }
@@ -5,14 +5,16 @@ import org.example.model.Profesor;
 import org.example.model.Rol;
 import org.example.model.dto.UsuarioDTO;
 import org.example.exception.BadRequestException;
+import org.example.exception.ConflictException;
 import org.example.exception.JsonNotFoundException;
+import org.example.exception.ModificacionConcurrenteException;
 import org.example.exception.NotFoundException;
 import org.example.model.Usuario;
 import org.example.repository.ProfesorRepository;
 import org.example.repository.RolRepository;
 import org.example.repository.UsuarioRepository;
+import org.example.security.HashContrasenia;
 import org.example.utils.Mapper;
-import org.mindrot.jbcrypt.BCrypt;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -23,11 +25,26 @@ import java.util.List;
  * y aplicar la lógica de negocio para manipular usuarios
  */
 public class UsuarioService{
-    private final UsuarioRepository repositorioUsuario = new UsuarioRepository();
-    private final RolRepository repositorioRol = new RolRepository();
-    private final ProfesorRepository profesorRepository = new ProfesorRepository();
+    private final UsuarioRepository repositorioUsuario = UsuarioRepository.getInstancia();
+    private final RolRepository repositorioRol = RolRepository.getInstancia();
+    private final ProfesorRepository profesorRepository = ProfesorRepository.getInstancia();
 
 
+    private UsuarioService() {
+    }
+
+    /**
+     * Método que devuelve la instancia compartida del servicio
+     * @return UsuarioService único para toda la aplicación
+     */
+    public static UsuarioService getInstancia() {
+        return Unica.INSTANCIA;
+    }
+
+    private static class Unica {
+        private static final UsuarioService INSTANCIA = new UsuarioService();
+    }
+
     /**
      * Método para getAll todos los usuarios
      * @return List<Usuario>
@@ -53,23 +70,22 @@ public class UsuarioService{
      * @throws BadRequestException si existe un usuario con ese username
      */
     public Usuario guardar(Usuario usuario) throws JsonNotFoundException, NotFoundException, BadRequestException {
-        //Verificamos que no existe un usuario con ese username, sino lanzamos excepción
-        var optional = repositorioUsuario.findByUsername(usuario.getUsername());
-        if (optional.isPresent()){
-            throw new BadRequestException(STR."Ya existe un usuario con el nombre de usuario: \{usuario.getUsername()}");
-        }
-
         //Tomamos el ID del rol y verificamos que existe, si no lanzamos excepción
         validarRolExistente(usuario.getRol().getId());
 
         //Tomamos el ID del profesor y verificamos que existe, si no lanzamos excepción
         validarProfesorExistente(usuario.getProfesor().getId());
 
-        // Codifica la contraseña usando bcrypt
-        usuario.setPassword(BCrypt.hashpw(usuario.getPassword(), BCrypt.gensalt()));
+        // Codifica la contraseña usando bcrypt con el costo calibrado al arrancar
+        usuario.setPassword(HashContrasenia.hashear(usuario.getPassword()));
 
 
-        repositorioUsuario.save(Mapper.usuarioToDto(usuario));
+        // El repositorio rechaza el username repetido con su clave única, y lo informamos como BadRequest
+        try {
+            repositorioUsuario.save(Mapper.usuarioToDto(usuario));
+        } catch (ConflictException e) {
+            throw new BadRequestException(STR."Ya existe un usuario con el nombre de usuario: \{usuario.getUsername()}");
+        }
         return usuario;
     }
 
@@ -111,10 +127,11 @@ public class UsuarioService{
      * @param usuario que se quiere modificar
      * @throws JsonNotFoundException si ocurre un error con el archivo JSON
      * @throws NotFoundException si no encuentra el usuario que se quiere modificar
+     * @throws BadRequestException si otra sesión modificó el usuario mientras tanto o si otro usuario tiene ese username
      */
-    public void modificar(Usuario usuario) throws JsonNotFoundException, NotFoundException {
+    public void modificar(Usuario usuario) throws JsonNotFoundException, NotFoundException, BadRequestException {
         //Validamos que exista el usuario
-        validarUsuarioExistente(usuario.getId());
+        var actual = validarUsuarioExistente(usuario.getId());
 
         //Validamos que exista su rol
         validarRolExistente(usuario.getRol().getId());
@@ -122,11 +139,19 @@ public class UsuarioService{
         //Validamos que exista el profesor que representa
         validarProfesorExistente(usuario.getProfesor().getId());
 
-        // Codifica la contraseña usando bcrypt
-        usuario.setPassword(BCrypt.hashpw(usuario.getPassword(), BCrypt.gensalt()));
+        // Si la contraseña es el hash guardado no se cambió, solo hasheamos una contraseña nueva
+        if (!usuario.getPassword().equals(actual.password())) {
+            usuario.setPassword(HashContrasenia.hashear(usuario.getPassword()));
+        }
 
         //Mapeamos y modificamos el usuario
-        repositorioUsuario.modify(Mapper.usuarioToDto(usuario));
+        try {
+            repositorioUsuario.modify(Mapper.usuarioToDto(usuario));
+        } catch (ModificacionConcurrenteException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (ConflictException e) {
+            throw new BadRequestException(STR."Ya existe un usuario con el nombre de usuario: \{usuario.getUsername()}");
+        }
     }
 
     // Validaciones
@@ -17,13 +17,16 @@ public class Mapper {
      */
     public static Usuario toUsuario(UsuarioDTO dto, Rol rol,Profesor profesor){
         //Retornamos el usuario mapeado desde DTO, incluyendo su rol y el profesor que representa
-        return new Usuario(
+        var usuario = new Usuario(
                 dto.id(),
                 dto.username(),
                 dto.password(),
                 rol,
                 profesor
         );
+        // La versión leída viaja con el usuario hasta que se modifica
+        usuario.setVersion(dto.version());
+        return usuario;
     }
 
     /**
@@ -38,7 +41,8 @@ public class Mapper {
                 usuario.getUsername(),
                 usuario.getPassword(),
                 usuario.getRol().getId(),
-                usuario.getProfesor().getId()
+                usuario.getProfesor().getId(),
+                usuario.getVersion()
         );
     }
 
@@ -51,7 +55,7 @@ public class Mapper {
      */
     public static Inscripcion toInscripcion(InscripcionDTO dto, Asignatura asignatura, Profesor profesor){
         //Retornamos la inscripción mapeando desde DTO, incluyendo su asignatura y profesor
-        return new Inscripcion(
+        var inscripcion = new Inscripcion(
                 dto.id(),
                 dto.cantidadAlumnos(),
                 dto.margenAlumnos(),
@@ -60,6 +64,8 @@ public class Mapper {
                 dto.comision(),
                 profesor
         );
+        inscripcion.setVersion(dto.version());
+        return inscripcion;
     }
 
     /**
@@ -76,7 +82,8 @@ public class Mapper {
                 inscripcion.getFechaFinInscripcion(),
                 inscripcion.getAsignatura().getId(),
                 inscripcion.getComision(),
-                inscripcion.getProfesor().getId()
+                inscripcion.getProfesor().getId(),
+                inscripcion.getVersion()
         );
     }
 
@@ -90,7 +97,7 @@ public class Mapper {
      */
     public static Reserva toReserva(ReservaDTO dto, Aula aula, Inscripcion inscripcion){
         //Retornamos la inscripción mapeando desde DTO, incluyendo su asignatura y profesor
-        return new Reserva(
+        var reserva = new Reserva(
                 dto.id(),
                 dto.fechaInicio(),
                 dto.fechaFin(),
@@ -98,6 +105,8 @@ public class Mapper {
                 inscripcion,
                 dto.diasYBloques()
         );
+        reserva.setVersion(dto.version());
+        return reserva;
     }
 
     /**
@@ -113,7 +122,8 @@ public class Mapper {
                 reserva.getFechaFin(),
                 reserva.getAula().getId(),
                 reserva.getInscripcion().getId(),
-                reserva.getDiasYBloques()
+                reserva.getDiasYBloques(),
+                reserva.getVersion()
         );
     }
 
@@ -129,11 +139,14 @@ public class Mapper {
     public static SolicitudCambioAula toSolicitud(SolicitudCambioAulaDTO dto, Profesor profesor, Aula aula,
                                             Reserva reserva){
         //Retornamos la solicitud mapeando desde DTO, incluyendo su aula, profesor y reserva original
-        return new SolicitudCambioAula(
+        var solicitud = new SolicitudCambioAula(
                 dto.id(), profesor, reserva, aula, dto.estadoSolicitud(), dto.tipoSolicitud(),
                 dto.fechaInicio(), dto.fechaFin(), dto.diasYBloques(),
                 dto.comentarioEstado(), dto.comentarioProfesor(), dto.fechaHoraSolicitud()
         );
+        solicitud.setFechaHoraResolucion(dto.fechaHoraResolucion());
+        solicitud.setVersion(dto.version());
+        return solicitud;
     }
 
     /**
@@ -147,7 +160,8 @@ public class Mapper {
                 solicitud.getId(), solicitud.getProfesor().getId(), solicitud.getReservaOriginal().getId(),
                 solicitud.getNuevaAula().getId(), solicitud.getEstado(), solicitud.getTipoSolicitud(),
                 solicitud.getFechaInicio(), solicitud.getFechaFin(), solicitud.getDiasYBloques(),
-                solicitud.getComentarioEstado(), solicitud.getComentarioProfesor(), solicitud.getFechaHoraSolicitud()
+                solicitud.getComentarioEstado(), solicitud.getComentarioProfesor(), solicitud.getFechaHoraSolicitud(),
+                solicitud.getFechaHoraResolucion(), solicitud.getVersion()
         );
     }
 }
@@ -1,6 +1,7 @@
 package org.example.utils;
 
 import org.example.enums.BloqueHorario;
+import org.example.model.DiasYBloques;
 import org.example.model.Usuario;
 
 import java.time.DayOfWeek;
@@ -122,9 +123,9 @@ public class MenuUtils {
 
     /**
      * Método para pedir los días seleccionados y bloques horarios.
-     * @return Map<DayOfWeek, Set<BloqueHorario>> que contiene los días seleccionados y los bloques horarios
+     * @return DiasYBloques que contiene los días seleccionados y los bloques horarios
      */
-    public static Map<DayOfWeek, Set<BloqueHorario>> leerDiasYBloques() {
+    public static DiasYBloques leerDiasYBloques() {
         Map<DayOfWeek, Set<BloqueHorario>> diasYBloques = new HashMap<>();
         Set<DayOfWeek> diasSeleccionados = new HashSet<>();
 
@@ -178,7 +179,7 @@ public class MenuUtils {
             diasYBloques.put(dia, bloques);
         }
 
-        return diasYBloques;
+        return DiasYBloques.de(diasYBloques);
     }
 
     /**
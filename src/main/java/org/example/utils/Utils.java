@@ -1,13 +1,13 @@
 package org.example.utils;
 
 import org.example.enums.BloqueHorario;
+import org.example.model.DiasYBloques;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.format.TextStyle;
 import java.util.Arrays;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -42,13 +42,13 @@ public class Utils {
     }
 
     /**
-     * Método para formatear un mapa de días de la semana y bloques horarios.
-     * @param diasYBloques Mapa de DayOfWeek a Set de BloqueHorario.
+     * Método para formatear los días de la semana y bloques horarios.
+     * @param diasYBloques días de la semana y bloques horarios.
      * @return String con el formato de días y bloques horarios.
      */
-    public static String formatDiasYBloques(Map<DayOfWeek, Set<BloqueHorario>> diasYBloques) {
+    public static String formatDiasYBloques(DiasYBloques diasYBloques) {
         var sb = new StringBuilder();
-        diasYBloques.forEach((dia, bloques) -> {
+        diasYBloques.aMapa().forEach((dia, bloques) -> {
             // Usamos el método obtenerDiasEnEspaniol para obtener el nombre del día en español
             var diaEnEspaniol = obtenerDiasEnEspaniol(Set.of(dia));
             var bloquesFormateados = bloques.stream()
@@ -86,26 +86,15 @@ public class Utils {
     }
 
     /**
-     * Método que verifica si hay solapamiento en los días y bloques horarios entre dos mapas.
+     * Método que verifica si hay solapamiento en los días y bloques horarios.
      * @param diasYBloquesReserva días y bloques horarios de una reserva existente.
      * @param diasYBloquesSolicitados días y bloques horarios solicitados para disponibilidad.
      * @return boolean si existe al menos un día y bloque horario común.
      */
-    public static boolean tieneSolapamientoEnDiasYBloques(Map<DayOfWeek, Set<BloqueHorario>> diasYBloquesReserva,
-                                                          Map<DayOfWeek, Set<BloqueHorario>> diasYBloquesSolicitados) {
-        for (var entry : diasYBloquesSolicitados.entrySet()) {
-            var diaSolicitado = entry.getKey();
-            var bloquesSolicitados = entry.getValue();
-
-            if (diasYBloquesReserva.containsKey(diaSolicitado)) {
-                var bloquesReservados = diasYBloquesReserva.get(diaSolicitado);
-                // Verificamos si hay al menos un bloque horario en común
-                if (bloquesReservados.stream().anyMatch(bloquesSolicitados::contains)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+    public static boolean tieneSolapamientoEnDiasYBloques(DiasYBloques diasYBloquesReserva,
+                                                          DiasYBloques diasYBloquesSolicitados) {
+        // Cada día y bloque es un bit, hay solapamiento si comparten alguno
+        return diasYBloquesReserva.seSolapa(diasYBloquesSolicitados);
     }
 
 }
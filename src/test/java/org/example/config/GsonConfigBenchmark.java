@@ -0,0 +1,83 @@
+package org.example.config;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.example.adaptadores.AdaptadorAula;
+import org.example.adaptadores.AdaptadorDiasYBloques;
+import org.example.adaptadores.AdaptadorLocalDate;
+import org.example.adaptadores.AdaptadorLocalDateTime;
+import org.example.enums.BloqueHorario;
+import org.example.model.Aula;
+import org.example.model.DiasYBloques;
+import org.example.model.dto.ReservaDTO;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Medición del costo de serializar un registro creando el Gson en cada llamada (como hacían los repositorios)
+ * contra usar la instancia compartida de GsonConfig
+ * No es un test: se corre a mano después de compilar, por ejemplo
+ * mvn test-compile y java --enable-preview -cp target/classes:target/test-classes:gson.jar org.example.config.GsonConfigBenchmark
+ * Con -Dgestionaulas.benchmark.iteraciones=N se cambia la cantidad de iteraciones medidas (por defecto 200000)
+ */
+public class GsonConfigBenchmark {
+    private static final int ITERACIONES = Integer.getInteger("gestionaulas.benchmark.iteraciones", 200_000);
+
+    // Lo que se acumula de cada serialización, para que la JIT no descarte el trabajo
+    private static long sumidero;
+
+    public static void main(String[] args) {
+        var reserva = new ReservaDTO(1, LocalDate.of(2025, 3, 1), LocalDate.of(2025, 6, 30), 1, 1,
+                DiasYBloques.de(DayOfWeek.MONDAY, Set.of(BloqueHorario.values()[0], BloqueHorario.values()[1])), 0);
+        var aula = new Aula(1, 101, 45, false, true);
+
+        System.out.println(STR."Iteraciones medidas: \{ITERACIONES}");
+        comparar("ReservaDTO", reserva, GsonConfigBenchmark::gsonConFechasPorLlamada, GsonConfig::gsonConFechas);
+        comparar("Aula", aula, GsonConfigBenchmark::gsonAulaPorLlamada, GsonConfig::createGsonAulaLaboratorio);
+        System.out.println(STR."(\{sumidero})");
+    }
+
+    /**
+     * Método que mide los dos casos con el mismo registro, después de un calentamiento de cada uno
+     * @param nombre del registro, para el reporte
+     * @param registro que se serializa
+     * @param porLlamada Gson creado en cada llamada
+     * @param compartido Gson de GsonConfig
+     */
+    private static void comparar(String nombre, Object registro, Supplier<Gson> porLlamada, Supplier<Gson> compartido) {
+        medir(registro, porLlamada, ITERACIONES);
+        medir(registro, compartido, ITERACIONES);
+        long nanosPorLlamada = medir(registro, porLlamada, ITERACIONES);
+        long nanosCompartido = medir(registro, compartido, ITERACIONES);
+        System.out.println(STR."\{nombre}: por llamada \{nanosPorLlamada} ns/op, compartido \{nanosCompartido} ns/op");
+    }
+
+    private static long medir(Object registro, Supplier<Gson> gson, int iteraciones) {
+        long inicio = System.nanoTime();
+        for (int i = 0; i < iteraciones; i++) {
+            sumidero += gson.get().toJson(registro).length();
+        }
+        return (System.nanoTime() - inicio) / iteraciones;
+    }
+
+    // Como getGson() de ReservaRepository antes de GsonConfig
+    private static Gson gsonConFechasPorLlamada() {
+        return new GsonBuilder().setPrettyPrinting()
+                .registerTypeAdapter(LocalDate.class, new AdaptadorLocalDate())
+                .registerTypeAdapter(LocalDateTime.class, new AdaptadorLocalDateTime())
+                .registerTypeAdapter(DiasYBloques.class, new AdaptadorDiasYBloques())
+                .create();
+    }
+
+    // Como createGsonAulaLaboratorio() antes de GsonConfig: dos Gson por llamada
+    private static Gson gsonAulaPorLlamada() {
+        GsonBuilder builder = new GsonBuilder();
+        builder.registerTypeAdapter(Aula.class, new AdaptadorAula(builder.create()));
+        builder.setPrettyPrinting();
+        return builder.create();
+    }
+}